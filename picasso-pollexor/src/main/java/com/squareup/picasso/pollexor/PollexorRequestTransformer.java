@@ -1,18 +1,30 @@
 package com.squareup.picasso.pollexor;
 
 import android.net.Uri;
+import android.os.Build;
 import com.squareup.picasso.Request;
 import com.squareup.pollexor.Pollexor;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
-import static com.squareup.picasso.Picasso.RequestTransformer;
+import static com.squareup.picasso.Picasso.NetworkAwareRequestTransformer;
 
 /**
- * A {@link RequestTransformer} that changes requests to use Thumbor for some remote
- * transformations.
+ * A {@link com.squareup.picasso.Picasso.RequestTransformer} that changes requests to use Thumbor
+ * for some remote transformations.
  */
-public class PollexorRequestTransformer implements RequestTransformer {
+public class PollexorRequestTransformer implements NetworkAwareRequestTransformer {
+  // WebP with transparency, which Thumbor produces for transparent images, decodes from API 18.
+  private static final int WEBP_MIN_SDK = 18;
+  static final int DEFAULT_URL_CACHE_SIZE = 100;
+
   private final String host;
   private final String key;
+  private final SizeBucketing bucketing;
+  private final boolean webp;
+  private final QualityPolicy quality;
+  /** Recently built Thumbor URLs, null if disabled. */
+  final UrlCache urls;
 
   /** Create a transformer for the specified Thumbor host. This will not use URL encryption. */
   public PollexorRequestTransformer(String host) {
@@ -21,11 +33,36 @@ public class PollexorRequestTransformer implements RequestTransformer {
 
   /** Create a transformer for the specified Thumbor host using the provided URL encryption key. */
   public PollexorRequestTransformer(String host, String key) {
+    this(host, key, SizeBucketing.NONE);
+  }
+
+  /**
+   * Create a transformer for the specified Thumbor host using the provided URL encryption key,
+   * which may be null. Thumbor is asked for images of the size picked by {@code bucketing} which
+   * are then resized to the exact target size on the device.
+   */
+  public PollexorRequestTransformer(String host, String key, SizeBucketing bucketing) {
+    this(host, key, bucketing, false, null, DEFAULT_URL_CACHE_SIZE);
+  }
+
+  private PollexorRequestTransformer(String host, String key, SizeBucketing bucketing,
+      boolean webp, QualityPolicy quality, int urlCacheSize) {
+    if (bucketing == null) {
+      throw new IllegalArgumentException("Bucketing must not be null.");
+    }
     this.host = host;
     this.key = key;
+    this.bucketing = bucketing;
+    this.webp = webp && Build.VERSION.SDK_INT >= WEBP_MIN_SDK;
+    this.quality = quality;
+    this.urls = urlCacheSize > 0 ? new UrlCache(urlCacheSize) : null;
   }
 
   @Override public Request transformRequest(Request request) {
+    return transformRequest(request, -1);
+  }
+
+  @Override public Request transformRequest(Request request, int networkType) {
     if (request.resourceId != 0) {
       return request; // Don't transform resource requests.
     }
@@ -37,32 +74,219 @@ public class PollexorRequestTransformer implements RequestTransformer {
     if (!request.hasSize()) {
       return request; // Thumbor only works with resizing images.
     }
-    if (request.centerCrop) {
-      return request; // Can't center crop yet. See: https://github.com/globocom/thumbor/issues/201
-    }
 
     // Start building a new request for us to mutate.
     Request.Builder newRequest = request.buildUpon();
 
+    // Resize the image to the bucket of the target size. Both sides are scaled alike to keep the
+    // aspect ratio, so that cropping or fitting in Thumbor matches doing it on the device.
+    int targetWidth = request.targetWidth;
+    int targetHeight = request.targetHeight;
+    int longestSide = Math.max(targetWidth, targetHeight);
+    int bucket = bucketing.bucket(longestSide);
+    if (bucket < longestSide) {
+      throw new IllegalStateException("Bucket " + bucket + " is smaller than size " + longestSide);
+    }
+    boolean exact = bucket == longestSide;
+    int width = targetWidth;
+    int height = targetHeight;
+    if (exact) {
+      newRequest.clearResize();
+    } else {
+      width = scale(targetWidth, bucket, longestSide);
+      height = scale(targetHeight, bucket, longestSide);
+    }
+
+    // If the center inside flag is set, perform that with Thumbor as well.
+    boolean fitIn = request.centerInside;
+    if (fitIn && exact) {
+      newRequest.clearCenterInside();
+    }
+
+    // Thumbor crops resized images to fill the target size around the center by default.
+    if (request.centerCrop && exact) {
+      newRequest.clearCenterCrop();
+    }
+
+    // Thumbor rotates counter-clockwise and only by multiples of 90 degrees. The local resize of
+    // a bucketed image expects the image before rotation.
+    int counterClockwise = 0;
+    int degrees = (int) request.rotationDegrees;
+    if (exact && degrees == request.rotationDegrees && degrees % 90 == 0) {
+      counterClockwise = (360 - degrees % 360) % 360;
+      newRequest.clearRotation();
+    }
+
+    int value = quality != null ? quality.quality(networkType) : 0;
+
+    // Update the request with the Thumbor URL, reusing the one built for an earlier bind.
+    String image = uri.toString();
+    Uri thumborUri;
+    if (quality != null) {
+      // Keep the quality out of the memory cache key so images loaded over one network are still
+      // hit after switching to another.
+      newRequest.stableKey(createKey(image, width, height, fitIn, counterClockwise, 0));
+    }
+    if (urls != null) {
+      String cacheKey = createKey(image, width, height, fitIn, counterClockwise, value);
+      synchronized (urls) {
+        thumborUri = urls.get(cacheKey);
+      }
+      if (thumborUri == null) {
+        thumborUri = Uri.parse(createUrl(image, width, height, fitIn, counterClockwise, value));
+        synchronized (urls) {
+          urls.put(cacheKey, thumborUri);
+        }
+      }
+    } else {
+      thumborUri = Uri.parse(createUrl(image, width, height, fitIn, counterClockwise, value));
+    }
+    newRequest.setUri(thumborUri);
+
+    return newRequest.build();
+  }
+
+  private String createUrl(String image, int width, int height, boolean fitIn,
+      int counterClockwise, int quality) {
     // Start creating the Thumbor URL with the image and host. Add the encryption key, if present.
-    Pollexor pollexor = Pollexor.image(uri.toString()).host(host);
+    Pollexor pollexor = Pollexor.image(image).host(host).resize(width, height);
     if (key != null) {
       pollexor.key(key);
     }
+    if (fitIn) {
+      pollexor.fitIn();
+    }
+    if (counterClockwise != 0) {
+      pollexor.filter("rotate(" + counterClockwise + ")");
+    }
 
-    // Resize the image to the target size.
-    pollexor.resize(request.targetWidth, request.targetHeight);
-    newRequest.clearResize();
+    // Ask for WebP if the device decodes it and for the quality which suits the network.
+    if (webp) {
+      pollexor.filter("format(webp)");
+    }
+    if (quality > 0) {
+      pollexor.filter(Pollexor.quality(quality));
+    }
+    return pollexor.toUrl();
+  }
 
-    // If the center inside flag is set, perform that with Thumbor as well.
-    if (request.centerInside) {
-      pollexor.fitIn();
-      newRequest.clearCenterInside();
+  /** Everything {@link #createUrl} depends on which is not fixed for this transformer. */
+  private static String createKey(String image, int width, int height, boolean fitIn,
+      int counterClockwise, int quality) {
+    return new StringBuilder(image.length() + 24) //
+        .append(width)
+        .append('x')
+        .append(height)
+        .append(fitIn ? 'f' : '-')
+        .append(counterClockwise)
+        .append('q')
+        .append(quality)
+        .append('\n')
+        .append(image)
+        .toString();
+  }
+
+  private static int scale(int size, int bucket, int longestSide) {
+    return (int) Math.ceil((double) size * bucket / longestSide);
+  }
+
+  /** A least-recently used map of Thumbor URLs holding at most {@code maxSize} entries. */
+  static final class UrlCache extends LinkedHashMap<String, Uri> {
+    private final int maxSize;
+
+    UrlCache(int maxSize) {
+      super(16, 0.75f, true);
+      this.maxSize = maxSize;
     }
 
-    // Update the request with the completed Thumbor URL.
-    newRequest.setUri(Uri.parse(pollexor.toUrl()));
+    @Override protected boolean removeEldestEntry(Map.Entry<String, Uri> eldest) {
+      return size() > maxSize;
+    }
+  }
 
-    return newRequest.build();
+  /** Fluent API for creating {@link PollexorRequestTransformer} instances. */
+  public static class Builder {
+    private final String host;
+    private String key;
+    private SizeBucketing bucketing;
+    private boolean webp;
+    private QualityPolicy quality;
+    private int urlCacheSize = -1;
+
+    /** Start building a transformer for the specified Thumbor host. */
+    public Builder(String host) {
+      if (host == null) {
+        throw new IllegalArgumentException("Host must not be null.");
+      }
+      this.host = host;
+    }
+
+    /** Sign URLs with the provided URL encryption key. */
+    public Builder key(String key) {
+      if (key == null) {
+        throw new IllegalArgumentException("Key must not be null.");
+      }
+      if (this.key != null) {
+        throw new IllegalStateException("Key already set.");
+      }
+      this.key = key;
+      return this;
+    }
+
+    /** Round the size requested from Thumbor up with {@code bucketing}. */
+    public Builder bucketing(SizeBucketing bucketing) {
+      if (bucketing == null) {
+        throw new IllegalArgumentException("Bucketing must not be null.");
+      }
+      if (this.bucketing != null) {
+        throw new IllegalStateException("Bucketing already set.");
+      }
+      this.bucketing = bucketing;
+      return this;
+    }
+
+    /**
+     * Whether Thumbor should convert images to WebP, which is usually smaller than JPEG and PNG.
+     * Only applies on API 18 and up where all WebP images decode. Disabled by default.
+     */
+    public Builder webp(boolean webp) {
+      this.webp = webp;
+      return this;
+    }
+
+    /** Let Thumbor encode images with the quality picked by {@code quality}. */
+    public Builder quality(QualityPolicy quality) {
+      if (quality == null) {
+        throw new IllegalArgumentException("Quality policy must not be null.");
+      }
+      if (this.quality != null) {
+        throw new IllegalStateException("Quality policy already set.");
+      }
+      this.quality = quality;
+      return this;
+    }
+
+    /**
+     * Keep the last {@code maxSize} Thumbor URLs to reuse them when the same image is requested at
+     * the same size again, which saves signing URLs on the main thread. Defaults to 100, {@code 0}
+     * disables the cache.
+     */
+    public Builder urlCacheSize(int maxSize) {
+      if (maxSize < 0) {
+        throw new IllegalArgumentException("URL cache size must not be negative.");
+      }
+      if (urlCacheSize != -1) {
+        throw new IllegalStateException("URL cache size already set.");
+      }
+      this.urlCacheSize = maxSize;
+      return this;
+    }
+
+    /** Create the {@link PollexorRequestTransformer} instance. */
+    public PollexorRequestTransformer build() {
+      SizeBucketing bucketing = this.bucketing != null ? this.bucketing : SizeBucketing.NONE;
+      int urlCacheSize = this.urlCacheSize != -1 ? this.urlCacheSize : DEFAULT_URL_CACHE_SIZE;
+      return new PollexorRequestTransformer(host, key, bucketing, webp, quality, urlCacheSize);
+    }
   }
 }
@@ -0,0 +1,56 @@
+package com.squareup.picasso.pollexor;
+
+import android.net.ConnectivityManager;
+
+/**
+ * Picks the quality Thumbor encodes images with, depending on the network they are loaded over.
+ * The quality is not part of the memory cache key, so an image is not loaded again when only the
+ * network changed.
+ */
+public abstract class QualityPolicy {
+  /**
+   * Returns the quality from 1 to 100 for images loaded over a network of {@code networkType}, or
+   * {@code 0} to use the default quality of the Thumbor server.
+   *
+   * @param networkType The {@link ConnectivityManager} type of the connected network, e.g.
+   * {@link ConnectivityManager#TYPE_WIFI}, or {@code -1} if there is none or it is not known.
+   */
+  public abstract int quality(int networkType);
+
+  /** Uses {@code quality} on every network. */
+  public static QualityPolicy fixed(final int quality) {
+    checkQuality(quality);
+    return new QualityPolicy() {
+      @Override public int quality(int networkType) {
+        return quality;
+      }
+    };
+  }
+
+  /**
+   * Uses {@code unmeteredQuality} on Wi-Fi, WiMAX and Ethernet and {@code meteredQuality} on all
+   * other networks, including unknown ones.
+   */
+  public static QualityPolicy byNetwork(final int unmeteredQuality, final int meteredQuality) {
+    checkQuality(unmeteredQuality);
+    checkQuality(meteredQuality);
+    return new QualityPolicy() {
+      @Override public int quality(int networkType) {
+        switch (networkType) {
+          case ConnectivityManager.TYPE_WIFI:
+          case ConnectivityManager.TYPE_WIMAX:
+          case ConnectivityManager.TYPE_ETHERNET:
+            return unmeteredQuality;
+          default:
+            return meteredQuality;
+        }
+      }
+    };
+  }
+
+  private static void checkQuality(int quality) {
+    if (quality < 0 || quality > 100) {
+      throw new IllegalArgumentException("Quality must be between 0 and 100.");
+    }
+  }
+}
@@ -0,0 +1,67 @@
+package com.squareup.picasso.pollexor;
+
+import java.util.Arrays;
+
+/**
+ * Rounds the size requested from Thumbor up to one of a few buckets, so that targets of similar
+ * sizes share one URL in the CDN and HTTP caches.
+ */
+public abstract class SizeBucketing {
+  /** Requests exactly the target size. */
+  public static final SizeBucketing NONE = new SizeBucketing() {
+    @Override public int bucket(int size) {
+      return size;
+    }
+  };
+
+  /** Returns the bucket for {@code size}, which must not be smaller than {@code size}. */
+  public abstract int bucket(int size);
+
+  /** Buckets sizes up to the next power of {@code factor}, e.g. 1.5 buckets 100 up to 130. */
+  public static SizeBucketing geometric(final double factor) {
+    if (factor <= 1) {
+      throw new IllegalArgumentException("Factor must be greater than one.");
+    }
+    final double logFactor = Math.log(factor);
+    return new SizeBucketing() {
+      @Override public int bucket(int size) {
+        if (size <= 1) {
+          return size;
+        }
+        // Buckets are rounded up, so the bucket below the exact power may already be large enough.
+        int exponent = (int) Math.floor(Math.log(size) / logFactor);
+        int bucket = (int) Math.ceil(Math.pow(factor, exponent));
+        while (bucket < size) {
+          bucket = (int) Math.ceil(Math.pow(factor, ++exponent));
+        }
+        return bucket;
+      }
+    };
+  }
+
+  /**
+   * Buckets sizes up to the next of the ascending {@code sizes}. Sizes larger than the last bucket
+   * are not changed.
+   */
+  public static SizeBucketing ladder(int... sizes) {
+    if (sizes == null || sizes.length == 0) {
+      throw new IllegalArgumentException("At least one size must be given.");
+    }
+    final int[] ladder = sizes.clone();
+    for (int i = 0; i < ladder.length; i++) {
+      if (ladder[i] <= 0 || (i > 0 && ladder[i] <= ladder[i - 1])) {
+        throw new IllegalArgumentException("Sizes must be positive and ascending.");
+      }
+    }
+    return new SizeBucketing() {
+      @Override public int bucket(int size) {
+        int index = Arrays.binarySearch(ladder, size);
+        if (index >= 0) {
+          return size;
+        }
+        int insertion = -index - 1;
+        return insertion < ladder.length ? ladder[insertion] : size;
+      }
+    };
+  }
+}
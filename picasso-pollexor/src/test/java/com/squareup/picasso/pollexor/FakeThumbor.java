@@ -0,0 +1,58 @@
+package com.squareup.picasso.pollexor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/** Reads the operations of an unsigned Thumbor URL the way a Thumbor server matches them. */
+final class FakeThumbor {
+  private static final Pattern URL = Pattern.compile("unsafe/"
+      + "(?:(fit-in)/)?"
+      + "(\\d+)x(\\d+)/"
+      + "(?:(left|center|right)/)?"
+      + "(?:(top|middle|bottom)/)?"
+      + "(?:(smart)/)?"
+      + "(?:filters:(.+?\\))/)?"
+      + "(.+)");
+
+  final boolean fitIn;
+  final int width;
+  final int height;
+  final String horizontalAlign;
+  final String verticalAlign;
+  final boolean smart;
+  final List<String> filters;
+  final String image;
+
+  private FakeThumbor(Matcher matcher) {
+    fitIn = matcher.group(1) != null;
+    width = Integer.parseInt(matcher.group(2));
+    height = Integer.parseInt(matcher.group(3));
+    horizontalAlign = matcher.group(4) != null ? matcher.group(4) : "center";
+    verticalAlign = matcher.group(5) != null ? matcher.group(5) : "middle";
+    smart = matcher.group(6) != null;
+    filters = matcher.group(7) != null
+        ? new ArrayList<String>(Arrays.asList(matcher.group(7).split(":")))
+        : Collections.<String>emptyList();
+    image = matcher.group(8);
+  }
+
+  /** Whether the image is cropped to fill the target size rather than fit into it. */
+  boolean cropsToFill() {
+    return !fitIn;
+  }
+
+  static FakeThumbor parse(String host, String url) {
+    if (!url.startsWith(host)) {
+      throw new AssertionError("URL " + url + " is not on Thumbor host " + host);
+    }
+    Matcher matcher = URL.matcher(url.substring(host.length()));
+    if (!matcher.matches()) {
+      throw new AssertionError("Thumbor can not read URL " + url);
+    }
+    return new FakeThumbor(matcher);
+  }
+}
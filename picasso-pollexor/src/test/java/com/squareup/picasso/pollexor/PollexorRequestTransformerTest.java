@@ -8,8 +8,11 @@ import org.junit.runner.RunWith;
 import org.robolectric.RobolectricTestRunner;
 import org.robolectric.annotation.Config;
 
+import static android.net.ConnectivityManager.TYPE_MOBILE;
+import static android.net.ConnectivityManager.TYPE_WIFI;
 import static com.squareup.picasso.Picasso.RequestTransformer;
 import static org.fest.assertions.api.Assertions.assertThat;
+import static org.fest.assertions.api.Assertions.fail;
 import static org.robolectric.annotation.Config.NONE;
 
 @RunWith(RobolectricTestRunner.class) //
@@ -41,10 +44,63 @@ public class PollexorRequestTransformerTest {
     assertThat(output).isSameAs(input);
   }
 
-  @Test public void centerCropRequestsAreNotTransformed() {
-    Request input = new Request.Builder(IMAGE_URI).resize(50, 50).centerCrop().build();
+  @Test public void resizeWithCenterCrop() {
+    Request input = new Request.Builder(IMAGE_URI).resize(50, 40).centerCrop().build();
     Request output = transformer.transformRequest(input);
-    assertThat(output).isSameAs(input);
+    assertThat(output).isNotSameAs(input);
+    assertThat(output.hasSize()).isFalse();
+    assertThat(output.centerCrop).isFalse();
+
+    FakeThumbor thumbor = FakeThumbor.parse(HOST, output.uri.toString());
+    assertThat(thumbor.cropsToFill()).isTrue();
+    assertThat(thumbor.width).isEqualTo(50);
+    assertThat(thumbor.height).isEqualTo(40);
+    assertThat(thumbor.horizontalAlign).isEqualTo("center");
+    assertThat(thumbor.verticalAlign).isEqualTo("middle");
+    assertThat(thumbor.image).isEqualTo(IMAGE);
+  }
+
+  @Test public void resizeWithCenterCropAndEncryption() {
+    Request input = new Request.Builder(IMAGE_URI).resize(50, 40).centerCrop().build();
+    Request output = secureTransformer.transformRequest(input);
+    assertThat(output.centerCrop).isFalse();
+
+    String expected = Pollexor.image(IMAGE).host(HOST).key(KEY).resize(50, 40).toUrl();
+    assertThat(output.uri.toString()).isEqualTo(expected);
+  }
+
+  @Test public void rightAngleRotationIsOffloaded() {
+    Request input = new Request.Builder(IMAGE_URI).resize(50, 40).centerInside().rotate(90).build();
+    Request output = transformer.transformRequest(input);
+    assertThat(output.rotationDegrees).isZero();
+
+    FakeThumbor thumbor = FakeThumbor.parse(HOST, output.uri.toString());
+    assertThat(thumbor.fitIn).isTrue();
+    assertThat(thumbor.filters).containsExactly("rotate(270)");
+  }
+
+  @Test public void negativeRotationIsOffloadedCounterClockwise() {
+    Request input = new Request.Builder(IMAGE_URI).resize(50, 50).rotate(-90, 10, 10).build();
+    Request output = transformer.transformRequest(input);
+    assertThat(output.rotationDegrees).isZero();
+    assertThat(output.hasRotationPivot).isFalse();
+
+    FakeThumbor thumbor = FakeThumbor.parse(HOST, output.uri.toString());
+    assertThat(thumbor.filters).containsExactly("rotate(90)");
+  }
+
+  @Test public void fullTurnRotationIsDropped() {
+    Request input = new Request.Builder(IMAGE_URI).resize(50, 50).rotate(360).build();
+    Request output = transformer.transformRequest(input);
+    assertThat(output.rotationDegrees).isZero();
+    assertThat(FakeThumbor.parse(HOST, output.uri.toString()).filters).isEmpty();
+  }
+
+  @Test public void otherRotationsStayLocal() {
+    Request input = new Request.Builder(IMAGE_URI).resize(50, 50).rotate(45).build();
+    Request output = transformer.transformRequest(input);
+    assertThat(output.rotationDegrees).isEqualTo(45);
+    assertThat(FakeThumbor.parse(HOST, output.uri.toString()).filters).isEmpty();
   }
 
   @Test public void simpleResize() {
@@ -68,6 +124,197 @@ public class PollexorRequestTransformerTest {
     assertThat(output.uri.toString()).isEqualTo(expected);
   }
 
+  @Test public void bucketedResizeKeepsLocalResize() {
+    RequestTransformer bucketed =
+        new PollexorRequestTransformer(HOST, null, SizeBucketing.ladder(100, 200));
+    Request input = new Request.Builder(IMAGE_URI).resize(150, 75).centerCrop().rotate(90).build();
+    Request output = bucketed.transformRequest(input);
+    assertThat(output.targetWidth).isEqualTo(150);
+    assertThat(output.targetHeight).isEqualTo(75);
+    assertThat(output.centerCrop).isTrue();
+    assertThat(output.rotationDegrees).isEqualTo(90);
+
+    FakeThumbor thumbor = FakeThumbor.parse(HOST, output.uri.toString());
+    assertThat(thumbor.cropsToFill()).isTrue();
+    assertThat(thumbor.width).isEqualTo(200);
+    assertThat(thumbor.height).isEqualTo(100);
+    assertThat(thumbor.filters).isEmpty();
+  }
+
+  @Test public void bucketedResizesShareUrl() {
+    RequestTransformer bucketed =
+        new PollexorRequestTransformer(HOST, null, SizeBucketing.geometric(2));
+    Request small = new Request.Builder(IMAGE_URI).resize(90, 90).centerInside().build();
+    Request large = new Request.Builder(IMAGE_URI).resize(120, 120).centerInside().build();
+    Request smallOutput = bucketed.transformRequest(small);
+    Request largeOutput = bucketed.transformRequest(large);
+    assertThat(smallOutput.uri).isEqualTo(largeOutput.uri);
+    assertThat(smallOutput.centerInside).isTrue();
+    assertThat(smallOutput.targetWidth).isEqualTo(90);
+
+    FakeThumbor thumbor = FakeThumbor.parse(HOST, smallOutput.uri.toString());
+    assertThat(thumbor.fitIn).isTrue();
+    assertThat(thumbor.width).isEqualTo(128);
+  }
+
+  @Test public void bucketedResizeOnBucketIsExact() {
+    RequestTransformer bucketed =
+        new PollexorRequestTransformer(HOST, null, SizeBucketing.ladder(100, 200));
+    Request input = new Request.Builder(IMAGE_URI).resize(200, 50).centerCrop().build();
+    Request output = bucketed.transformRequest(input);
+    assertThat(output.hasSize()).isFalse();
+    assertThat(output.centerCrop).isFalse();
+  }
+
+  @Config(reportSdk = 18)
+  @Test public void webpIsRequestedWhereItDecodes() {
+    RequestTransformer webp = new PollexorRequestTransformer.Builder(HOST).webp(true).build();
+    Request input = new Request.Builder(IMAGE_URI).resize(50, 50).build();
+    Request output = webp.transformRequest(input);
+    assertThat(FakeThumbor.parse(HOST, output.uri.toString()).filters)
+        .containsExactly("format(webp)");
+  }
+
+  @Config(reportSdk = 16)
+  @Test public void webpIsNotRequestedOnOlderPlatforms() {
+    RequestTransformer webp = new PollexorRequestTransformer.Builder(HOST).webp(true).build();
+    Request input = new Request.Builder(IMAGE_URI).resize(50, 50).build();
+    Request output = webp.transformRequest(input);
+    assertThat(FakeThumbor.parse(HOST, output.uri.toString()).filters).isEmpty();
+  }
+
+  @Test public void qualityDependsOnNetworkType() {
+    PollexorRequestTransformer quality = new PollexorRequestTransformer.Builder(HOST) //
+        .quality(QualityPolicy.byNetwork(90, 60))
+        .build();
+    Request input = new Request.Builder(IMAGE_URI).resize(50, 50).build();
+    String wifi = quality.transformRequest(input, TYPE_WIFI).uri.toString();
+    String mobile = quality.transformRequest(input, TYPE_MOBILE).uri.toString();
+    String unknown = quality.transformRequest(input).uri.toString();
+    assertThat(FakeThumbor.parse(HOST, wifi).filters).containsExactly("quality(90)");
+    assertThat(FakeThumbor.parse(HOST, mobile).filters).containsExactly("quality(60)");
+    assertThat(unknown).isEqualTo(mobile);
+  }
+
+  @Test public void qualityIsNotPartOfStableKey() {
+    PollexorRequestTransformer quality = new PollexorRequestTransformer.Builder(HOST) //
+        .quality(QualityPolicy.byNetwork(90, 60))
+        .build();
+    Request input = new Request.Builder(IMAGE_URI).resize(50, 50).build();
+    Request wifi = quality.transformRequest(input, TYPE_WIFI);
+    Request mobile = quality.transformRequest(input, TYPE_MOBILE);
+    assertThat(wifi.uri).isNotEqualTo(mobile.uri);
+    assertThat(wifi.stableKey).isNotNull().isEqualTo(mobile.stableKey);
+
+    Request larger = new Request.Builder(IMAGE_URI).resize(60, 50).build();
+    assertThat(quality.transformRequest(larger, TYPE_WIFI).stableKey)
+        .isNotEqualTo(wifi.stableKey);
+    Request plain = new PollexorRequestTransformer(HOST).transformRequest(input);
+    assertThat(plain.stableKey).isNull();
+  }
+
+  @Test public void builderWithAllOptionsMatchesPollexor() {
+    RequestTransformer transformer = new PollexorRequestTransformer.Builder(HOST) //
+        .key(KEY)
+        .bucketing(SizeBucketing.ladder(64))
+        .quality(QualityPolicy.fixed(75))
+        .build();
+    Request input = new Request.Builder(IMAGE_URI).resize(64, 64).build();
+    Request output = transformer.transformRequest(input);
+
+    String expected =
+        Pollexor.image(IMAGE).host(HOST).key(KEY).resize(64, 64).filter("quality(75)").toUrl();
+    assertThat(output.uri.toString()).isEqualTo(expected);
+  }
+
+  @Test public void repeatedRequestsReuseUrl() {
+    PollexorRequestTransformer cached = new PollexorRequestTransformer(HOST, KEY);
+    Request input = new Request.Builder(IMAGE_URI).resize(50, 50).build();
+    Request first = cached.transformRequest(input);
+    Request second = cached.transformRequest(input);
+    assertThat(second.uri).isSameAs(first.uri);
+    assertThat(cached.urls).hasSize(1);
+
+    Request rotated = new Request.Builder(IMAGE_URI).resize(50, 50).rotate(90).build();
+    Request larger = new Request.Builder(IMAGE_URI).resize(60, 50).build();
+    Request inside = new Request.Builder(IMAGE_URI).resize(50, 50).centerInside().build();
+    assertThat(cached.transformRequest(rotated).uri).isNotEqualTo(first.uri);
+    assertThat(cached.transformRequest(larger).uri).isNotEqualTo(first.uri);
+    assertThat(cached.transformRequest(inside).uri).isNotEqualTo(first.uri);
+    assertThat(cached.urls).hasSize(4);
+  }
+
+  @Test public void urlCacheDistinguishesQuality() {
+    PollexorRequestTransformer quality = new PollexorRequestTransformer.Builder(HOST) //
+        .quality(QualityPolicy.byNetwork(90, 60))
+        .build();
+    Request input = new Request.Builder(IMAGE_URI).resize(50, 50).build();
+    Uri wifi = quality.transformRequest(input, TYPE_WIFI).uri;
+    Uri mobile = quality.transformRequest(input, TYPE_MOBILE).uri;
+    assertThat(wifi).isNotEqualTo(mobile);
+    assertThat(quality.transformRequest(input, TYPE_WIFI).uri).isSameAs(wifi);
+  }
+
+  @Test public void urlCacheEvictsLeastRecentlyUsed() {
+    PollexorRequestTransformer cached = new PollexorRequestTransformer.Builder(HOST) //
+        .urlCacheSize(2)
+        .build();
+    Request first = new Request.Builder(IMAGE_URI).resize(10, 10).build();
+    Request second = new Request.Builder(IMAGE_URI).resize(20, 20).build();
+    Request third = new Request.Builder(IMAGE_URI).resize(30, 30).build();
+    Uri firstUri = cached.transformRequest(first).uri;
+    Uri secondUri = cached.transformRequest(second).uri;
+    assertThat(cached.transformRequest(first).uri).isSameAs(firstUri);
+    cached.transformRequest(third);
+    assertThat(cached.urls).hasSize(2);
+    assertThat(cached.transformRequest(first).uri).isSameAs(firstUri);
+    Uri secondAgain = cached.transformRequest(second).uri;
+    assertThat(secondAgain).isNotSameAs(secondUri).isEqualTo(secondUri);
+  }
+
+  @Test public void urlCacheCanBeDisabled() {
+    PollexorRequestTransformer uncached = new PollexorRequestTransformer.Builder(HOST) //
+        .urlCacheSize(0)
+        .build();
+    assertThat(uncached.urls).isNull();
+    Request input = new Request.Builder(IMAGE_URI).resize(50, 50).build();
+    Uri first = uncached.transformRequest(input).uri;
+    assertThat(uncached.transformRequest(input).uri).isNotSameAs(first).isEqualTo(first);
+  }
+
+  @Test public void builderInvalidOptions() {
+    try {
+      new PollexorRequestTransformer.Builder(null);
+      fail("Null host should throw exception.");
+    } catch (IllegalArgumentException expected) {
+    }
+    try {
+      new PollexorRequestTransformer.Builder(HOST).key(KEY).key(KEY);
+      fail("Setting key twice should throw exception.");
+    } catch (IllegalStateException expected) {
+    }
+    try {
+      new PollexorRequestTransformer.Builder(HOST).quality(null);
+      fail("Null quality policy should throw exception.");
+    } catch (IllegalArgumentException expected) {
+    }
+    try {
+      new PollexorRequestTransformer.Builder(HOST).urlCacheSize(-1);
+      fail("Negative URL cache size should throw exception.");
+    } catch (IllegalArgumentException expected) {
+    }
+    try {
+      new PollexorRequestTransformer.Builder(HOST).urlCacheSize(10).urlCacheSize(10);
+      fail("Setting URL cache size twice should throw exception.");
+    } catch (IllegalStateException expected) {
+    }
+    try {
+      QualityPolicy.fixed(101);
+      fail("Quality above 100 should throw exception.");
+    } catch (IllegalArgumentException expected) {
+    }
+  }
+
   @Test public void simpleResizeWithEncryption() {
     Request input = new Request.Builder(IMAGE_URI).resize(50, 50).build();
     Request output = secureTransformer.transformRequest(input);
@@ -0,0 +1,59 @@
+package com.squareup.picasso.pollexor;
+
+import org.junit.Test;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+import static org.fest.assertions.api.Assertions.fail;
+
+public class SizeBucketingTest {
+  @Test public void noneKeepsSize() {
+    assertThat(SizeBucketing.NONE.bucket(123)).isEqualTo(123);
+  }
+
+  @Test public void geometricRoundsUpToPowers() {
+    SizeBucketing bucketing = SizeBucketing.geometric(2);
+    assertThat(bucketing.bucket(1)).isEqualTo(1);
+    assertThat(bucketing.bucket(64)).isEqualTo(64);
+    assertThat(bucketing.bucket(65)).isEqualTo(128);
+    assertThat(bucketing.bucket(100)).isEqualTo(128);
+
+    bucketing = SizeBucketing.geometric(1.5);
+    assertThat(bucketing.bucket(100)).isEqualTo(130);
+    assertThat(bucketing.bucket(130)).isEqualTo(130);
+    assertThat(bucketing.bucket(131)).isEqualTo(195);
+  }
+
+  @Test public void geometricBucketsAreNeverSmaller() {
+    SizeBucketing bucketing = SizeBucketing.geometric(1.1);
+    for (int size = 1; size < 5000; size++) {
+      assertThat(bucketing.bucket(size)).isGreaterThanOrEqualTo(size);
+    }
+  }
+
+  @Test public void ladderRoundsUpToNextStep() {
+    SizeBucketing bucketing = SizeBucketing.ladder(100, 200, 400);
+    assertThat(bucketing.bucket(50)).isEqualTo(100);
+    assertThat(bucketing.bucket(100)).isEqualTo(100);
+    assertThat(bucketing.bucket(101)).isEqualTo(200);
+    assertThat(bucketing.bucket(400)).isEqualTo(400);
+    assertThat(bucketing.bucket(401)).isEqualTo(401);
+  }
+
+  @Test public void invalidBuckets() {
+    try {
+      SizeBucketing.geometric(1);
+      fail("Factor of one should throw exception.");
+    } catch (IllegalArgumentException expected) {
+    }
+    try {
+      SizeBucketing.ladder();
+      fail("Empty ladder should throw exception.");
+    } catch (IllegalArgumentException expected) {
+    }
+    try {
+      SizeBucketing.ladder(200, 100);
+      fail("Descending ladder should throw exception.");
+    } catch (IllegalArgumentException expected) {
+    }
+  }
+}
@@ -0,0 +1,196 @@
+package com.squareup.picasso.pollexor;
+
+import android.net.ConnectivityManager;
+import android.net.Uri;
+import com.squareup.picasso.Request;
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+import static org.robolectric.annotation.Config.NONE;
+
+/**
+ * Prints the Thumbor URLs generated for a corpus of images on Wi-Fi and on a cellular network and
+ * the bytes they would save against downloading the originals. A fake Thumbor renders each URL
+ * with Java2D: it resizes like Thumbor and encodes JPEG at the requested quality. The JDK can not
+ * encode WebP, so the fake serves JPEG for {@code format(webp)} and the savings of WebP come on
+ * top of the ones reported. Not part of the regular test run, invoke it with:
+ * <pre>
+ * mvn test -Dtest=ThumborSavingsBenchmark -Dthumbor.corpus=/path/to/images
+ * </pre>
+ * The following system properties configure the run:
+ * <ul>
+ * <li>{@code thumbor.corpus}: directory of JPEG and PNG files, generated images by default.</li>
+ * <li>{@code thumbor.targetSize}: width and height images are center cropped to, defaults to
+ * 256.</li>
+ * <li>{@code thumbor.wifiQuality}: quality requested on Wi-Fi, defaults to 85.</li>
+ * <li>{@code thumbor.cellularQuality}: quality requested on cellular networks, defaults to
+ * 60.</li>
+ * </ul>
+ * Each line of the report starts with {@code thumbor-savings}.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = NONE, reportSdk = 18)
+public class ThumborSavingsBenchmark {
+  private static final String HOST = "http://thumbor.example.com/";
+
+  private final String corpusPath = System.getProperty("thumbor.corpus");
+  private final int targetSize = Integer.getInteger("thumbor.targetSize", 256);
+  private final int wifiQuality = Integer.getInteger("thumbor.wifiQuality", 85);
+  private final int cellularQuality = Integer.getInteger("thumbor.cellularQuality", 60);
+
+  @Test public void savings() throws Exception {
+    List<byte[]> corpus = corpusPath != null ? readCorpus(new File(corpusPath)) : createCorpus();
+    PollexorRequestTransformer transformer = new PollexorRequestTransformer.Builder(HOST) //
+        .webp(true)
+        .quality(QualityPolicy.byNetwork(wifiQuality, cellularQuality))
+        .build();
+
+    report(transformer, corpus, "wifi", ConnectivityManager.TYPE_WIFI);
+    report(transformer, corpus, "cellular", ConnectivityManager.TYPE_MOBILE);
+  }
+
+  private void report(PollexorRequestTransformer transformer, List<byte[]> corpus,
+      String network, int networkType) throws IOException {
+    long originBytes = 0;
+    long thumborBytes = 0;
+    String sampleUrl = null;
+    for (int i = 0; i < corpus.size(); i++) {
+      byte[] origin = corpus.get(i);
+      Request request = new Request.Builder(Uri.parse("http://images.example.com/" + i + ".jpg"))
+          .resize(targetSize, targetSize)
+          .centerCrop()
+          .build();
+      String url = transformer.transformRequest(request, networkType).uri.toString();
+      if (sampleUrl == null) {
+        sampleUrl = url;
+      }
+      byte[] rendered = render(FakeThumbor.parse(HOST, url), origin);
+      originBytes += origin.length;
+      thumborBytes += rendered.length;
+    }
+    assertThat(thumborBytes).isGreaterThan(0);
+    System.out.println("thumbor-savings {\"network\":\"" + network
+        + "\",\"images\":" + corpus.size()
+        + ",\"originBytes\":" + originBytes
+        + ",\"thumborBytes\":" + thumborBytes
+        + ",\"savedPercent\":" + (100 - thumborBytes * 100 / originBytes)
+        + ",\"sampleUrl\":\"" + sampleUrl + "\"}");
+  }
+
+  /** Renders the image the way Thumbor would answer {@code thumbor}. */
+  private static byte[] render(FakeThumbor thumbor, byte[] origin) throws IOException {
+    BufferedImage source = ImageIO.read(new ByteArrayInputStream(origin));
+    int width = thumbor.width;
+    int height = thumbor.height;
+    float scale = thumbor.cropsToFill()
+        ? Math.max((float) width / source.getWidth(), (float) height / source.getHeight())
+        : Math.min((float) width / source.getWidth(), (float) height / source.getHeight());
+    int scaledWidth = Math.round(source.getWidth() * scale);
+    int scaledHeight = Math.round(source.getHeight() * scale);
+    if (!thumbor.cropsToFill()) {
+      width = scaledWidth;
+      height = scaledHeight;
+    }
+    BufferedImage result = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+    Graphics2D graphics = result.createGraphics();
+    graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+        RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+    graphics.drawImage(source, (width - scaledWidth) / 2, (height - scaledHeight) / 2, scaledWidth,
+        scaledHeight, null);
+    graphics.dispose();
+
+    int quality = 80; // Thumbor's default.
+    for (String filter : thumbor.filters) {
+      if (filter.startsWith("quality(")) {
+        quality = Integer.parseInt(filter.substring(8, filter.length() - 1));
+      }
+    }
+    return encodeJpeg(result, quality);
+  }
+
+  private static byte[] encodeJpeg(BufferedImage image, int quality) throws IOException {
+    Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName("jpg");
+    ImageWriter writer = writers.next();
+    ImageWriteParam param = writer.getDefaultWriteParam();
+    param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+    param.setCompressionQuality(quality / 100f);
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    ImageOutputStream output = ImageIO.createImageOutputStream(bytes);
+    try {
+      writer.setOutput(output);
+      writer.write(null, new IIOImage(image, null, null), param);
+    } finally {
+      writer.dispose();
+      output.close();
+    }
+    return bytes.toByteArray();
+  }
+
+  private static List<byte[]> readCorpus(File directory) throws IOException {
+    File[] files = directory.listFiles();
+    if (files == null) {
+      throw new IOException("Not a directory: " + directory);
+    }
+    List<byte[]> corpus = new ArrayList<byte[]>();
+    for (File file : files) {
+      String name = file.getName().toLowerCase();
+      if (!name.endsWith(".jpg") && !name.endsWith(".jpeg") && !name.endsWith(".png")) {
+        continue;
+      }
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      ImageIO.write(ImageIO.read(file), name.endsWith(".png") ? "png" : "jpg", bytes);
+      corpus.add(bytes.toByteArray());
+    }
+    return corpus;
+  }
+
+  /** Renders noisy gradients of camera-like sizes, encoded as JPEG and PNG in turn. */
+  private static List<byte[]> createCorpus() throws IOException {
+    Random random = new Random(1);
+    List<byte[]> corpus = new ArrayList<byte[]>();
+    for (int i = 0; i < 24; i++) {
+      int width = 800 + random.nextInt(1200);
+      int height = 600 + random.nextInt(1000);
+      BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+      Graphics2D graphics = image.createGraphics();
+      graphics.setPaint(new GradientPaint(0, 0, new Color(random.nextInt()), width, height,
+          new Color(random.nextInt())));
+      graphics.fillRect(0, 0, width, height);
+      for (int j = 0; j < 200; j++) {
+        graphics.setColor(new Color(random.nextInt()));
+        graphics.fillOval(random.nextInt(width), random.nextInt(height), 10 + random.nextInt(90),
+            10 + random.nextInt(90));
+      }
+      graphics.dispose();
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      if (i % 2 == 0) {
+        bytes.write(encodeJpeg(image, 92));
+      } else {
+        ImageIO.write(image, "png", bytes);
+      }
+      corpus.add(bytes.toByteArray());
+    }
+    return corpus;
+  }
+}
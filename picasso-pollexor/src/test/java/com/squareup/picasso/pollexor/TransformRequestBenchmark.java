@@ -0,0 +1,76 @@
+package com.squareup.picasso.pollexor;
+
+import android.net.ConnectivityManager;
+import android.net.Uri;
+import com.squareup.picasso.Request;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+import static org.robolectric.annotation.Config.NONE;
+
+/**
+ * Measures what {@link PollexorRequestTransformer#transformRequest} costs the main thread for every
+ * bind of a signed Thumbor URL with and without the URL cache. Each round binds {@code images}
+ * distinct images so that lists which scroll back and forth are represented. Not part of the
+ * regular test run, invoke it with:
+ * <pre>
+ * mvn test -Dtest=TransformRequestBenchmark -Dtransform.images=50
+ * </pre>
+ * Each line of the report starts with {@code transform-request}.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = NONE)
+public class TransformRequestBenchmark {
+  private static final String HOST = "http://thumbor.example.com/";
+  private static final String KEY = "omgsecretpassword";
+  private static final int WARMUP_ROUNDS = 200;
+  private static final int ROUNDS = 1000;
+
+  private final int images = Integer.getInteger("transform.images", 50);
+
+  @Test public void transformRequest() {
+    Request[] requests = new Request[images];
+    for (int i = 0; i < images; i++) {
+      requests[i] = new Request.Builder(Uri.parse("http://images.example.com/" + i + ".jpg")) //
+          .resize(320, 240)
+          .centerCrop()
+          .build();
+    }
+
+    PollexorRequestTransformer uncached = new PollexorRequestTransformer.Builder(HOST) //
+        .key(KEY)
+        .quality(QualityPolicy.byNetwork(85, 60))
+        .urlCacheSize(0)
+        .build();
+    PollexorRequestTransformer cached = new PollexorRequestTransformer.Builder(HOST) //
+        .key(KEY)
+        .quality(QualityPolicy.byNetwork(85, 60))
+        .urlCacheSize(Math.max(1, images))
+        .build();
+
+    long uncachedNanos = measure(uncached, requests);
+    long cachedNanos = measure(cached, requests);
+    assertThat(cachedNanos).isGreaterThan(0);
+    System.out.println("transform-request {\"images\":" + images
+        + ",\"uncachedNanosPerBind\":" + uncachedNanos
+        + ",\"cachedNanosPerBind\":" + cachedNanos + "}");
+  }
+
+  private static long measure(PollexorRequestTransformer transformer, Request[] requests) {
+    run(transformer, requests, WARMUP_ROUNDS);
+    long start = System.nanoTime();
+    run(transformer, requests, ROUNDS);
+    return (System.nanoTime() - start) / ((long) ROUNDS * requests.length);
+  }
+
+  private static void run(PollexorRequestTransformer transformer, Request[] requests, int rounds) {
+    for (int round = 0; round < rounds; round++) {
+      for (Request request : requests) {
+        transformer.transformRequest(request, ConnectivityManager.TYPE_WIFI);
+      }
+    }
+  }
+}
@@ -31,15 +31,17 @@ abstract class Action<T> {
   }
 
   final Picasso picasso;
-  final Request data;
+  Request data;
   final WeakReference<T> target;
   final boolean skipCache;
   final boolean noFade;
   final int errorResId;
   final Drawable errorDrawable;
-  final String key;
+  String key;
 
   boolean cancelled;
+  /** Whether the request still has to be transformed by the dispatcher. */
+  boolean transformPending;
 
   Action(Picasso picasso, T target, Request data, boolean skipCache, boolean noFade,
       int errorResId, Drawable errorDrawable, String key) {
@@ -51,12 +53,20 @@ abstract class Action<T> {
     this.errorResId = errorResId;
     this.errorDrawable = errorDrawable;
     this.key = key;
+    this.transformPending = picasso.asyncRequestTransformer;
   }
 
   abstract void complete(Bitmap result, Picasso.LoadedFrom from);
 
   abstract void error();
 
+  /** Replaces the request made on the main thread with its transformation. Dispatcher only. */
+  void setTransformed(Request data, String key) {
+    this.data = data;
+    this.key = key;
+    this.transformPending = false;
+  }
+
   void cancel() {
     cancelled = true;
   }
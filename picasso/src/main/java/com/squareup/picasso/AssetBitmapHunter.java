@@ -28,9 +28,8 @@ class AssetBitmapHunter extends BitmapHunter {
   }
 
   Bitmap decodeAsset(String filePath) throws IOException {
-    BitmapFactory.Options options = null;
-    if (data.hasSize()) {
-      options = new BitmapFactory.Options();
+    BitmapFactory.Options options = createDecodeOptions();
+    if (requiresBoundsPass()) {
       options.inJustDecodeBounds = true;
       InputStream is = null;
       try {
@@ -39,7 +38,7 @@ class AssetBitmapHunter extends BitmapHunter {
       } finally {
         Utils.closeQuietly(is);
       }
-      calculateInSampleSize(data.targetWidth, data.targetHeight, options);
+      prepareDecode(options);
     }
     InputStream is = assetManager.open(filePath);
     try {
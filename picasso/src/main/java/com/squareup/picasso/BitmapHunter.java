@@ -29,6 +29,7 @@ import java.util.concurrent.Future;
 import static android.content.ContentResolver.SCHEME_ANDROID_RESOURCE;
 import static android.content.ContentResolver.SCHEME_CONTENT;
 import static android.content.ContentResolver.SCHEME_FILE;
+import static android.graphics.Bitmap.Config.ARGB_8888;
 import static android.provider.ContactsContract.Contacts;
 import static com.squareup.picasso.Picasso.LoadedFrom.MEMORY;
 
@@ -58,6 +59,11 @@ abstract class BitmapHunter implements Runnable {
   Picasso.LoadedFrom loadedFrom;
   Exception exception;
   int exifRotation; // Determined during decoding of original resource.
+  int retryAttempt; // Number of times this hunter has been resubmitted after a failure.
+  volatile boolean cancelled; // Set by the dispatcher, polled by the hunting thread.
+  long reservedBytes; // Decode memory reserved from the Picasso instance's decode budget.
+  // The options of the decode in flight, if any. Aborted from the dispatcher thread.
+  private volatile BitmapFactory.Options inFlightOptions;
 
   BitmapHunter(Picasso picasso, Dispatcher dispatcher, Cache cache, Stats stats, Action action) {
     this.picasso = picasso;
@@ -76,51 +82,143 @@ abstract class BitmapHunter implements Runnable {
   }
 
   @Override public void run() {
+    // Naming the thread after the request allocates, so it only helps while tracing.
+    boolean tracing = picasso.tracing;
     try {
-      Thread.currentThread().setName(Utils.THREAD_PREFIX + data.getName());
+      if (tracing) {
+        Thread.currentThread().setName(Utils.THREAD_PREFIX + data.getName());
+      }
 
       result = hunt();
 
-      if (result == null) {
-        dispatcher.dispatchFailed(this);
-      } else {
+      if (result != null) {
         dispatcher.dispatchComplete(this);
+      } else if (!cancelled) {
+        dispatcher.dispatchFailed(this);
       }
     } catch (IOException e) {
-      exception = e;
-      dispatcher.dispatchRetry(this);
+      // A cancelled hunter's stream is closed underneath it. There is nobody left to retry for.
+      if (!cancelled) {
+        exception = e;
+        dispatcher.dispatchRetry(this);
+      }
     } finally {
-      Thread.currentThread().setName(Utils.THREAD_IDLE_NAME);
+      if (tracing) {
+        Thread.currentThread().setName(Utils.THREAD_IDLE_NAME);
+      }
     }
   }
 
   abstract Bitmap decode(Request data) throws IOException;
 
   Bitmap hunt() throws IOException {
-    Bitmap bitmap;
+    try {
+      return huntInternal();
+    } finally {
+      inFlightOptions = null;
+      if (reservedBytes > 0) {
+        picasso.decodeBudget.release(reservedBytes);
+        reservedBytes = 0;
+      }
+    }
+  }
+
+  private Bitmap huntInternal() throws IOException {
+    Bitmap bitmap = null;
+    EventListener eventListener = picasso.eventListener;
+    boolean tracing = picasso.tracing;
 
     if (!skipMemoryCache) {
       bitmap = cache.get(key);
       if (bitmap != null) {
+        // The miss was reported by the check on the main thread, only a late hit is news.
+        if (eventListener != null) {
+          eventListener.cacheHit(key, System.nanoTime());
+        }
         stats.dispatchCacheHit();
         loadedFrom = MEMORY;
         return bitmap;
       }
     }
 
-    bitmap = decode(data);
+    Cache intermediateCache = null;
+    int stage = -1; // Custom transformations already applied to a bitmap from the cache.
+    if (!skipMemoryCache && data.hasCustomTransformations()) {
+      intermediateCache = picasso.intermediateCache;
+      if (intermediateCache != null) {
+        for (int i = data.transformations.size() - 1; i >= 0 && stage < 0; i--) {
+          Bitmap cached = intermediateCache.get(Utils.createKey(data, i));
+          if (cached != null) {
+            // Transformations may recycle their input, so the cached stage must stay intact.
+            bitmap = copy(cached);
+            if (bitmap == null) {
+              // Decode the source rather than failing the request. Its stage replaces the entry.
+              break;
+            }
+            stage = i;
+            loadedFrom = MEMORY;
+          }
+        }
+      }
+    }
 
-    if (bitmap != null) {
+    if (stage < 0) {
+      if (eventListener != null) {
+        eventListener.decodeStart(key, System.nanoTime());
+      }
+      if (tracing) {
+        Tracer.beginSection("Picasso:decode");
+      }
+      try {
+        bitmap = decode(data);
+      } finally {
+        if (tracing) {
+          Tracer.endSection();
+        }
+        if (eventListener != null) {
+          eventListener.decodeEnd(key, System.nanoTime());
+        }
+      }
+      if (bitmap == null) {
+        return null;
+      }
       stats.dispatchBitmapDecoded(bitmap);
-      if (data.needsTransformation()) {
-        synchronized (DECODE_LOCK) {
-          if (data.needsMatrixTransform() || exifRotation != 0) {
-            bitmap = transformResult(data, bitmap, exifRotation);
+    }
+
+    if (data.needsTransformation()) {
+      synchronized (DECODE_LOCK) {
+        if (cancelled) {
+          if (stage < 0) {
+            stats.dispatchBitmapWasted(bitmap);
+          }
+          return null;
+        }
+        if (eventListener != null) {
+          eventListener.transformStart(key, System.nanoTime());
+        }
+        if (stage < 0 && (data.needsMatrixTransform() || exifRotation != 0)) {
+          if (tracing) {
+            Tracer.beginSection("Picasso:transformResult");
           }
-          if (data.hasCustomTransformations()) {
-            bitmap = applyCustomTransformations(data.transformations, bitmap);
+          try {
+            bitmap = transformResult(data, bitmap, exifRotation);
+          } finally {
+            if (tracing) {
+              Tracer.endSection();
+            }
           }
         }
+        if (intermediateCache != null) {
+          bitmap = applyTransformationStages(intermediateCache, bitmap, stage);
+        } else if (data.hasCustomTransformations()) {
+          bitmap = applyCustomTransformations(data.transformations, 0,
+              data.transformations.size(), bitmap, getTransformationBuffers(), tracing);
+        }
+        if (eventListener != null) {
+          eventListener.transformEnd(key, System.nanoTime());
+        }
+      }
+      if (bitmap != null) {
         stats.dispatchBitmapTransformed(bitmap);
       }
     }
@@ -128,6 +226,107 @@ abstract class BitmapHunter implements Runnable {
     return bitmap;
   }
 
+  /**
+   * Applies the custom transformations after the first {@code stage} ones, which were applied to
+   * the cached {@code bitmap} already, or all of them if {@code stage} is negative. The input of
+   * the last transformation is kept in {@code intermediateCache} for requests whose chains only
+   * differ in their last transformation. Only that stage is copied, since the transformation may
+   * recycle its input.
+   */
+  private Bitmap applyTransformationStages(Cache intermediateCache, Bitmap bitmap, int stage) {
+    List<Transformation> transformations = data.transformations;
+    TransformationBuffers buffers = getTransformationBuffers();
+    boolean tracing = picasso.tracing;
+    int count = transformations.size();
+    int last = count - 1;
+    int start = Math.max(stage, 0);
+    if (start < last) {
+      bitmap = applyCustomTransformations(transformations, start, last, bitmap, buffers, tracing);
+    }
+    if (stage < last) {
+      Bitmap copy = copy(bitmap);
+      if (copy != null) {
+        intermediateCache.set(Utils.createKey(data, last), bitmap);
+        bitmap = copy;
+      }
+    }
+    return applyCustomTransformations(transformations, last, count, bitmap, buffers, tracing);
+  }
+
+  /** A copy of {@code bitmap} which transformations may recycle, null if it cannot be copied. */
+  private static Bitmap copy(Bitmap bitmap) {
+    Bitmap.Config config = bitmap.getConfig() != null ? bitmap.getConfig() : ARGB_8888;
+    return bitmap.copy(config, true);
+  }
+
+  /**
+   * The buffers of the Picasso instance if this request has a {@link PooledTransformation}, null
+   * otherwise so that the buffers are only created once they are needed.
+   */
+  private TransformationBuffers getTransformationBuffers() {
+    for (Transformation transformation : data.transformations) {
+      if (transformation instanceof PooledTransformation) {
+        return picasso.getTransformationBuffers();
+      }
+    }
+    return null;
+  }
+
+  /**
+   * {@code true} if the image bounds must be decoded before the image itself, either to pick a
+   * sample size for the target size or to reserve memory from the decode budget.
+   */
+  boolean requiresBoundsPass() {
+    return data.hasSize() || picasso.decodeBudget != null;
+  }
+
+  /**
+   * Creates the options for decoding the image of this hunter. Decodes always use these, even
+   * without a bounds pass, so that {@link #onCancel()} can abort them.
+   */
+  BitmapFactory.Options createDecodeOptions() {
+    BitmapFactory.Options options = new BitmapFactory.Options();
+    inFlightOptions = options;
+    if (cancelled) {
+      // Cancelled before onCancel() could see these options.
+      options.requestCancelDecode();
+    }
+    return options;
+  }
+
+  /**
+   * Prepares {@code options} for decoding once its bounds are known. This picks the sample size and
+   * may block until the decode budget has room for the decoded image.
+   */
+  void prepareDecode(BitmapFactory.Options options) throws IOException {
+    if (data.hasSize()) {
+      calculateInSampleSize(data.targetWidth, data.targetHeight, options);
+    } else {
+      options.inJustDecodeBounds = false;
+    }
+    DecodeBudget decodeBudget = picasso.decodeBudget;
+    if (decodeBudget != null) {
+      reservedBytes += decodeBudget.reserve(options, this);
+    }
+  }
+
+  /**
+   * {@code true} if a thumbnail of {@code thumbnailWidth} by {@code thumbnailHeight} is at least
+   * as large as the target size and has the aspect ratio of the full image.
+   */
+  static boolean isThumbnailUsable(Request data, int width, int height, int thumbnailWidth,
+      int thumbnailHeight) {
+    if (!data.hasSize() || width <= 0 || height <= 0) {
+      return false;
+    }
+    if (data.targetWidth > thumbnailWidth || data.targetHeight > thumbnailHeight) {
+      return false;
+    }
+    // Thumbnails of another aspect ratio are letterboxed or cropped. Allow for rounding only.
+    long difference = Math.abs((long) width * thumbnailHeight - (long) height * thumbnailWidth);
+    return difference * 50 <= (long) height * thumbnailHeight;
+  }
+
   void attach(Action action) {
     actions.add(action);
   }
@@ -137,7 +336,28 @@ abstract class BitmapHunter implements Runnable {
   }
 
   boolean cancel() {
-    return actions.isEmpty() && future != null && future.cancel(false);
+    if (actions.isEmpty() && future != null && future.cancel(false)) {
+      cancelled = true;
+      onCancel();
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Called on the dispatcher thread once this hunter was cancelled. This aborts the decode in
+   * flight, subclasses also abort any other blocking work so the hunting thread is released as
+   * soon as possible.
+   */
+  void onCancel() {
+    BitmapFactory.Options options = inFlightOptions;
+    if (options != null) {
+      options.requestCancelDecode();
+    }
+    DecodeBudget decodeBudget = picasso.decodeBudget;
+    if (decodeBudget != null) {
+      decodeBudget.hunterCancelled();
+    }
   }
 
   boolean isCancelled() {
@@ -152,10 +372,34 @@ abstract class BitmapHunter implements Runnable {
     return false;
   }
 
+  /**
+   * {@code true} if this hunter may be parked while the device is offline and replayed once
+   * connectivity is restored.
+   */
+  boolean supportsReplay() {
+    return false;
+  }
+
+  /** The highest priority of all attached actions. */
+  Picasso.Priority getPriority() {
+    Picasso.Priority priority = data.priority;
+    for (int i = 0, count = actions.size(); i < count; i++) {
+      Picasso.Priority actionPriority = actions.get(i).getData().priority;
+      if (actionPriority.ordinal() > priority.ordinal()) {
+        priority = actionPriority;
+      }
+    }
+    return priority;
+  }
+
   Bitmap getResult() {
     return result;
   }
 
+  Picasso getPicasso() {
+    return picasso;
+  }
+
   String getKey() {
     return key;
   }
@@ -216,10 +460,52 @@ abstract class BitmapHunter implements Runnable {
     options.inJustDecodeBounds = false;
   }
 
-  static Bitmap applyCustomTransformations(List<Transformation> transformations, Bitmap result) {
-    for (int i = 0, count = transformations.size(); i < count; i++) {
+  /**
+   * Applies {@code transformations} to {@code result}. {@link PooledTransformation}s draw into
+   * buffers from {@code buffers}, so consecutive pooled transformations ping-pong between two
+   * buffers and only the final result is newly allocated once the pool is warm.
+   */
+  static Bitmap applyCustomTransformations(List<Transformation> transformations, Bitmap result,
+      TransformationBuffers buffers) {
+    return applyCustomTransformations(transformations, 0, transformations.size(), result, buffers,
+        false);
+  }
+
+  /**
+   * Applies the transformations from {@code start} up to but excluding {@code end}, each in a
+   * systrace section named after its key if {@code tracing}.
+   */
+  static Bitmap applyCustomTransformations(List<Transformation> transformations, int start,
+      int end, Bitmap result, TransformationBuffers buffers, boolean tracing) {
+    Bitmap pooled = null; // The current result if it is a buffer owned by this pipeline.
+    for (int i = start; i < end; i++) {
       Transformation transformation = transformations.get(i);
-      Bitmap newResult = transformation.transform(result);
+      if (transformation instanceof PooledTransformation) {
+        if (tracing) {
+          Tracer.beginSection(transformation.key());
+        }
+        try {
+          result = applyPooledTransformation((PooledTransformation) transformation, result,
+              result == pooled, buffers);
+        } finally {
+          if (tracing) {
+            Tracer.endSection();
+          }
+        }
+        pooled = result;
+        continue;
+      }
+      Bitmap newResult;
+      if (tracing) {
+        Tracer.beginSection(transformation.key());
+      }
+      try {
+        newResult = transformation.transform(result);
+      } finally {
+        if (tracing) {
+          Tracer.endSection();
+        }
+      }
 
       if (newResult == null) {
         StringBuilder builder = new StringBuilder() //
@@ -250,6 +536,40 @@ abstract class BitmapHunter implements Runnable {
     return result;
   }
 
+  private static Bitmap applyPooledTransformation(PooledTransformation transformation,
+      Bitmap source, boolean sourceIsBuffer, TransformationBuffers buffers) {
+    int sourceWidth = source.getWidth();
+    int sourceHeight = source.getHeight();
+    int width = transformation.getOutputWidth(sourceWidth, sourceHeight);
+    int height = transformation.getOutputHeight(sourceWidth, sourceHeight);
+    if (width <= 0 || height <= 0) {
+      throw new IllegalStateException("Transformation "
+          + transformation.key()
+          + " returned an invalid output size "
+          + width
+          + "x"
+          + height
+          + '.');
+    }
+
+    // Other bitmaps may be mutable but still be used elsewhere, e.g. by the downloader.
+    if (sourceIsBuffer && transformation.canTransformInPlace() && width == sourceWidth
+        && height == sourceHeight) {
+      transformation.transform(source, source);
+      return source;
+    }
+
+    Bitmap.Config config = source.getConfig() != null ? source.getConfig() : ARGB_8888;
+    Bitmap destination = buffers.acquire(width, height, config);
+    transformation.transform(source, destination);
+    if (sourceIsBuffer) {
+      buffers.release(source);
+    } else {
+      source.recycle();
+    }
+    return destination;
+  }
+
   static Bitmap transformResult(Request data, Bitmap result, int exifRotation) {
     int inWidth = result.getWidth();
     int inHeight = result.getHeight();
@@ -0,0 +1,25 @@
+/*
+ * Copyright (C) 2013 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squareup.picasso;
+
+/**
+ * A {@link Downloader} which may keep the responses it served in a disk cache. Sources are only
+ * prefetched with such downloaders, see {@link SourcePrefetcher}.
+ */
+interface CachingDownloader extends Downloader {
+  /** {@code true} if responses which were read to the end are served from a disk cache later. */
+  boolean hasDiskCache();
+}
@@ -73,9 +73,8 @@ class ContactsPhotoBitmapHunter extends BitmapHunter {
     if (stream == null) {
       return null;
     }
-    BitmapFactory.Options options = null;
-    if (data.hasSize()) {
-      options = new BitmapFactory.Options();
+    BitmapFactory.Options options = createDecodeOptions();
+    if (requiresBoundsPass()) {
       options.inJustDecodeBounds = true;
       InputStream is = getInputStream();
       try {
@@ -83,7 +82,7 @@ class ContactsPhotoBitmapHunter extends BitmapHunter {
       } finally {
         Utils.closeQuietly(is);
       }
-      calculateInSampleSize(data.targetWidth, data.targetHeight, options);
+      prepareDecode(options);
     }
     return BitmapFactory.decodeStream(stream, null, options);
   }
@@ -16,14 +16,22 @@
 package com.squareup.picasso;
 
 import android.content.ContentResolver;
+import android.content.ContentUris;
 import android.content.Context;
 import android.database.Cursor;
 import android.graphics.Bitmap;
 import android.net.Uri;
 import android.provider.MediaStore;
 import java.io.IOException;
+import java.util.List;
+
+import static android.provider.MediaStore.Images.Thumbnails;
+import static android.provider.MediaStore.Images.Thumbnails.MINI_KIND;
 
 class ContentProviderBitmapHunter extends ContentStreamBitmapHunter {
+  // The bounds of MediaStore mini thumbnails.
+  private static final int MINI_THUMBNAIL_MAX_SIDE = 512;
+  private static final int MINI_THUMBNAIL_MIN_SIDE = 384;
   private static final String[] CONTENT_ORIENTATION = new String[] {
       MediaStore.Images.ImageColumns.ORIENTATION
   };
@@ -34,10 +42,55 @@ class ContentProviderBitmapHunter extends ContentStreamBitmapHunter {
   }
 
   @Override Bitmap decode(Request data) throws IOException {
-    setExifRotation(getContentProviderExifRotation(context.getContentResolver(), data.uri));
+    ContentResolver contentResolver = context.getContentResolver();
+    setExifRotation(getContentProviderExifRotation(contentResolver, data.uri));
+    if (picasso.useThumbnails && data.hasSize() && isMediaStoreImage(data.uri)) {
+      Bitmap thumbnail = decodeMediaStoreThumbnail(contentResolver, data);
+      if (thumbnail != null) {
+        stats.dispatchThumbnailHit();
+        return thumbnail;
+      }
+      stats.dispatchThumbnailMiss();
+    }
     return super.decodeContentStream(data);
   }
 
+  /**
+   * Loads the {@link Thumbnails#MINI_KIND} thumbnail of a MediaStore image if it is large enough
+   * for the target size. Mini thumbnails keep the aspect ratio of the image.
+   */
+  static Bitmap decodeMediaStoreThumbnail(ContentResolver contentResolver, Request data) {
+    int targetMax = Math.max(data.targetWidth, data.targetHeight);
+    int targetMin = Math.min(data.targetWidth, data.targetHeight);
+    if (targetMax > MINI_THUMBNAIL_MAX_SIDE || targetMin > MINI_THUMBNAIL_MIN_SIDE) {
+      return null;
+    }
+    long id;
+    try {
+      id = ContentUris.parseId(data.uri);
+    } catch (NumberFormatException e) {
+      return null;
+    }
+    Bitmap thumbnail = Thumbnails.getThumbnail(contentResolver, id, MINI_KIND, null);
+    if (thumbnail == null) {
+      return null;
+    }
+    if (thumbnail.getWidth() < data.targetWidth || thumbnail.getHeight() < data.targetHeight) {
+      thumbnail.recycle();
+      return null;
+    }
+    return thumbnail;
+  }
+
+  /** {@code true} for URIs of the form {@code content://media/<volume>/images/media/<id>}. */
+  static boolean isMediaStoreImage(Uri uri) {
+    List<String> segments = uri.getPathSegments();
+    return MediaStore.AUTHORITY.equals(uri.getAuthority())
+        && segments.size() == 4
+        && "images".equals(segments.get(1))
+        && "media".equals(segments.get(2));
+  }
+
   static int getContentProviderExifRotation(ContentResolver contentResolver, Uri uri) {
     Cursor cursor = null;
     try {
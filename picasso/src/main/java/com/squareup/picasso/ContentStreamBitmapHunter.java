@@ -44,9 +44,8 @@ class ContentStreamBitmapHunter extends BitmapHunter {
 
   protected Bitmap decodeContentStream(Request data) throws IOException {
     ContentResolver contentResolver = context.getContentResolver();
-    BitmapFactory.Options options = null;
-    if (data.hasSize()) {
-      options = new BitmapFactory.Options();
+    BitmapFactory.Options options = createDecodeOptions();
+    if (requiresBoundsPass()) {
       options.inJustDecodeBounds = true;
       InputStream is = null;
       try {
@@ -55,7 +54,7 @@ class ContentStreamBitmapHunter extends BitmapHunter {
       } finally {
         Utils.closeQuietly(is);
       }
-      calculateInSampleSize(data.targetWidth, data.targetHeight, options);
+      prepareDecode(options);
     }
     InputStream is = contentResolver.openInputStream(data.uri);
     try {
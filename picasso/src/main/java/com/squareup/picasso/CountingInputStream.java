@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2013 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squareup.picasso;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * An input stream wrapper that counts the bytes read from the underlying stream and optionally
+ * fails once more than a limit has been read.
+ */
+final class CountingInputStream extends FilterInputStream {
+  private final long limit;
+  private volatile long count;
+
+  CountingInputStream(InputStream in) {
+    this(in, 0);
+  }
+
+  /** Reads at most {@code limit} bytes from {@code in}, {@code 0} for no limit. */
+  CountingInputStream(InputStream in, long limit) {
+    super(in);
+    this.limit = limit;
+  }
+
+  /** The number of bytes read or skipped so far. */
+  long getCount() {
+    return count;
+  }
+
+  /** {@code true} if reading stopped because the stream is longer than the limit. */
+  boolean isLimitExceeded() {
+    return limit > 0 && count > limit;
+  }
+
+  @Override public int read() throws IOException {
+    int result = in.read();
+    if (result != -1) {
+      count(1);
+    }
+    return result;
+  }
+
+  @Override public int read(byte[] buffer, int offset, int length) throws IOException {
+    int result = in.read(buffer, offset, length);
+    if (result != -1) {
+      count(result);
+    }
+    return result;
+  }
+
+  @Override public long skip(long byteCount) throws IOException {
+    long result = in.skip(byteCount);
+    count(result);
+    return result;
+  }
+
+  private void count(long byteCount) throws IOException {
+    count += byteCount;
+    if (isLimitExceeded()) {
+      throw new IOException("Stream exceeds " + limit + " bytes.");
+    }
+  }
+
+  @Override public boolean markSupported() {
+    // Resetting would count bytes twice so leave marking to an outer stream.
+    return false;
+  }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (C) 2013 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squareup.picasso;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import java.io.InterruptedIOException;
+
+/**
+ * Limits the amount of memory that concurrent decodes may allocate. Hunters reserve the estimated
+ * size of their decoded bitmap after the bounds pass and release it once they are done. A decode
+ * that would not fit even into an empty budget is sampled down until it does, a decode that does
+ * not fit next to the other reservations blocks until enough memory has been released or its
+ * hunter is cancelled.
+ */
+final class DecodeBudget {
+  final long maxBytes;
+  private long reservedBytes;
+
+  DecodeBudget(long maxBytes) {
+    if (maxBytes <= 0) {
+      throw new IllegalArgumentException("Decode budget must be positive.");
+    }
+    this.maxBytes = maxBytes;
+  }
+
+  /**
+   * Reserves memory for decoding with {@code options} whose bounds were already decoded. The
+   * sample size of {@code options} may be increased. Returns the number of bytes reserved which
+   * must be handed back to {@link #release(long)}. Waiting for memory ends with an
+   * {@link InterruptedIOException} once {@code hunter} is cancelled.
+   */
+  long reserve(BitmapFactory.Options options, BitmapHunter hunter)
+      throws InterruptedIOException {
+    if (options.outWidth <= 0 || options.outHeight <= 0) {
+      // Unknown bounds, the decoder will most likely fail on its own.
+      return 0;
+    }
+    int sampleSize = Math.max(1, options.inSampleSize);
+    int largestSide = Math.max(options.outWidth, options.outHeight);
+    long bytes = estimate(options.outWidth, options.outHeight, sampleSize,
+        options.inPreferredConfig);
+    while (bytes > maxBytes && sampleSize < largestSide) {
+      sampleSize *= 2;
+      bytes = estimate(options.outWidth, options.outHeight, sampleSize, options.inPreferredConfig);
+    }
+    options.inSampleSize = sampleSize;
+
+    synchronized (this) {
+      while (reservedBytes > 0 && reservedBytes + bytes > maxBytes) {
+        if (hunter.cancelled) {
+          throw new InterruptedIOException("Cancelled while waiting for decode memory.");
+        }
+        try {
+          wait();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new InterruptedIOException("Interrupted while waiting for decode memory.");
+        }
+      }
+      reservedBytes += bytes;
+    }
+    return bytes;
+  }
+
+  synchronized void release(long bytes) {
+    reservedBytes -= bytes;
+    notifyAll();
+  }
+
+  /** Wakes up waiting hunters so that those which were cancelled stop waiting. */
+  synchronized void hunterCancelled() {
+    notifyAll();
+  }
+
+  synchronized long getReservedBytes() {
+    return reservedBytes;
+  }
+
+  /**
+   * Estimates the size of a bitmap decoded from an image of the given size. Decoders may round the
+   * sample size down to a power of two so the estimate does as well.
+   */
+  static long estimate(int width, int height, int sampleSize, Bitmap.Config config) {
+    int powerOfTwo = Integer.highestOneBit(Math.max(1, sampleSize));
+    long sampledWidth = (width + powerOfTwo - 1) / powerOfTwo;
+    long sampledHeight = (height + powerOfTwo - 1) / powerOfTwo;
+    return sampledWidth * sampledHeight * getBytesPerPixel(config);
+  }
+
+  private static int getBytesPerPixel(Bitmap.Config config) {
+    if (config == null) {
+      return 4;
+    }
+    switch (config) {
+      case ALPHA_8:
+        return 1;
+      case RGB_565:
+      case ARGB_4444:
+        return 2;
+      default:
+        return 4;
+    }
+  }
+}
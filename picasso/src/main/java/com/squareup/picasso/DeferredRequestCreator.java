@@ -15,6 +15,7 @@
  */
 package com.squareup.picasso;
 
+import android.net.Uri;
 import android.view.ViewTreeObserver;
 import android.widget.ImageView;
 import java.lang.ref.WeakReference;
@@ -25,6 +26,12 @@ class DeferredRequestCreator implements ViewTreeObserver.OnPreDrawListener {
   final RequestCreator creator;
   final WeakReference<ImageView> target;
   Callback callback;
+  /** The source prefetched for this request, set before the prefetch is dispatched. */
+  Uri prefetchUri;
+  /** The largest source in bytes which is prefetched, {@code 0} for no limit. */
+  long prefetchMaxSize;
+  // Whether the dispatcher still counts this request as a user of the prefetch. Main thread only.
+  boolean prefetching;
 
   @TestOnly DeferredRequestCreator(RequestCreator creator, ImageView target) {
     this(creator, target, null);
@@ -56,12 +63,22 @@ class DeferredRequestCreator implements ViewTreeObserver.OnPreDrawListener {
 
     vto.removeOnPreDrawListener(this);
 
+    // Release the prefetch only after the sized request was submitted, it then waits for it.
+    boolean releasePrefetch = prefetching;
+    prefetching = false;
     this.creator.unfit().resize(width, height).into(target, callback);
+    if (releasePrefetch) {
+      creator.picasso.dispatcher.dispatchPrefetchRelease(this);
+    }
     return true;
   }
 
   void cancel() {
     callback = null;
+    if (prefetching) {
+      prefetching = false;
+      creator.picasso.dispatcher.dispatchPrefetchRelease(this);
+    }
     ImageView target = this.target.get();
     if (target == null) {
       return;
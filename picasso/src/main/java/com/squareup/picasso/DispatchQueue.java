@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) 2013 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squareup.picasso;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A lock-free queue of dispatcher events which any thread may add to and a single thread drains.
+ * Producers only have to wake the consumer when it is not draining already, so a burst of events
+ * costs a single wake-up instead of one message each.
+ */
+final class DispatchQueue {
+  static final class Event {
+    final int what;
+    final int arg;
+    Object obj;
+    volatile Event next;
+
+    Event(int what, Object obj, int arg) {
+      this.what = what;
+      this.obj = obj;
+      this.arg = arg;
+    }
+  }
+
+  private final AtomicReference<Event> tail;
+  private final AtomicBoolean awake = new AtomicBoolean();
+  /** The last consumed event, only accessed by the consumer. */
+  private Event head;
+
+  DispatchQueue() {
+    head = new Event(0, null, 0);
+    tail = new AtomicReference<Event>(head);
+  }
+
+  /**
+   * Adds an event. Returns true if the caller has to wake the consumer, which then drains until
+   * {@link #onDrained()} says otherwise.
+   */
+  boolean offer(int what, Object obj, int arg) {
+    Event event = new Event(what, obj, arg);
+    Event previous = tail.getAndSet(event);
+    previous.next = event;
+    return awake.compareAndSet(false, true);
+  }
+
+  /** Removes the eldest event, null if there is none. Must only be called by the consumer. */
+  Event poll() {
+    Event next = head.next;
+    if (next == null) {
+      if (head == tail.get()) {
+        return null;
+      }
+      // A producer has claimed the tail but not linked its event yet, it is about to.
+      while ((next = head.next) == null) {
+        Thread.yield();
+      }
+    }
+    head.obj = null;
+    head = next;
+    return next;
+  }
+
+  /**
+   * Called by the consumer once {@link #poll()} returned null. Returns true if events arrived in
+   * the meantime and the consumer has to drain again.
+   */
+  boolean onDrained() {
+    head.obj = null;
+    awake.set(false);
+    return head != tail.get() && awake.compareAndSet(false, true);
+  }
+}
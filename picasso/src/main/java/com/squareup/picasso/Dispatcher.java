@@ -22,15 +22,22 @@ import android.content.Intent;
 import android.content.IntentFilter;
 import android.net.ConnectivityManager;
 import android.net.NetworkInfo;
+import android.net.Uri;
 import android.os.Bundle;
 import android.os.Handler;
 import android.os.HandlerThread;
 import android.os.Looper;
 import android.os.Message;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
 import java.util.concurrent.ExecutorService;
 
 import static android.content.Context.CONNECTIVITY_SERVICE;
@@ -40,7 +47,11 @@ import static android.os.Process.THREAD_PRIORITY_BACKGROUND;
 import static com.squareup.picasso.BitmapHunter.forRequest;
 
 class Dispatcher {
-  private static final int RETRY_DELAY = 500;
+  static final int RETRY_DELAY = 500; // ms
+  static final int MAX_RETRY_DELAY = 8000; // ms
+  static final int MAX_PARKED_HUNTERS = 32;
+  /** Warm start hunters running at once, so that they never queue ahead of the app's requests. */
+  static final int MAX_WARM_START_HUNTERS = 1;
   private static final int AIRPLANE_MODE_ON = 1;
   private static final int AIRPLANE_MODE_OFF = 0;
 
@@ -54,38 +65,75 @@ class Dispatcher {
   static final int HUNTER_BATCH_COMPLETE = 8;
   static final int NETWORK_STATE_CHANGE = 9;
   static final int AIRPLANE_MODE_CHANGE = 10;
+  static final int REQUEST_PREFETCH = 11;
+  static final int PREFETCH_COMPLETE = 12;
+  static final int REQUEST_BATCH = 13;
+  static final int LISTENER_EVENT = 14;
+  static final int REQUEST_TRANSFORMED_CACHED = 15;
+  static final int WARM_START_LOAD = 16;
+  static final int WARM_START_SAVE = 17;
+  static final int PREFETCH_RELEASE = 18;
+  static final int DISPATCHER_SHUTDOWN = 19;
 
   private static final String DISPATCHER_THREAD_NAME = "Dispatcher";
+  private static final String SCHEME_HTTP = "http";
+  private static final String SCHEME_HTTPS = "https";
   private static final int BATCH_DELAY = 200; // ms
+  private static final int MAX_EVENTS_PER_DRAIN = 64;
+  // Systrace section names of the events, indexed by their code.
+  private static final String[] EVENT_SECTIONS = {
+      null, "Picasso:submit", "Picasso:cancel", null, "Picasso:complete", "Picasso:retry",
+      "Picasso:error", "Picasso:batchComplete", null, "Picasso:networkStateChange",
+      "Picasso:airplaneModeChange", "Picasso:prefetch", "Picasso:prefetchComplete",
+      "Picasso:batch", "Picasso:listenerEvent", null, "Picasso:warmStartLoad",
+      "Picasso:warmStartSave", "Picasso:prefetchRelease", "Picasso:shutdown"
+  };
 
   final DispatcherThread dispatcherThread;
   final Context context;
   final ExecutorService service;
   final Downloader downloader;
   final Map<String, BitmapHunter> hunterMap;
+  final Map<String, BitmapHunter> parkedHunterMap;
+  final Map<String, SourcePrefetcher> prefetcherMap;
+  final LinkedList<Action> warmStartQueue;
+  final List<BitmapHunter> warmStartHunters;
   final Handler handler;
+  final DispatchQueue events;
   final Handler mainThreadHandler;
   final Cache cache;
   final Stats stats;
+  /** Whether events are performed in systrace sections. */
+  final boolean tracing;
   final List<BitmapHunter> batch;
   final NetworkBroadcastReceiver receiver;
+  final Random random;
 
   NetworkInfo networkInfo;
+  /** The type of the connected network, {@code -1} if disconnected or unknown. Read anywhere. */
+  volatile int networkType = -1;
   boolean airplaneMode;
 
   Dispatcher(Context context, ExecutorService service, Handler mainThreadHandler,
-      Downloader downloader, Cache cache, Stats stats) {
+      Downloader downloader, Cache cache, Stats stats, boolean tracing) {
     this.dispatcherThread = new DispatcherThread();
     this.dispatcherThread.start();
     this.context = context;
     this.service = service;
     this.hunterMap = new LinkedHashMap<String, BitmapHunter>();
+    this.parkedHunterMap = new LinkedHashMap<String, BitmapHunter>();
+    this.prefetcherMap = new LinkedHashMap<String, SourcePrefetcher>();
+    this.warmStartQueue = new LinkedList<Action>();
+    this.warmStartHunters = new ArrayList<BitmapHunter>(MAX_WARM_START_HUNTERS);
     this.handler = new DispatcherHandler(dispatcherThread.getLooper());
+    this.events = new DispatchQueue();
     this.downloader = downloader;
     this.mainThreadHandler = mainThreadHandler;
     this.cache = cache;
     this.stats = stats;
+    this.tracing = tracing;
     this.batch = new ArrayList<BitmapHunter>(4);
+    this.random = new Random();
     this.airplaneMode = Utils.isAirplaneModeOn(this.context);
     this.receiver = new NetworkBroadcastReceiver(this.context);
     receiver.register();
@@ -93,43 +141,100 @@ class Dispatcher {
 
   void shutdown() {
     service.shutdown();
-    dispatcherThread.quit();
+    // Events which are already queued are performed before the dispatcher thread quits.
+    enqueue(DISPATCHER_SHUTDOWN, null, 0);
     receiver.unregister();
   }
 
   void dispatchSubmit(Action action) {
-    handler.sendMessage(handler.obtainMessage(REQUEST_SUBMIT, action));
+    enqueue(REQUEST_SUBMIT, action, 0);
   }
 
   void dispatchCancel(Action action) {
-    handler.sendMessage(handler.obtainMessage(REQUEST_CANCEL, action));
+    enqueue(REQUEST_CANCEL, action, 0);
+  }
+
+  void dispatchBatch(Picasso.Batch batch) {
+    enqueue(REQUEST_BATCH, batch, 0);
+  }
+
+  /** Delivers an event which happened on the main thread to its listener. */
+  void dispatchEvent(EventListener.Pending event) {
+    enqueue(LISTENER_EVENT, event, 0);
+  }
+
+  /** Loads the images of the warm start snapshot of {@code picasso} at low priority. */
+  void dispatchWarmStartLoad(Picasso picasso) {
+    enqueue(WARM_START_LOAD, picasso, 0);
+  }
+
+  void dispatchWarmStartSave(WarmStart warmStart) {
+    enqueue(WARM_START_SAVE, warmStart, 0);
+  }
+
+  void dispatchPrefetch(DeferredRequestCreator request) {
+    enqueue(REQUEST_PREFETCH, request, 0);
+  }
+
+  void dispatchPrefetchRelease(DeferredRequestCreator request) {
+    enqueue(PREFETCH_RELEASE, request, 0);
+  }
+
+  void dispatchPrefetchComplete(SourcePrefetcher prefetcher) {
+    enqueue(PREFETCH_COMPLETE, prefetcher, 0);
   }
 
   void dispatchComplete(BitmapHunter hunter) {
-    handler.sendMessage(handler.obtainMessage(HUNTER_COMPLETE, hunter));
+    enqueue(HUNTER_COMPLETE, hunter, 0);
   }
 
   void dispatchRetry(BitmapHunter hunter) {
-    handler.sendMessageDelayed(handler.obtainMessage(HUNTER_RETRY, hunter), RETRY_DELAY);
+    long delay = getRetryDelay(hunter.retryAttempt, random);
+    handler.sendMessageDelayed(handler.obtainMessage(HUNTER_RETRY, hunter), delay);
   }
 
   void dispatchFailed(BitmapHunter hunter) {
-    handler.sendMessage(handler.obtainMessage(HUNTER_DECODE_FAILED, hunter));
+    enqueue(HUNTER_DECODE_FAILED, hunter, 0);
   }
 
   void dispatchNetworkStateChange(NetworkInfo info) {
-    handler.sendMessage(handler.obtainMessage(NETWORK_STATE_CHANGE, info));
+    enqueue(NETWORK_STATE_CHANGE, info, 0);
   }
 
   void dispatchAirplaneModeChange(boolean airplaneMode) {
-    handler.sendMessage(handler.obtainMessage(AIRPLANE_MODE_CHANGE,
-        airplaneMode ? AIRPLANE_MODE_ON : AIRPLANE_MODE_OFF, 0));
+    enqueue(AIRPLANE_MODE_CHANGE, null, airplaneMode ? AIRPLANE_MODE_ON : AIRPLANE_MODE_OFF);
+  }
+
+  /**
+   * Drains the event queue on the dispatcher thread. After a bounded number of events the drain
+   * yields to the handler so that delayed messages such as retries are not starved.
+   */
+  void drainEvents() {
+    for (int i = 0; i < MAX_EVENTS_PER_DRAIN; i++) {
+      DispatchQueue.Event event = events.poll();
+      if (event == null) {
+        if (events.onDrained()) {
+          handler.post(eventDrainer);
+        }
+        return;
+      }
+      handleEvent(event.what, event.obj, event.arg);
+    }
+    handler.post(eventDrainer);
   }
 
   void performSubmit(Action action) {
+    if (action.transformPending && !performTransform(action)) {
+      return;
+    }
+
+    EventListener eventListener = action.getPicasso().eventListener;
     BitmapHunter hunter = hunterMap.get(action.getKey());
     if (hunter != null) {
       hunter.attach(action);
+      if (eventListener != null) {
+        eventListener.requestCoalesced(action.getKey(), System.nanoTime());
+      }
       return;
     }
 
@@ -138,21 +243,200 @@ class Dispatcher {
     }
 
     hunter = forRequest(context, action.getPicasso(), this, cache, stats, action, downloader);
-    hunter.future = service.submit(hunter);
     hunterMap.put(action.getKey(), hunter);
+    if (eventListener != null) {
+      eventListener.requestSubmitted(action.getKey(), System.nanoTime());
+    }
+
+    SourcePrefetcher prefetcher = getPrefetcher(action.getData().uri);
+    if (prefetcher != null) {
+      // Hunt once the source is in the disk cache rather than downloading it twice.
+      prefetcher.waitingHunters.add(hunter);
+      return;
+    }
+    hunter.future = service.submit(hunter);
+  }
+
+  /**
+   * Applies the request transformer to an action whose request was made on the main thread and
+   * checks the memory cache again for the transformed request. Returns {@code false} if the image
+   * is already cached, the action is then completed on the main thread.
+   */
+  private boolean performTransform(Action action) {
+    Picasso picasso = action.getPicasso();
+    String key = action.getKey();
+    Request request = action.getData();
+    Request transformed = picasso.transformRequest(request);
+    String transformedKey = Utils.createKey(transformed);
+    action.setTransformed(transformed, transformedKey);
+    if (!transformedKey.equals(key)) {
+      picasso.putTransformedKey(key, transformedKey);
+      if (picasso.warmStart != null) {
+        picasso.warmStart.putUntransformed(transformedKey, request);
+      }
+    }
+    if (!action.skipCache && cache.get(transformedKey) != null) {
+      mainThreadHandler.sendMessage(
+          mainThreadHandler.obtainMessage(REQUEST_TRANSFORMED_CACHED, action));
+      return false;
+    }
+    return true;
   }
 
   void performCancel(Action action) {
     String key = action.getKey();
+    EventListener eventListener = action.getPicasso().eventListener;
+    if (eventListener != null) {
+      eventListener.cancelled(key, System.nanoTime());
+    }
     BitmapHunter hunter = hunterMap.get(key);
     if (hunter != null) {
       hunter.detach(action);
       if (hunter.cancel()) {
         hunterMap.remove(key);
+      } else if (hunter.getActions().isEmpty()
+          && (parkedHunterMap.remove(key) != null || removeWaitingHunter(hunter))) {
+        // Parked and waiting hunters are not running so there is no future to cancel.
+        hunterMap.remove(key);
       }
     }
   }
 
+  /** Performs the cancels of a batch and then its submits, highest priority first. */
+  void performBatch(Picasso.Batch batch) {
+    for (Action action : batch.cancels) {
+      performCancel(action);
+    }
+    Collections.sort(batch.submits, ACTION_PRIORITY_ORDER);
+    for (Action action : batch.submits) {
+      performSubmit(action);
+    }
+  }
+
+  /**
+   * Queues the requests of the warm start snapshot. They are submitted one after the other, so the
+   * requests of the app wait for at most one of them in the executor's queue.
+   */
+  void performWarmStartLoad(Picasso picasso) {
+    WarmStart warmStart = picasso.warmStart;
+    for (Request request : warmStart.load()) {
+      String key = Utils.createKey(request);
+      Request untransformed = warmStart.getUntransformed(key);
+      if (untransformed != null && picasso.asyncRequestTransformer) {
+        // Lets the main thread find the image before the dispatcher transformed the app's request.
+        picasso.putTransformedKey(Utils.createKey(untransformed), key);
+      }
+      warmStartQueue.add(new WarmStartAction(picasso, request, key));
+    }
+    submitWarmStart();
+  }
+
+  private void submitWarmStart() {
+    while (warmStartHunters.size() < MAX_WARM_START_HUNTERS && !warmStartQueue.isEmpty()) {
+      Action action = warmStartQueue.removeFirst();
+      performSubmit(action);
+      BitmapHunter hunter = hunterMap.get(action.getKey());
+      // Images found by the transform check or requests made after shutdown start no hunt.
+      if (hunter != null && hunter.getActions().contains(action)
+          && !warmStartHunters.contains(hunter)) {
+        warmStartHunters.add(hunter);
+      }
+    }
+  }
+
+  private void finishWarmStart(BitmapHunter hunter) {
+    if (warmStartHunters.remove(hunter)) {
+      submitWarmStart();
+    }
+  }
+
+  void performWarmStartSave(WarmStart warmStart) {
+    try {
+      warmStart.save();
+    } catch (IOException ignored) {
+      // The next process starts cold.
+    }
+  }
+
+  void performPrefetch(DeferredRequestCreator request) {
+    Uri uri = request.prefetchUri;
+    String scheme = uri.getScheme();
+    if (!SCHEME_HTTP.equals(scheme) && !SCHEME_HTTPS.equals(scheme)) {
+      return;
+    }
+    String key = uri.toString();
+    SourcePrefetcher prefetcher = prefetcherMap.get(key);
+    if (prefetcher == null) {
+      // Without a disk cache the prefetched source would be downloaded again by the hunters.
+      if (service.isShutdown() || !(downloader instanceof CachingDownloader)
+          || !((CachingDownloader) downloader).hasDiskCache()) {
+        return;
+      }
+      prefetcher = new SourcePrefetcher(this, downloader, uri, request.prefetchMaxSize);
+      prefetcher.future = service.submit(prefetcher);
+      prefetcherMap.put(key, prefetcher);
+    }
+    prefetcher.deferredRequests.add(request);
+  }
+
+  /**
+   * Drops the reference of a deferred request which was either submitted with its size or
+   * cancelled. The prefetch is cancelled once no other deferred request or hunter needs it.
+   */
+  void performPrefetchRelease(DeferredRequestCreator request) {
+    for (SourcePrefetcher prefetcher : prefetcherMap.values()) {
+      if (prefetcher.deferredRequests.remove(request)) {
+        cancelUnusedPrefetcher(prefetcher);
+        return;
+      }
+    }
+  }
+
+  void performPrefetchComplete(SourcePrefetcher prefetcher) {
+    if (prefetcher.isCancelled()) {
+      // Already removed from the map, nobody was waiting for it.
+      return;
+    }
+    prefetcherMap.remove(prefetcher.uri.toString());
+    if (service.isShutdown()) {
+      return;
+    }
+    for (BitmapHunter hunter : prefetcher.waitingHunters) {
+      hunter.future = service.submit(hunter);
+    }
+    prefetcher.waitingHunters.clear();
+  }
+
+  private SourcePrefetcher getPrefetcher(Uri uri) {
+    return uri != null && !prefetcherMap.isEmpty() ? prefetcherMap.get(uri.toString()) : null;
+  }
+
+  private boolean removeWaitingHunter(BitmapHunter hunter) {
+    SourcePrefetcher prefetcher = getPrefetcher(hunter.getData().uri);
+    if (prefetcher == null || !prefetcher.waitingHunters.remove(hunter)) {
+      return false;
+    }
+    cancelUnusedPrefetcher(prefetcher);
+    return true;
+  }
+
+  private void cancelUnusedPrefetcher(SourcePrefetcher prefetcher) {
+    if (prefetcher.deferredRequests.isEmpty() && prefetcher.waitingHunters.isEmpty()
+        && prefetcher.cancel()) {
+      prefetcherMap.remove(prefetcher.uri.toString());
+    }
+  }
+
+  /** Cancels the prefetches, which nobody waits for any more, and stops the dispatcher thread. */
+  void performShutdown() {
+    for (SourcePrefetcher prefetcher : prefetcherMap.values()) {
+      prefetcher.cancel();
+    }
+    prefetcherMap.clear();
+    warmStartQueue.clear();
+    dispatcherThread.quit();
+  }
+
   void performRetry(BitmapHunter hunter) {
     if (hunter.isCancelled()) return;
 
@@ -161,7 +445,17 @@ class Dispatcher {
       return;
     }
 
+    if (hunter.supportsReplay() && !isConnected()) {
+      park(hunter);
+      return;
+    }
+
     if (hunter.shouldRetry(airplaneMode, networkInfo)) {
+      hunter.retryAttempt++;
+      EventListener eventListener = hunter.getPicasso().eventListener;
+      if (eventListener != null) {
+        eventListener.retried(hunter.getKey(), hunter.retryAttempt, System.nanoTime());
+      }
       hunter.future = service.submit(hunter);
     } else {
       performError(hunter);
@@ -171,9 +465,14 @@ class Dispatcher {
   void performComplete(BitmapHunter hunter) {
     if (!hunter.shouldSkipMemoryCache()) {
       cache.set(hunter.getKey(), hunter.getResult());
+      WarmStart warmStart = hunter.getPicasso().warmStart;
+      if (warmStart != null) {
+        warmStart.put(hunter.getKey(), hunter.getData());
+      }
     }
     hunterMap.remove(hunter.getKey());
     batch(hunter);
+    finishWarmStart(hunter);
   }
 
   void performBatchComplete() {
@@ -185,17 +484,86 @@ class Dispatcher {
   void performError(BitmapHunter hunter) {
     hunterMap.remove(hunter.getKey());
     batch(hunter);
+    finishWarmStart(hunter);
   }
 
   void performAirplaneModeChange(boolean airplaneMode) {
     this.airplaneMode = airplaneMode;
+    // Without network state information leaving airplane mode is the only connectivity signal.
+    if (networkInfo == null && isConnected()) {
+      flushParkedHunters();
+    }
   }
 
   void performNetworkStateChange(NetworkInfo info) {
     networkInfo = info;
+    networkType = info != null && info.isConnectedOrConnecting() ? info.getType() : -1;
     if (service instanceof PicassoExecutorService) {
       ((PicassoExecutorService) service).adjustThreadCount(info);
     }
+    if (info != null && info.isConnectedOrConnecting()) {
+      flushParkedHunters();
+    }
+  }
+
+  /**
+   * Replays all parked hunters in priority order. Hunters of equal priority are replayed in the
+   * order in which they were parked.
+   */
+  void flushParkedHunters() {
+    if (parkedHunterMap.isEmpty()) {
+      return;
+    }
+    List<BitmapHunter> hunters = new ArrayList<BitmapHunter>(parkedHunterMap.values());
+    parkedHunterMap.clear();
+    Collections.sort(hunters, PRIORITY_ORDER);
+    for (BitmapHunter hunter : hunters) {
+      if (service.isShutdown()) {
+        performError(hunter);
+        continue;
+      }
+      hunter.retryAttempt = 0;
+      hunter.future = service.submit(hunter);
+    }
+  }
+
+  /**
+   * Holds on to a hunter which failed while the device was offline. Parked hunters stay in the
+   * hunter map so new requests for the same key are still attached to them, but they do not occupy
+   * a thread until they are replayed. When the limit is reached the eldest parked hunter fails.
+   */
+  private void park(BitmapHunter hunter) {
+    if (parkedHunterMap.size() >= MAX_PARKED_HUNTERS) {
+      Iterator<BitmapHunter> iterator = parkedHunterMap.values().iterator();
+      BitmapHunter eldest = iterator.next();
+      iterator.remove();
+      performError(eldest);
+    }
+    parkedHunterMap.put(hunter.getKey(), hunter);
+  }
+
+  private boolean isConnected() {
+    if (networkInfo != null) {
+      return networkInfo.isConnectedOrConnecting();
+    }
+    return !airplaneMode;
+  }
+
+  /**
+   * Exponential backoff with jitter. The delay doubles with every attempt up to {@link
+   * #MAX_RETRY_DELAY} and a random value between half and all of it is used so that hunters which
+   * failed together do not all retry at the same instant.
+   */
+  static long getRetryDelay(int attempt, Random random) {
+    int delay = attempt >= 5 ? MAX_RETRY_DELAY : Math.min(RETRY_DELAY << attempt, MAX_RETRY_DELAY);
+    int half = delay / 2;
+    return half + random.nextInt(half + 1);
+  }
+
+  private void enqueue(int what, Object obj, int arg) {
+    if (events.offer(what, obj, arg)) {
+      handler.post(eventDrainer);
+    }
   }
 
   private void batch(BitmapHunter hunter) {
@@ -208,54 +576,129 @@ class Dispatcher {
     }
   }
 
+  private static final Comparator<BitmapHunter> PRIORITY_ORDER = new Comparator<BitmapHunter>() {
+    @Override public int compare(BitmapHunter lhs, BitmapHunter rhs) {
+      return rhs.getPriority().ordinal() - lhs.getPriority().ordinal();
+    }
+  };
+
+  private static final Comparator<Action> ACTION_PRIORITY_ORDER = new Comparator<Action>() {
+    @Override public int compare(Action lhs, Action rhs) {
+      return rhs.getData().priority.ordinal() - lhs.getData().priority.ordinal();
+    }
+  };
+
+  private final Runnable eventDrainer = new Runnable() {
+    @Override public void run() {
+      drainEvents();
+    }
+  };
+
+  void handleEvent(int what, Object obj, int arg) {
+    if (!tracing) {
+      performEvent(what, obj, arg);
+      return;
+    }
+    Tracer.beginSection(EVENT_SECTIONS[what]);
+    try {
+      performEvent(what, obj, arg);
+    } finally {
+      Tracer.endSection();
+    }
+  }
+
+  private void performEvent(int what, Object obj, int arg) {
+    switch (what) {
+      case REQUEST_SUBMIT: {
+        Action action = (Action) obj;
+        performSubmit(action);
+        break;
+      }
+      case REQUEST_CANCEL: {
+        Action action = (Action) obj;
+        performCancel(action);
+        break;
+      }
+      case HUNTER_COMPLETE: {
+        BitmapHunter hunter = (BitmapHunter) obj;
+        performComplete(hunter);
+        break;
+      }
+      case HUNTER_RETRY: {
+        BitmapHunter hunter = (BitmapHunter) obj;
+        performRetry(hunter);
+        break;
+      }
+      case HUNTER_DECODE_FAILED: {
+        BitmapHunter hunter = (BitmapHunter) obj;
+        performError(hunter);
+        break;
+      }
+      case HUNTER_DELAY_NEXT_BATCH: {
+        performBatchComplete();
+        break;
+      }
+      case NETWORK_STATE_CHANGE: {
+        NetworkInfo info = (NetworkInfo) obj;
+        performNetworkStateChange(info);
+        break;
+      }
+      case AIRPLANE_MODE_CHANGE: {
+        performAirplaneModeChange(arg == AIRPLANE_MODE_ON);
+        break;
+      }
+      case REQUEST_PREFETCH: {
+        DeferredRequestCreator request = (DeferredRequestCreator) obj;
+        performPrefetch(request);
+        break;
+      }
+      case PREFETCH_RELEASE: {
+        DeferredRequestCreator request = (DeferredRequestCreator) obj;
+        performPrefetchRelease(request);
+        break;
+      }
+      case REQUEST_BATCH: {
+        Picasso.Batch batch = (Picasso.Batch) obj;
+        performBatch(batch);
+        break;
+      }
+      case LISTENER_EVENT: {
+        EventListener.Pending event = (EventListener.Pending) obj;
+        event.deliver();
+        break;
+      }
+      case WARM_START_LOAD: {
+        Picasso picasso = (Picasso) obj;
+        performWarmStartLoad(picasso);
+        break;
+      }
+      case WARM_START_SAVE: {
+        WarmStart warmStart = (WarmStart) obj;
+        performWarmStartSave(warmStart);
+        break;
+      }
+      case PREFETCH_COMPLETE: {
+        SourcePrefetcher prefetcher = (SourcePrefetcher) obj;
+        performPrefetchComplete(prefetcher);
+        break;
+      }
+      case DISPATCHER_SHUTDOWN: {
+        performShutdown();
+        break;
+      }
+      default:
+        throw new AssertionError("Unknown dispatcher event received: " + what);
+    }
+  }
+
+  /** Receives the delayed retries and batch completions and wakes up the event drain. */
   private class DispatcherHandler extends Handler {
     public DispatcherHandler(Looper looper) {
       super(looper);
     }
 
     @Override public void handleMessage(Message msg) {
-      switch (msg.what) {
-        case REQUEST_SUBMIT: {
-          Action action = (Action) msg.obj;
-          performSubmit(action);
-          break;
-        }
-        case REQUEST_CANCEL: {
-          Action action = (Action) msg.obj;
-          performCancel(action);
-          break;
-        }
-        case HUNTER_COMPLETE: {
-          BitmapHunter hunter = (BitmapHunter) msg.obj;
-          performComplete(hunter);
-          break;
-        }
-        case HUNTER_RETRY: {
-          BitmapHunter hunter = (BitmapHunter) msg.obj;
-          performRetry(hunter);
-          break;
-        }
-        case HUNTER_DECODE_FAILED: {
-          BitmapHunter hunter = (BitmapHunter) msg.obj;
-          performError(hunter);
-          break;
-        }
-        case HUNTER_DELAY_NEXT_BATCH: {
-          performBatchComplete();
-          break;
-        }
-        case NETWORK_STATE_CHANGE: {
-          NetworkInfo info = (NetworkInfo) msg.obj;
-          performNetworkStateChange(info);
-          break;
-        }
-        case AIRPLANE_MODE_CHANGE: {
-          performAirplaneModeChange(msg.arg1 == AIRPLANE_MODE_ON);
-          break;
-        }
-        default:
-          throw new AssertionError("Unknown handler message received: " + msg.what);
-      }
+      handleEvent(msg.what, msg.obj, msg.arg1);
     }
   }
 
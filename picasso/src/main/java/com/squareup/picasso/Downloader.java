@@ -40,6 +40,7 @@ public interface Downloader {
     final InputStream stream;
     final Bitmap bitmap;
     final boolean cached;
+    final long contentLength;
 
     /**
      * Response image and info.
@@ -54,6 +55,7 @@ public interface Downloader {
       this.stream = null;
       this.bitmap = bitmap;
       this.cached = loadedFromCache;
+      this.contentLength = -1;
     }
 
     /**
@@ -63,12 +65,24 @@ public interface Downloader {
      * @param loadedFromCache {@code true} if the source of the stream is from a local disk cache.
      */
     public Response(InputStream stream, boolean loadedFromCache) {
+      this(stream, loadedFromCache, -1);
+    }
+
+    /**
+     * Response stream and info.
+     *
+     * @param stream Image data stream.
+     * @param loadedFromCache {@code true} if the source of the stream is from a local disk cache.
+     * @param contentLength The number of bytes in the stream, {@code -1} if unknown.
+     */
+    public Response(InputStream stream, boolean loadedFromCache, long contentLength) {
       if (stream == null) {
         throw new IllegalArgumentException("Stream may not be null.");
       }
       this.stream = stream;
       this.bitmap = null;
       this.cached = loadedFromCache;
+      this.contentLength = contentLength;
     }
 
     /**
@@ -88,5 +102,10 @@ public interface Downloader {
     public Bitmap getBitmap() {
       return bitmap;
     }
+
+    /** The number of bytes in {@link #getInputStream()}, {@code -1} if unknown. */
+    public long getContentLength() {
+      return contentLength;
+    }
   }
 }
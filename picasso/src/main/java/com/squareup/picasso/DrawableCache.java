@@ -0,0 +1,57 @@
+/*
+ * Copyright (C) 2013 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squareup.picasso;
+
+import android.content.res.Resources;
+import android.graphics.drawable.Drawable;
+import android.util.SparseArray;
+
+/**
+ * Placeholder and error drawables by resource ID. Each resource is inflated once, later lookups
+ * create a drawable from its {@link Drawable.ConstantState}. Drawables are handed out mutated so
+ * that fading one placeholder does not affect the others. Only accessed from the main thread.
+ */
+final class DrawableCache {
+  private final Resources resources;
+  private final SparseArray<Drawable.ConstantState> states;
+
+  DrawableCache(Resources resources) {
+    this.resources = resources;
+    this.states = new SparseArray<Drawable.ConstantState>();
+  }
+
+  Drawable get(int resId) {
+    Drawable.ConstantState state = states.get(resId);
+    if (state != null) {
+      return state.newDrawable(resources).mutate();
+    }
+    Drawable drawable = resources.getDrawable(resId);
+    state = drawable.getConstantState();
+    if (state != null) {
+      states.put(resId, state);
+    }
+    return drawable.mutate();
+  }
+
+  int size() {
+    return states.size();
+  }
+
+  /** Drops all states, for instance because the configuration picks other resources now. */
+  void clear() {
+    states.clear();
+  }
+}
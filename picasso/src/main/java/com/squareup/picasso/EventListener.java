@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) 2013 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squareup.picasso;
+
+/**
+ * Receives the events of the request pipeline, e.g. to export metrics. Each event carries the key
+ * of the request and the {@link System#nanoTime()} at which it happened. Events are never delivered
+ * on the main thread: those which happen there are handed to the dispatcher thread, all others are
+ * delivered on the dispatcher or hunter thread they happen on. Implementations must therefore be
+ * thread-safe and return quickly. All methods do nothing by default.
+ * <p>
+ * For network requests the download is decoded as it streams in, so the download lies within the
+ * decode.
+ */
+public abstract class EventListener {
+  /** A request was submitted and a new hunter was started for it. */
+  public void requestSubmitted(String key, long nanoTime) {
+  }
+
+  /** A request was attached to the hunter already running for the same key. */
+  public void requestCoalesced(String key, long nanoTime) {
+  }
+
+  /**
+   * The memory cache held the image for a request. Also reported after a miss when the image
+   * reached the cache before the hunter for the request looked it up.
+   */
+  public void cacheHit(String key, long nanoTime) {
+  }
+
+  /** The memory cache did not hold the image when a request was made on the main thread. */
+  public void cacheMiss(String key, long nanoTime) {
+  }
+
+  public void downloadStart(String key, long nanoTime) {
+  }
+
+  /** The download ended, successfully or not, after {@code byteCount} bytes were read. */
+  public void downloadEnd(String key, long byteCount, long nanoTime) {
+  }
+
+  public void decodeStart(String key, long nanoTime) {
+  }
+
+  public void decodeEnd(String key, long nanoTime) {
+  }
+
+  public void transformStart(String key, long nanoTime) {
+  }
+
+  public void transformEnd(String key, long nanoTime) {
+  }
+
+  /** The image or error of a request was delivered to its target. */
+  public void delivered(String key, long nanoTime) {
+  }
+
+  public void cancelled(String key, long nanoTime) {
+  }
+
+  /** A failed hunt will be attempted again, {@code attempt} counts from 1. */
+  public void retried(String key, int attempt, long nanoTime) {
+  }
+
+  /** An event which happened on the main thread, delivered later on the dispatcher thread. */
+  static final class Pending {
+    static final int CACHE_HIT = 0;
+    static final int CACHE_MISS = 1;
+    static final int DELIVERED = 2;
+
+    final EventListener listener;
+    final int type;
+    final String key;
+    final long nanoTime;
+
+    Pending(EventListener listener, int type, String key, long nanoTime) {
+      this.listener = listener;
+      this.type = type;
+      this.key = key;
+      this.nanoTime = nanoTime;
+    }
+
+    void deliver() {
+      switch (type) {
+        case CACHE_HIT:
+          listener.cacheHit(key, nanoTime);
+          break;
+        case CACHE_MISS:
+          listener.cacheMiss(key, nanoTime);
+          break;
+        case DELIVERED:
+          listener.delivered(key, nanoTime);
+          break;
+        default:
+          throw new AssertionError("Unknown event type: " + type);
+      }
+    }
+  }
+}
@@ -17,41 +17,83 @@ package com.squareup.picasso;
 
 import android.content.Context;
 import android.graphics.Bitmap;
-import android.media.ExifInterface;
-import android.net.Uri;
+import android.graphics.BitmapFactory;
+import java.io.FileDescriptor;
 import java.io.IOException;
-
-import static android.media.ExifInterface.ORIENTATION_NORMAL;
-import static android.media.ExifInterface.ORIENTATION_ROTATE_180;
-import static android.media.ExifInterface.ORIENTATION_ROTATE_270;
-import static android.media.ExifInterface.ORIENTATION_ROTATE_90;
-import static android.media.ExifInterface.TAG_ORIENTATION;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 
 class FileBitmapHunter extends ContentStreamBitmapHunter {
+  // Enough for the EXIF block of camera JPEGs including their embedded thumbnail.
+  private static final int HEADER_LENGTH = 128 * 1024;
 
   FileBitmapHunter(Context context, Picasso picasso, Dispatcher dispatcher, Cache cache,
       Stats stats, Action action) {
     super(context, picasso, dispatcher, cache, stats, action);
   }
 
-  @Override Bitmap decode(Request data)
+  @Override Bitmap decode(Request data) throws IOException {
+    // Open the file once, read the header from a memory-mapped view and decode the same descriptor.
+    RandomAccessFile file = new RandomAccessFile(data.uri.getPath(), "r");
+    try {
+      ImageHeader header = readHeader(file);
+      setExifRotation(header.getExifRotation());
+      if (picasso.useThumbnails && data.hasSize()) {
+        Bitmap thumbnail = decodeThumbnail(file, header, data);
+        if (thumbnail != null) {
+          stats.dispatchThumbnailHit();
+          return thumbnail;
+        }
+        stats.dispatchThumbnailMiss();
+      }
+      return decodeFileDescriptor(file.getFD(), header, data);
+    } finally {
+      Utils.closeQuietly(file);
+    }
+  }
+
+  private Bitmap decodeFileDescriptor(FileDescriptor fd, ImageHeader header, Request data)
       throws IOException {
-    setExifRotation(getFileExifRotation(data.uri));
-    return super.decode(data);
+    BitmapFactory.Options options = createDecodeOptions();
+    if (requiresBoundsPass()) {
+      if (header.hasSize()) {
+        options.outWidth = header.width;
+        options.outHeight = header.height;
+      } else {
+        // The decoder restores the descriptor's offset so it can be decoded again afterwards.
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeFileDescriptor(fd, null, options);
+      }
+      prepareDecode(options);
+    }
+    return BitmapFactory.decodeFileDescriptor(fd, null, options);
+  }
+
+  /** Decodes the embedded EXIF thumbnail if it is large enough for the target size. */
+  private Bitmap decodeThumbnail(RandomAccessFile file, ImageHeader header, Request data)
+      throws IOException {
+    if (!header.hasThumbnail() || !isThumbnailUsable(data, header.width, header.height,
+        header.thumbnailWidth, header.thumbnailHeight)) {
+      return null;
+    }
+    byte[] bytes = new byte[header.thumbnailLength];
+    file.getChannel()
+        .map(FileChannel.MapMode.READ_ONLY, header.thumbnailOffset, header.thumbnailLength)
+        .get(bytes);
+    BitmapFactory.Options options = createDecodeOptions();
+    options.outWidth = header.thumbnailWidth;
+    options.outHeight = header.thumbnailHeight;
+    calculateInSampleSize(data.targetWidth, data.targetHeight, options);
+    return BitmapFactory.decodeByteArray(bytes, 0, bytes.length, options);
   }
 
-  static int getFileExifRotation(Uri uri) throws IOException {
-    ExifInterface exifInterface = new ExifInterface(uri.getPath());
-    int orientation = exifInterface.getAttributeInt(TAG_ORIENTATION, ORIENTATION_NORMAL);
-    switch (orientation) {
-      case ORIENTATION_ROTATE_90:
-        return 90;
-      case ORIENTATION_ROTATE_180:
-        return 180;
-      case ORIENTATION_ROTATE_270:
-        return 270;
-      default:
-        return 0;
+  static ImageHeader readHeader(RandomAccessFile file) throws IOException {
+    long length = Math.min(file.length(), HEADER_LENGTH);
+    if (length == 0) {
+      return ImageHeader.UNKNOWN;
     }
+    ByteBuffer buffer = file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, length);
+    return ImageHeader.parse(buffer);
   }
 }
@@ -20,6 +20,8 @@ import android.graphics.Bitmap;
 class GetAction extends Action<Void> {
   GetAction(Picasso picasso, Request data, boolean skipCache, String key) {
     super(picasso, null, data, skipCache, false, 0, null, key);
+    // Synchronous requests are transformed on the calling thread.
+    this.transformPending = false;
   }
 
   @Override void complete(Bitmap result, Picasso.LoadedFrom from) {
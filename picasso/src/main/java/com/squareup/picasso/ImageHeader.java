@@ -0,0 +1,253 @@
+/*
+ * Copyright (C) 2013 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squareup.picasso;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Dimensions, EXIF orientation and embedded EXIF thumbnail read from the first bytes of a JPEG or
+ * PNG file. Fields which could not be determined are {@code -1} for the dimensions and offsets and
+ * {@code 0} for the orientation.
+ */
+final class ImageHeader {
+  private static final int JPEG_SOI = 0xFFD8;
+  private static final int MARKER_PREFIX = 0xFF;
+  private static final int MARKER_APP1 = 0xE1;
+  private static final int MARKER_SOS = 0xDA;
+  private static final int MARKER_EOI = 0xD9;
+  private static final int EXIF_ORIENTATION_TAG = 0x0112;
+  private static final int EXIF_THUMBNAIL_OFFSET_TAG = 0x0201;
+  private static final int EXIF_THUMBNAIL_LENGTH_TAG = 0x0202;
+  private static final byte[] EXIF_IDENTIFIER = {
+      'E', 'x', 'i', 'f', 0, 0
+  };
+  private static final byte[] PNG_SIGNATURE = {
+      (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n', 0, 0, 0, 13, 'I', 'H', 'D', 'R'
+  };
+
+  static final ImageHeader UNKNOWN = new ImageHeader(-1, -1, 0);
+
+  final int width;
+  final int height;
+  /** The EXIF orientation tag, {@code 0} if absent. */
+  final int orientation;
+  /** Offset of the embedded JPEG thumbnail from the start of the file. */
+  final int thumbnailOffset;
+  final int thumbnailLength;
+  final int thumbnailWidth;
+  final int thumbnailHeight;
+
+  ImageHeader(int width, int height, int orientation) {
+    this(width, height, orientation, -1, -1, -1, -1);
+  }
+
+  ImageHeader(int width, int height, int orientation, int thumbnailOffset, int thumbnailLength,
+      int thumbnailWidth, int thumbnailHeight) {
+    this.width = width;
+    this.height = height;
+    this.orientation = orientation;
+    this.thumbnailOffset = thumbnailOffset;
+    this.thumbnailLength = thumbnailLength;
+    this.thumbnailWidth = thumbnailWidth;
+    this.thumbnailHeight = thumbnailHeight;
+  }
+
+  boolean hasSize() {
+    return width > 0 && height > 0;
+  }
+
+  boolean hasThumbnail() {
+    return thumbnailOffset >= 0 && thumbnailWidth > 0 && thumbnailHeight > 0;
+  }
+
+  /** The clockwise rotation in degrees described by the EXIF orientation. */
+  int getExifRotation() {
+    switch (orientation) {
+      case 6: // ExifInterface.ORIENTATION_ROTATE_90
+        return 90;
+      case 3: // ExifInterface.ORIENTATION_ROTATE_180
+        return 180;
+      case 8: // ExifInterface.ORIENTATION_ROTATE_270
+        return 270;
+      default:
+        return 0;
+    }
+  }
+
+  /** Parses the header from {@code buffer} without modifying its position. */
+  static ImageHeader parse(ByteBuffer buffer) {
+    buffer = buffer.duplicate();
+    buffer.order(ByteOrder.BIG_ENDIAN);
+    int limit = buffer.limit();
+    if (limit >= 2 && getUnsignedShort(buffer, 0) == JPEG_SOI) {
+      return parseJpeg(buffer, true);
+    }
+    if (limit >= PNG_SIGNATURE.length + 8 && startsWith(buffer, 0, PNG_SIGNATURE)) {
+      return new ImageHeader(buffer.getInt(16), buffer.getInt(20), 0);
+    }
+    return UNKNOWN;
+  }
+
+  private static ImageHeader parseJpeg(ByteBuffer buffer, boolean parseExif) {
+    int limit = buffer.limit();
+    Exif exif = null;
+    ImageHeader thumbnail = null;
+    int position = 2;
+    while (position + 4 <= limit) {
+      if ((buffer.get(position) & 0xFF) != MARKER_PREFIX) {
+        break;
+      }
+      int marker = buffer.get(position + 1) & 0xFF;
+      if (marker == MARKER_PREFIX) {
+        // Fill byte.
+        position++;
+        continue;
+      }
+      if (marker == MARKER_SOS || marker == MARKER_EOI) {
+        break;
+      }
+      int segmentStart = position + 4;
+      int segmentEnd = position + 2 + getUnsignedShort(buffer, position + 2);
+      if (parseExif && marker == MARKER_APP1 && exif == null) {
+        exif = Exif.parse(buffer, segmentStart, Math.min(segmentEnd, limit));
+        if (exif != null) {
+          thumbnail = parseThumbnail(buffer, exif.thumbnailOffset, exif.thumbnailLength);
+        }
+      } else if (isStartOfFrame(marker)) {
+        if (segmentStart + 5 > limit) {
+          break;
+        }
+        int height = getUnsignedShort(buffer, segmentStart + 1);
+        int width = getUnsignedShort(buffer, segmentStart + 3);
+        return create(width, height, exif, thumbnail);
+      }
+      position = segmentEnd;
+    }
+    return create(-1, -1, exif, thumbnail);
+  }
+
+  private static ImageHeader create(int width, int height, Exif exif, ImageHeader thumbnail) {
+    int orientation = exif != null ? exif.orientation : 0;
+    if (thumbnail == null) {
+      return new ImageHeader(width, height, orientation);
+    }
+    return new ImageHeader(width, height, orientation, exif.thumbnailOffset,
+        exif.thumbnailLength, thumbnail.width, thumbnail.height);
+  }
+
+  /** Parses the dimensions of the embedded thumbnail, null if it is not fully in the buffer. */
+  private static ImageHeader parseThumbnail(ByteBuffer buffer, int offset, int length) {
+    if (offset < 0 || length <= 4 || length > buffer.limit() - offset) {
+      return null;
+    }
+    ByteBuffer thumbnail = buffer.duplicate();
+    thumbnail.position(offset);
+    thumbnail.limit(offset + length);
+    thumbnail = thumbnail.slice();
+    thumbnail.order(ByteOrder.BIG_ENDIAN);
+    if (getUnsignedShort(thumbnail, 0) != JPEG_SOI) {
+      return null;
+    }
+    ImageHeader header = parseJpeg(thumbnail, false);
+    return header.hasSize() ? header : null;
+  }
+
+  /** The fields read from an EXIF APP1 segment. */
+  private static final class Exif {
+    int orientation;
+    int thumbnailOffset = -1;
+    int thumbnailLength = -1;
+
+    /**
+     * Reads the orientation from the first IFD and the location of the thumbnail from the second
+     * IFD of the EXIF segment between {@code start} and {@code end}.
+     */
+    static Exif parse(ByteBuffer buffer, int start, int end) {
+      if (start + EXIF_IDENTIFIER.length + 8 > end
+          || !startsWith(buffer, start, EXIF_IDENTIFIER)) {
+        return null;
+      }
+      int tiff = start + EXIF_IDENTIFIER.length;
+      ByteBuffer tiffBuffer = buffer.duplicate();
+      short byteOrder = buffer.getShort(tiff);
+      if (byteOrder == 0x4949) { // "II"
+        tiffBuffer.order(ByteOrder.LITTLE_ENDIAN);
+      } else if (byteOrder == 0x4D4D) { // "MM"
+        tiffBuffer.order(ByteOrder.BIG_ENDIAN);
+      } else {
+        return null;
+      }
+
+      Exif exif = new Exif();
+      int ifd = tiff + tiffBuffer.getInt(tiff + 4);
+      if (ifd <= tiff || ifd + 2 > end) {
+        return exif;
+      }
+      int entryCount = getUnsignedShort(tiffBuffer, ifd);
+      for (int i = 0; i < entryCount; i++) {
+        int entry = ifd + 2 + i * 12;
+        if (entry + 12 > end) {
+          return exif;
+        }
+        if (getUnsignedShort(tiffBuffer, entry) == EXIF_ORIENTATION_TAG) {
+          exif.orientation = getUnsignedShort(tiffBuffer, entry + 8);
+        }
+      }
+
+      int nextIfdPointer = ifd + 2 + entryCount * 12;
+      if (nextIfdPointer + 4 > end) {
+        return exif;
+      }
+      ifd = tiff + tiffBuffer.getInt(nextIfdPointer);
+      if (ifd <= tiff || ifd + 2 > end) {
+        return exif;
+      }
+      entryCount = getUnsignedShort(tiffBuffer, ifd);
+      for (int i = 0; i < entryCount; i++) {
+        int entry = ifd + 2 + i * 12;
+        if (entry + 12 > end) {
+          break;
+        }
+        int tag = getUnsignedShort(tiffBuffer, entry);
+        if (tag == EXIF_THUMBNAIL_OFFSET_TAG) {
+          exif.thumbnailOffset = tiff + tiffBuffer.getInt(entry + 8);
+        } else if (tag == EXIF_THUMBNAIL_LENGTH_TAG) {
+          exif.thumbnailLength = tiffBuffer.getInt(entry + 8);
+        }
+      }
+      return exif;
+    }
+  }
+
+  private static boolean isStartOfFrame(int marker) {
+    // SOF0 through SOF15 except DHT, JPG and DAC which share the range.
+    return marker >= 0xC0 && marker <= 0xCF && marker != 0xC4 && marker != 0xC8 && marker != 0xCC;
+  }
+
+  private static boolean startsWith(ByteBuffer buffer, int offset, byte[] prefix) {
+    for (int i = 0; i < prefix.length; i++) {
+      if (buffer.get(offset + i) != prefix[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static int getUnsignedShort(ByteBuffer buffer, int index) {
+    return buffer.getShort(index) & 0xFFFF;
+  }
+}
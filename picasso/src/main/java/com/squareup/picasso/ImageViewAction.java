@@ -43,7 +43,8 @@ class ImageViewAction extends Action<ImageView> {
 
     Context context = picasso.context;
     boolean debugging = picasso.debugging;
-    PicassoDrawable.setBitmap(target, context, result, from, noFade, debugging);
+    PicassoDrawable.setBitmap(target, context, result, from, noFade, debugging,
+        picasso.recycleDrawables);
 
     if (callback != null) {
       callback.onSuccess();
@@ -56,7 +57,7 @@ class ImageViewAction extends Action<ImageView> {
       return;
     }
     if (errorResId != 0) {
-      target.setImageResource(errorResId);
+      PicassoDrawable.setResource(target, picasso.drawableCache, errorResId);
     } else if (errorDrawable != null) {
       target.setImageDrawable(errorDrawable);
     }
@@ -23,7 +23,7 @@ import java.util.Map;
 /** A memory cache which uses a least-recently used eviction policy. */
 public class LruCache implements Cache {
   final LinkedHashMap<String, Bitmap> map;
-  private final int maxSize;
+  private int maxSize;
 
   private int size;
   private int putCount;
@@ -78,10 +78,22 @@ public class LruCache implements Cache {
       }
     }
 
+    trimToSize(maxSize());
+  }
+
+  /** Sets the maximum size in bytes that the cache can hold, evicting images if necessary. */
+  public void resize(int maxSize) {
+    if (maxSize <= 0) {
+      throw new IllegalArgumentException("Max size must be positive.");
+    }
+    synchronized (this) {
+      this.maxSize = maxSize;
+    }
     trimToSize(maxSize);
   }
 
-  private void trimToSize(int maxSize) {
+  /** Evicts the least recently used images until the cache size is at most {@code maxSize}. */
+  public void trimToSize(int maxSize) {
     while (true) {
       String key;
       Bitmap value;
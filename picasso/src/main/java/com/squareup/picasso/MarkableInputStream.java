@@ -34,8 +34,16 @@ final class MarkableInputStream extends InputStream {
   private long defaultMark = -1;
 
   public MarkableInputStream(InputStream in) {
+    this(in, 0);
+  }
+
+  /**
+   * Buffers {@code in} with an initial buffer of {@code bufferSize} bytes if it does not support
+   * marking itself. A size of {@code 0} uses the default buffer size.
+   */
+  public MarkableInputStream(InputStream in, int bufferSize) {
     if (!in.markSupported()) {
-      in = new BufferedInputStream(in);
+      in = bufferSize > 0 ? new BufferedInputStream(in, bufferSize) : new BufferedInputStream(in);
     }
     this.in = in;
   }
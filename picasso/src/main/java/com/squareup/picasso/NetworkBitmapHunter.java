@@ -32,18 +32,63 @@ class NetworkBitmapHunter extends BitmapHunter {
   private final Downloader downloader;
 
   int retryCount;
+  // Whether only warm start actions are attached, which load from the local cache only.
+  private boolean warmStartOnly;
+  // Bytes read by the last download, reported to the event listener.
+  private long downloadedBytes;
+
+  // The stream currently in flight, if any. Closed from the dispatcher thread.
+  private volatile InputStream inFlightStream;
 
   public NetworkBitmapHunter(Picasso picasso, Dispatcher dispatcher, Cache cache, Stats stats,
       Action action, Downloader downloader) {
     super(picasso, dispatcher, cache, stats, action);
     this.downloader = downloader;
-    this.retryCount = DEFAULT_RETRY_COUNT;
+    if (action instanceof WarmStartAction) {
+      this.warmStartOnly = true;
+      this.retryCount = 0;
+    } else {
+      this.retryCount = DEFAULT_RETRY_COUNT;
+    }
+  }
+
+  @Override void attach(Action action) {
+    super.attach(action);
+    if (warmStartOnly && !(action instanceof WarmStartAction)) {
+      // The app asked for the image itself, fall back to the network after a local cache miss.
+      warmStartOnly = false;
+      retryCount = DEFAULT_RETRY_COUNT;
+    }
   }
 
   @Override Bitmap decode(Request data) throws IOException {
+    EventListener eventListener = picasso.eventListener;
+    if (eventListener == null) {
+      return download(data);
+    }
+    downloadedBytes = 0;
+    eventListener.downloadStart(getKey(), System.nanoTime());
+    try {
+      return download(data);
+    } finally {
+      eventListener.downloadEnd(getKey(), downloadedBytes, System.nanoTime());
+    }
+  }
+
+  private Bitmap download(Request data) throws IOException {
     boolean loadFromLocalCacheOnly = retryCount == 0;
 
-    Response response = downloader.load(data.uri, loadFromLocalCacheOnly);
+    Response response;
+    if (picasso.tracing) {
+      Tracer.beginSection("Picasso:load");
+    }
+    try {
+      response = downloader.load(data.uri, loadFromLocalCacheOnly);
+    } finally {
+      if (picasso.tracing) {
+        Tracer.endSection();
+      }
+    }
     if (response == null) {
       return null;
     }
@@ -55,14 +100,50 @@ class NetworkBitmapHunter extends BitmapHunter {
       return result;
     }
 
-    InputStream is = response.getInputStream();
+    InputStream stream = response.getInputStream();
+    if (stream == null) {
+      return null;
+    }
+    long contentLength = response.getContentLength();
+    long maxDownloadSize = picasso.maxDownloadSize;
+    if (maxDownloadSize > 0 && contentLength > maxDownloadSize) {
+      // Too large to be worth reading. Fail without a retry, the image will not get smaller.
+      Utils.closeQuietly(stream);
+      return null;
+    }
+    CountingInputStream is = new CountingInputStream(stream, maxDownloadSize);
+    inFlightStream = is;
     try {
-      return decodeStream(is, data);
+      // The stream may have been opened after the dispatcher tried to close it.
+      if (cancelled) {
+        return null;
+      }
+      Bitmap bitmap = decodeStream(is, data, contentLength);
+      if (bitmap != null) {
+        stats.dispatchDownloadFinished(loadedFrom, is.getCount());
+      } else if (cancelled) {
+        stats.dispatchDownloadAborted(is.getCount());
+      }
+      return bitmap;
+    } catch (IOException e) {
+      if (cancelled) {
+        stats.dispatchDownloadAborted(is.getCount());
+      } else if (is.isLimitExceeded()) {
+        return null;
+      }
+      throw e;
     } finally {
+      downloadedBytes = is.getCount();
+      inFlightStream = null;
       Utils.closeQuietly(is);
     }
   }
 
+  @Override void onCancel() {
+    super.onCancel();
+    Utils.closeQuietly(inFlightStream);
+  }
+
   @Override boolean shouldRetry(boolean airplaneMode, NetworkInfo info) {
     boolean hasRetries = retryCount > 0;
     if (!hasRetries) {
@@ -72,23 +153,29 @@ class NetworkBitmapHunter extends BitmapHunter {
     return info == null || info.isConnectedOrConnecting();
   }
 
-  private Bitmap decodeStream(InputStream stream, Request data) throws IOException {
-    if (stream == null) {
-      return null;
-    }
-    BitmapFactory.Options options = null;
-    if (data.hasSize()) {
-      options = new BitmapFactory.Options();
+  @Override boolean supportsReplay() {
+    return true;
+  }
+
+  private Bitmap decodeStream(InputStream stream, Request data, long contentLength)
+      throws IOException {
+    BitmapFactory.Options options = createDecodeOptions();
+    if (requiresBoundsPass()) {
       options.inJustDecodeBounds = true;
 
-      MarkableInputStream markStream = new MarkableInputStream(stream);
+      // Small responses fit into a buffer of their own size, others grow it up to the marker.
+      int bufferSize = contentLength > 0 ? (int) Math.min(contentLength, MARKER) : 0;
+      MarkableInputStream markStream = new MarkableInputStream(stream, bufferSize);
       stream = markStream;
 
       long mark = markStream.savePosition(MARKER);
       BitmapFactory.decodeStream(stream, null, options);
-      calculateInSampleSize(data.targetWidth, data.targetHeight, options);
+      prepareDecode(options);
 
       markStream.reset(mark);
+      if (cancelled) {
+        return null;
+      }
     }
     return BitmapFactory.decodeStream(stream, null, options);
   }
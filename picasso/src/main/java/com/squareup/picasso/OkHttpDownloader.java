@@ -22,12 +22,13 @@ import com.squareup.okhttp.OkHttpClient;
 import java.io.File;
 import java.io.IOException;
 import java.net.HttpURLConnection;
+import java.net.ResponseCache;
 import java.net.URL;
 
 import static com.squareup.picasso.Utils.parseResponseSourceHeader;
 
 /** A {@link Downloader} which uses OkHttp to download images. */
-public class OkHttpDownloader implements Downloader {
+public class OkHttpDownloader implements CachingDownloader {
   static final String RESPONSE_SOURCE_ANDROID = "X-Android-Response-Source";
   static final String RESPONSE_SOURCE_OKHTTP = "OkHttp-Response-Source";
 
@@ -95,6 +96,11 @@ public class OkHttpDownloader implements Downloader {
     return client;
   }
 
+  @Override public boolean hasDiskCache() {
+    // Clients without a cache of their own use the system-wide one.
+    return client.getResponseCache() != null || ResponseCache.getDefault() != null;
+  }
+
   @Override public Response load(Uri uri, boolean localCacheOnly) throws IOException {
     HttpURLConnection connection = openConnection(uri);
     connection.setUseCaches(true);
@@ -114,6 +120,8 @@ public class OkHttpDownloader implements Downloader {
     }
     boolean fromCache = parseResponseSourceHeader(responseSource);
 
-    return new Response(connection.getInputStream(), fromCache);
+    long contentLength = connection.getHeaderFieldInt("Content-Length", -1);
+
+    return new Response(connection.getInputStream(), fromCache, contentLength);
   }
 }
@@ -15,25 +15,41 @@
  */
 package com.squareup.picasso;
 
+import android.annotation.TargetApi;
+import android.content.ComponentCallbacks;
+import android.content.ComponentCallbacks2;
 import android.content.Context;
+import android.content.res.Configuration;
 import android.graphics.Bitmap;
 import android.graphics.Color;
 import android.net.Uri;
+import android.os.Build;
 import android.os.Handler;
 import android.os.Looper;
 import android.os.Message;
 import android.os.Process;
 import android.widget.ImageView;
 import java.io.File;
+import java.lang.ref.Reference;
 import java.lang.ref.ReferenceQueue;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.WeakHashMap;
 import java.util.concurrent.ExecutorService;
 
+import static android.content.ComponentCallbacks2.TRIM_MEMORY_BACKGROUND;
+import static android.content.ComponentCallbacks2.TRIM_MEMORY_COMPLETE;
+import static android.content.ComponentCallbacks2.TRIM_MEMORY_MODERATE;
+import static android.content.ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL;
+import static android.content.ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW;
+import static android.content.ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE;
+import static android.content.ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN;
 import static android.os.Process.THREAD_PRIORITY_BACKGROUND;
 import static com.squareup.picasso.Dispatcher.HUNTER_BATCH_COMPLETE;
 import static com.squareup.picasso.Dispatcher.REQUEST_GCED;
+import static com.squareup.picasso.Dispatcher.REQUEST_TRANSFORMED_CACHED;
 import static com.squareup.picasso.Action.RequestWeakReference;
 import static com.squareup.picasso.Utils.THREAD_PREFIX;
 
@@ -80,13 +96,42 @@ public class Picasso {
     };
   }
 
+  /**
+   * A {@link RequestTransformer} which also depends on the network the device is connected to,
+   * e.g. to request smaller images over cellular connections. Picasso calls
+   * {@link #transformRequest(Request, int)} instead of {@link #transformRequest(Request)}.
+   * <p>
+   * <b>NOTE:</b> This is a beta feature. The API is subject to change in a backwards incompatible
+   * way at any time.
+   */
+  public interface NetworkAwareRequestTransformer extends RequestTransformer {
+    /**
+     * Transform a request before it is submitted to be processed.
+     *
+     * @param networkType The {@link android.net.ConnectivityManager} type of the connected
+     * network, e.g. {@code TYPE_WIFI}, or {@code -1} if there is none or it is not known yet.
+     * @return The original request or a new request to replace it. Must not be null.
+     */
+    Request transformRequest(Request request, int networkType);
+  }
+
   static final Handler HANDLER = new Handler(Looper.getMainLooper()) {
     @Override public void handleMessage(Message msg) {
       switch (msg.what) {
         case HUNTER_BATCH_COMPLETE: {
           @SuppressWarnings("unchecked") List<BitmapHunter> batch = (List<BitmapHunter>) msg.obj;
-          for (BitmapHunter hunter : batch) {
-            hunter.picasso.complete(hunter);
+          boolean tracing = !batch.isEmpty() && batch.get(0).picasso.tracing;
+          if (tracing) {
+            Tracer.beginSection("Picasso:deliverBatch");
+          }
+          try {
+            for (BitmapHunter hunter : batch) {
+              hunter.picasso.complete(hunter);
+            }
+          } finally {
+            if (tracing) {
+              Tracer.endSection();
+            }
           }
           break;
         }
@@ -95,6 +140,11 @@ public class Picasso {
           action.picasso.cancelExistingRequest(action.getTarget());
           break;
         }
+        case REQUEST_TRANSFORMED_CACHED: {
+          Action action = (Action) msg.obj;
+          action.picasso.completeFromCache(action);
+          break;
+        }
         default:
           throw new AssertionError("Unknown handler message received: " + msg.what);
       }
@@ -103,9 +153,16 @@ public class Picasso {
 
   static Picasso singleton = null;
 
+  // Enough to cover the images of a few screens, the keys are small compared to the images.
+  private static final int MAX_TRANSFORMED_KEYS = 256;
+
   private final Listener listener;
   private final RequestTransformer requestTransformer;
+  /** Keys of recently transformed requests by their key before transformation. */
+  private final Map<String, String> transformedKeys;
   private final CleanupThread cleanupThread;
+  private final ComponentCallbacks memoryCallbacks;
+  private final int initialCacheMaxSize;
 
   final Context context;
   final Dispatcher dispatcher;
@@ -114,24 +171,79 @@ public class Picasso {
   final Map<Object, Action> targetToAction;
   final Map<ImageView, DeferredRequestCreator> targetToDeferredRequestCreator;
   final ReferenceQueue<Object> referenceQueue;
+  final DecodeBudget decodeBudget;
+  final boolean useThumbnails;
+  final Cache intermediateCache;
+  final DrawableCache drawableCache;
+  /** The view tag key under which image views keep their request, {@code 0} to use weak maps. */
+  final int targetTagId;
+  /** Receives pipeline events, null if nobody listens. */
+  final EventListener eventListener;
+  /** The largest download in bytes that will be decoded, {@code 0} for no limit. */
+  final long maxDownloadSize;
+  /** Whether the dispatcher thread transforms requests instead of the main thread. */
+  final boolean asyncRequestTransformer;
+  /** The recently used requests which are restored by the next process, null if disabled. */
+  final WarmStart warmStart;
+  /** Whether drawables replaced on their view are reused, see {@link Builder#recycleDrawables}. */
+  final boolean recycleDrawables;
+  /** Whether the stages of each request are recorded as systrace sections. */
+  final boolean tracing;
+
+  /** Buffers of {@link PooledTransformation}s, null until the first one runs. */
+  volatile TransformationBuffers transformationBuffers;
 
   boolean debugging;
   boolean shutdown;
+  /** The batch collecting requests made on the main thread, null outside of {@link #batch()}. */
+  Batch batch;
+  volatile boolean cacheTrimmed;
 
   Picasso(Context context, Dispatcher dispatcher, Cache cache, Listener listener,
-      RequestTransformer requestTransformer, Stats stats, boolean debugging) {
+      RequestTransformer requestTransformer, Stats stats, Options options, boolean debugging) {
     this.context = context;
     this.dispatcher = dispatcher;
     this.cache = cache;
     this.listener = listener;
     this.requestTransformer = requestTransformer;
     this.stats = stats;
+    this.decodeBudget = options.decodeBudget;
+    this.useThumbnails = options.useThumbnails;
+    this.intermediateCache = options.intermediateCache;
+    this.drawableCache = new DrawableCache(context.getResources());
     this.targetToAction = new WeakHashMap<Object, Action>();
     this.targetToDeferredRequestCreator = new WeakHashMap<ImageView, DeferredRequestCreator>();
+    this.targetTagId = options.targetTagId;
+    this.eventListener = options.eventListener;
+    this.maxDownloadSize = options.maxDownloadSize;
+    this.asyncRequestTransformer = options.asyncRequestTransformer;
+    if (asyncRequestTransformer) {
+      this.transformedKeys = new LinkedHashMap<String, String>(16, 0.75f, true) {
+        @Override protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+          return size() > MAX_TRANSFORMED_KEYS;
+        }
+      };
+    } else {
+      this.transformedKeys = null;
+    }
+    this.warmStart = options.warmStart;
+    this.recycleDrawables = options.recycleDrawables;
+    this.tracing = options.tracing;
     this.debugging = debugging;
     this.referenceQueue = new ReferenceQueue<Object>();
-    this.cleanupThread = new CleanupThread(referenceQueue, HANDLER);
-    this.cleanupThread.start();
+    if (targetTagId == 0) {
+      this.cleanupThread = new CleanupThread(referenceQueue, HANDLER);
+      this.cleanupThread.start();
+    } else {
+      // Collected targets are polled for on the main thread whenever a request is submitted.
+      this.cleanupThread = null;
+    }
+    this.initialCacheMaxSize = cache.maxSize();
+    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.ICE_CREAM_SANDWICH) {
+      this.memoryCallbacks = MemoryCallbacksIcs.register(context, this);
+    } else {
+      this.memoryCallbacks = null;
+    }
   }
 
   /** Cancel any existing requests for the specified target {@link ImageView}. */
@@ -230,6 +342,25 @@ public class Picasso {
     return stats.createSnapshot();
   }
 
+  /**
+   * Collects the requests made on the main thread until {@link Batch#submit()} is called and hands
+   * them to the dispatcher at once. Use this around passes which bind many views in one frame and
+   * submit the batch from a {@code finally} block. A batch which is still open once the main
+   * thread is done with its current message, e.g. because the pass threw, is submitted then.
+   * Requests which are replaced within the batch are never dispatched and the others are started
+   * in priority order.
+   */
+  public Batch batch() {
+    Utils.checkMain();
+    if (batch != null) {
+      throw new IllegalStateException("Batch already in progress.");
+    }
+    Batch batch = new Batch(this);
+    this.batch = batch;
+    HANDLER.post(batch.abandoned);
+    return batch;
+  }
+
   /** Stops this instance from accepting further requests. */
   public void shutdown() {
     if (this == singleton) {
@@ -239,7 +370,20 @@ public class Picasso {
       return;
     }
     cache.clear();
-    cleanupThread.shutdown();
+    if (intermediateCache != null) {
+      intermediateCache.clear();
+    }
+    clearTransformationBuffers();
+    if (memoryCallbacks != null) {
+      MemoryCallbacksIcs.unregister(context, memoryCallbacks);
+    }
+    if (cleanupThread != null) {
+      cleanupThread.shutdown();
+    }
+    if (warmStart != null) {
+      // Saved on the dispatcher thread like other saves, which is drained before it stops.
+      dispatcher.dispatchWarmStartSave(warmStart);
+    }
     stats.shutdown();
     dispatcher.shutdown();
     for (DeferredRequestCreator deferredRequestCreator : targetToDeferredRequestCreator.values()) {
@@ -249,8 +393,22 @@ public class Picasso {
     shutdown = true;
   }
 
+  /**
+   * Transforms a request made on the main thread, unless that is left to the dispatcher. Requests
+   * are then transformed by {@link Dispatcher#performSubmit} which also records the key.
+   */
+  Request transformRequestOnSubmit(Request request) {
+    return asyncRequestTransformer ? request : transformRequest(request);
+  }
+
   Request transformRequest(Request request) {
-    Request transformed = requestTransformer.transformRequest(request);
+    Request transformed;
+    if (requestTransformer instanceof NetworkAwareRequestTransformer) {
+      transformed = ((NetworkAwareRequestTransformer) requestTransformer)
+          .transformRequest(request, dispatcher.networkType);
+    } else {
+      transformed = requestTransformer.transformRequest(request);
+    }
     if (transformed == null) {
       throw new IllegalStateException("Request transformer "
           + requestTransformer.getClass().getCanonicalName()
@@ -261,32 +419,255 @@ public class Picasso {
   }
 
   void defer(ImageView view, DeferredRequestCreator request) {
+    cancelExistingRequest(view);
+    if (targetTagId != 0) {
+      view.setTag(targetTagId, request);
+    }
+    // Also kept in tag mode, so that shutdown() can cancel the requests still waiting for a size.
     targetToDeferredRequestCreator.put(view, request);
   }
 
+  /**
+   * Starts downloading the source of a request whose target size is not known yet, so that only
+   * the decode remains once it is. The download is cancelled along with the last deferred request
+   * which needs it.
+   */
+  void prefetchSource(DeferredRequestCreator request, Uri uri) {
+    // Request transformers may pick another source once the size is known.
+    if (requestTransformer == RequestTransformer.IDENTITY && uri != null) {
+      request.prefetchUri = uri;
+      request.prefetchMaxSize = maxDownloadSize;
+      request.prefetching = true;
+      dispatcher.dispatchPrefetch(request);
+    }
+  }
+
   void enqueueAndSubmit(Action action) {
     Object target = action.getTarget();
     if (target != null) {
       cancelExistingRequest(target);
-      targetToAction.put(target, action);
+      if (isTagTracked(target)) {
+        ((ImageView) target).setTag(targetTagId, action);
+      } else {
+        targetToAction.put(target, action);
+      }
+    }
+    if (cleanupThread == null) {
+      cancelCollectedRequests();
     }
     submit(action);
   }
 
   void submit(Action action) {
-    dispatcher.dispatchSubmit(action);
+    if (batch != null) {
+      batch.submits.add(action);
+    } else {
+      dispatcher.dispatchSubmit(action);
+    }
+  }
+
+  private void cancel(Action action) {
+    action.cancel();
+    if (batch == null) {
+      dispatcher.dispatchCancel(action);
+    } else if (!batch.submits.remove(action)) {
+      // Actions replaced within the batch never reach the dispatcher.
+      batch.cancels.add(action);
+    }
   }
 
   Bitmap quickMemoryCacheCheck(String key) {
+    if (tracing) {
+      Tracer.beginSection("Picasso:memoryCacheCheck");
+    }
+    try {
+      return memoryCacheCheck(key);
+    } finally {
+      if (tracing) {
+        Tracer.endSection();
+      }
+    }
+  }
+
+  private Bitmap memoryCacheCheck(String key) {
     Bitmap cached = cache.get(key);
+    if (cached == null && transformedKeys != null) {
+      String transformedKey;
+      synchronized (transformedKeys) {
+        transformedKey = transformedKeys.get(key);
+      }
+      if (transformedKey != null) {
+        cached = cache.get(transformedKey);
+        key = transformedKey;
+      }
+    }
     if (cached != null) {
       stats.dispatchCacheHit();
+      if (warmStart != null) {
+        warmStart.touch(key);
+      }
     } else {
       stats.dispatchCacheMiss();
     }
+    if (eventListener != null) {
+      int type =
+          cached != null ? EventListener.Pending.CACHE_HIT : EventListener.Pending.CACHE_MISS;
+      dispatcher.dispatchEvent(
+          new EventListener.Pending(eventListener, type, key, System.nanoTime()));
+    }
     return cached;
   }
 
+  /** Remembers the key of a request transformed by the dispatcher for the quick cache check. */
+  void putTransformedKey(String key, String transformedKey) {
+    synchronized (transformedKeys) {
+      transformedKeys.put(key, transformedKey);
+    }
+  }
+
+  /**
+   * Delivers the image the dispatcher found in the memory cache after transforming the request of
+   * {@code action}. The action is submitted again if the image was evicted in the meantime.
+   */
+  void completeFromCache(Action action) {
+    if (action.isCancelled()) {
+      return;
+    }
+    Bitmap bitmap = cache.get(action.getKey());
+    if (bitmap == null) {
+      dispatcher.dispatchSubmit(action);
+      return;
+    }
+    untrack(action);
+    action.complete(bitmap, LoadedFrom.MEMORY);
+    if (eventListener != null) {
+      dispatcher.dispatchEvent(new EventListener.Pending(eventListener,
+          EventListener.Pending.DELIVERED, action.getKey(), System.nanoTime()));
+    }
+  }
+
+  /**
+   * Shrinks the memory cache in response to a {@link ComponentCallbacks2} trim level. While the
+   * process is running only the contents are trimmed, once the UI is hidden the cache is resized
+   * so that it does not fill up again until the app returns to the foreground, signalled by a
+   * running level or a bind into an attached view. Only {@link LruCache} and {@link TinyLfuCache}
+   * are trimmed and resized, other caches are cleared when memory runs out completely. The warm
+   * start snapshot is saved once the UI is hidden.
+   */
+  void trimMemory(int level) {
+    if (warmStart != null && level >= TRIM_MEMORY_UI_HIDDEN) {
+      // Hidden processes may be killed at any time, save what the next one should start with.
+      dispatcher.dispatchWarmStartSave(warmStart);
+    }
+    if (level < TRIM_MEMORY_UI_HIDDEN) {
+      // Running levels are only sent while the UI is visible.
+      restoreCacheSize();
+    }
+    int maxSize = initialCacheMaxSize;
+    if (level >= TRIM_MEMORY_BACKGROUND) {
+      clearTransformationBuffers();
+      PicassoDrawable.clearRecycled();
+      drawableCache.clear();
+      if (intermediateCache != null) {
+        intermediateCache.clear();
+      }
+    }
+    if (level >= TRIM_MEMORY_COMPLETE) {
+      cache.clear();
+      resizeCache(maxSize / 8);
+    } else if (level >= TRIM_MEMORY_MODERATE) {
+      resizeCache(maxSize / 8);
+    } else if (level >= TRIM_MEMORY_BACKGROUND) {
+      resizeCache(maxSize / 4);
+    } else if (level >= TRIM_MEMORY_UI_HIDDEN) {
+      resizeCache(maxSize / 2);
+    } else if (level >= TRIM_MEMORY_RUNNING_CRITICAL) {
+      trimCache(cache.size() / 4);
+    } else if (level >= TRIM_MEMORY_RUNNING_LOW) {
+      trimCache(cache.size() / 2);
+    } else if (level >= TRIM_MEMORY_RUNNING_MODERATE) {
+      trimCache(cache.size() * 3 / 4);
+    }
+  }
+
+  private void resizeCache(int maxSize) {
+    if (maxSize <= 0) {
+      cache.clear();
+      return;
+    }
+    if (setCacheMaxSize(maxSize)) {
+      cacheTrimmed = true;
+    }
+  }
+
+  /**
+   * Sets the maximum size of the memory cache if it is an {@link LruCache} or a
+   * {@link TinyLfuCache}. Returns {@code false} for other caches, which keep their size.
+   */
+  private boolean setCacheMaxSize(int maxSize) {
+    if (cache instanceof LruCache) {
+      ((LruCache) cache).resize(maxSize);
+      return true;
+    }
+    if (cache instanceof TinyLfuCache) {
+      ((TinyLfuCache) cache).resize(maxSize);
+      return true;
+    }
+    return false;
+  }
+
+  /** Evicts images from the memory cache if it supports trimming, see {@link #setCacheMaxSize}. */
+  private void trimCache(int size) {
+    if (cache instanceof LruCache) {
+      ((LruCache) cache).trimToSize(size);
+    } else if (cache instanceof TinyLfuCache) {
+      ((TinyLfuCache) cache).trimToSize(size);
+    }
+  }
+
+  /**
+   * Grows the memory cache back to its initial size when an image is bound to a view which is
+   * attached to a window, i.e. the UI is visible again. Requests made in the background, e.g. by a
+   * service, leave the cache trimmed.
+   */
+  void restoreCacheSize(ImageView view) {
+    if (cacheTrimmed && view.getWindowToken() != null) {
+      restoreCacheSize();
+    }
+  }
+
+  private void restoreCacheSize() {
+    if (cacheTrimmed) {
+      cacheTrimmed = false;
+      setCacheMaxSize(initialCacheMaxSize);
+    }
+  }
+
+  /**
+   * Returns the buffers which {@link PooledTransformation}s draw into. They are created on first
+   * use and keep at most an eighth of the memory cache size.
+   */
+  TransformationBuffers getTransformationBuffers() {
+    TransformationBuffers buffers = transformationBuffers;
+    if (buffers == null) {
+      synchronized (this) {
+        buffers = transformationBuffers;
+        if (buffers == null) {
+          buffers = new TransformationBuffers(initialCacheMaxSize / 8);
+          transformationBuffers = buffers;
+        }
+      }
+    }
+    return buffers;
+  }
+
+  private void clearTransformationBuffers() {
+    TransformationBuffers buffers = transformationBuffers;
+    if (buffers != null) {
+      buffers.clear();
+    }
+  }
+
   void complete(BitmapHunter hunter) {
     List<Action> joined = hunter.getActions();
     if (joined.isEmpty()) {
@@ -302,7 +683,7 @@ public class Picasso {
       if (join.isCancelled()) {
         continue;
       }
-      targetToAction.remove(join.getTarget());
+      untrack(join);
       if (result != null) {
         if (from == null) {
           throw new AssertionError("LoadedFrom cannot be null.");
@@ -311,6 +692,10 @@ public class Picasso {
       } else {
         join.error();
       }
+      if (eventListener != null) {
+        dispatcher.dispatchEvent(new EventListener.Pending(eventListener,
+            EventListener.Pending.DELIVERED, join.getKey(), System.nanoTime()));
+      }
     }
 
     if (listener != null && exception != null) {
@@ -318,11 +703,37 @@ public class Picasso {
     }
   }
 
+  /** Stops tracking the target of an action which is about to be delivered. */
+  private void untrack(Action action) {
+    Object target = action.getTarget();
+    if (isTagTracked(target)) {
+      ImageView view = (ImageView) target;
+      if (view.getTag(targetTagId) == action) {
+        view.setTag(targetTagId, null);
+      }
+    } else {
+      targetToAction.remove(target);
+    }
+  }
+
   private void cancelExistingRequest(Object target) {
+    if (isTagTracked(target)) {
+      ImageView view = (ImageView) target;
+      Object tracked = view.getTag(targetTagId);
+      if (tracked != null) {
+        view.setTag(targetTagId, null);
+        if (tracked instanceof Action) {
+          cancel((Action) tracked);
+        } else if (tracked instanceof DeferredRequestCreator) {
+          targetToDeferredRequestCreator.remove(view);
+          ((DeferredRequestCreator) tracked).cancel();
+        }
+      }
+      return;
+    }
     Action action = targetToAction.remove(target);
     if (action != null) {
-      action.cancel();
-      dispatcher.dispatchCancel(action);
+      cancel(action);
     }
     if (target instanceof ImageView) {
       ImageView targetImageView = (ImageView) target;
@@ -334,6 +745,22 @@ public class Picasso {
     }
   }
 
+  /** Whether the request of {@code target} is kept in its view tag rather than in a weak map. */
+  private boolean isTagTracked(Object target) {
+    return targetTagId != 0 && target instanceof ImageView;
+  }
+
+  /** Cancels the requests whose targets were garbage collected since the last call. */
+  private void cancelCollectedRequests() {
+    Reference<?> reference;
+    while ((reference = referenceQueue.poll()) != null) {
+      Action action = ((RequestWeakReference<?>) reference).action;
+      if (!action.isCancelled()) {
+        cancel(action);
+      }
+    }
+  }
+
   private static class CleanupThread extends Thread {
     private final ReferenceQueue<?> referenceQueue;
     private final Handler handler;
@@ -369,6 +796,38 @@ public class Picasso {
     }
   }
 
+  @TargetApi(Build.VERSION_CODES.ICE_CREAM_SANDWICH)
+  private static class MemoryCallbacksIcs implements ComponentCallbacks2 {
+    private final Picasso picasso;
+
+    MemoryCallbacksIcs(Picasso picasso) {
+      this.picasso = picasso;
+    }
+
+    static ComponentCallbacks register(Context context, Picasso picasso) {
+      ComponentCallbacks callbacks = new MemoryCallbacksIcs(picasso);
+      context.registerComponentCallbacks(callbacks);
+      return callbacks;
+    }
+
+    static void unregister(Context context, ComponentCallbacks callbacks) {
+      context.unregisterComponentCallbacks(callbacks);
+    }
+
+    @Override public void onTrimMemory(int level) {
+      picasso.trimMemory(level);
+    }
+
+    @Override public void onLowMemory() {
+      picasso.trimMemory(TRIM_MEMORY_COMPLETE);
+    }
+
+    @Override public void onConfigurationChanged(Configuration newConfig) {
+      // Placeholders may resolve to other resources in the new configuration.
+      picasso.drawableCache.clear();
+    }
+  }
+
   /**
    * The global default {@link Picasso} instance.
    * <p>
@@ -401,6 +860,16 @@ public class Picasso {
     private Cache cache;
     private Listener listener;
     private RequestTransformer transformer;
+    private DecodeBudget decodeBudget;
+    private boolean useThumbnails;
+    private int targetTagId;
+    private EventListener eventListener;
+    private long maxDownloadSize;
+    private boolean asyncRequestTransformer;
+    private int warmStartEntries;
+    private boolean recycleDrawables;
+    private boolean tracing;
+    private Cache intermediateCache;
     private boolean debugging;
 
     /** Start building a new {@link Picasso} instance. */
@@ -447,6 +916,36 @@ public class Picasso {
       return this;
     }
 
+    /**
+     * Specify a cache for the results of the leading stages of transformation chains. Each request
+     * keeps the input of its last transformation here. A request whose transformations start like
+     * those of an earlier request resumes from the deepest stage found here instead of decoding
+     * the image again. This should be small compared to the memory cache. By default intermediate
+     * results are not kept.
+     */
+    public Builder intermediateCache(Cache intermediateCache) {
+      if (intermediateCache == null) {
+        throw new IllegalArgumentException("Intermediate cache must not be null.");
+      }
+      if (this.intermediateCache != null) {
+        throw new IllegalStateException("Intermediate cache already set.");
+      }
+      this.intermediateCache = intermediateCache;
+      return this;
+    }
+
+    /** Specify a listener for the timed events of every request, e.g. to export metrics. */
+    public Builder eventListener(EventListener eventListener) {
+      if (eventListener == null) {
+        throw new IllegalArgumentException("Event listener must not be null.");
+      }
+      if (this.eventListener != null) {
+        throw new IllegalStateException("Event listener already set.");
+      }
+      this.eventListener = eventListener;
+      return this;
+    }
+
     /** Specify a listener for interesting events. */
     public Builder listener(Listener listener) {
       if (listener == null) {
@@ -476,6 +975,118 @@ public class Picasso {
       return this;
     }
 
+    /**
+     * Whether the {@link #requestTransformer(RequestTransformer) request transformer} runs on the
+     * dispatcher thread instead of on the main thread. The main thread then only checks the memory
+     * cache for the request as it was made, which finds images of requests the transformer
+     * handled recently. Use this for transformers which take more than a trivial amount of time.
+     * Disabled by default.
+     */
+    public Builder asyncRequestTransformer(boolean asyncRequestTransformer) {
+      this.asyncRequestTransformer = asyncRequestTransformer;
+      return this;
+    }
+
+    /**
+     * Remember the requests of the {@code maxEntries} most recently used images in the memory
+     * cache and save them to a file in the cache directory when the app is moved to the
+     * background or this instance is {@link Picasso#shutdown() shut down}. The next instance built
+     * with this option loads those images at low priority, network images only from the disk
+     * cache, so the first screen after a restart finds them in memory. Requests with custom
+     * transformations are not remembered. Disabled by default.
+     */
+    public Builder warmStart(int maxEntries) {
+      if (maxEntries <= 0) {
+        throw new IllegalArgumentException("Warm start entries must be positive.");
+      }
+      if (this.warmStartEntries != 0) {
+        throw new IllegalStateException("Warm start already set.");
+      }
+      this.warmStartEntries = maxEntries;
+      return this;
+    }
+
+    /**
+     * Limit the memory that concurrent decodes may allocate to {@code maxBytes}. Decodes which do
+     * not fit wait for others to finish, images which would not fit on their own are sampled down.
+     * By default decodes are not limited.
+     */
+    public Builder decodeMemoryBudget(long maxBytes) {
+      if (maxBytes <= 0) {
+        throw new IllegalArgumentException("Decode memory budget must be positive.");
+      }
+      if (this.decodeBudget != null) {
+        throw new IllegalStateException("Decode memory budget already set.");
+      }
+      this.decodeBudget = new DecodeBudget(maxBytes);
+      return this;
+    }
+
+    /**
+     * Whether sized requests for local images may be served from a thumbnail. When the target size
+     * fits into the embedded EXIF thumbnail of a file or the mini thumbnail of a MediaStore image,
+     * the thumbnail is decoded instead of the full image. Disabled by default.
+     */
+    public Builder useThumbnails(boolean useThumbnails) {
+      this.useThumbnails = useThumbnails;
+      return this;
+    }
+
+    /**
+     * Keep the request of each {@link ImageView} in its view tag with the key {@code tagId} instead
+     * of in weak maps. Rebinding a view then cancels its previous request directly and requests of
+     * garbage collected views are cancelled on later submissions instead of by a background thread.
+     * The key must be an id resource of the application, e.g. one declared in
+     * {@code res/values/ids.xml}.
+     */
+    public Builder targetTagId(int tagId) {
+      if ((tagId >>> 24) < 2) {
+        throw new IllegalArgumentException("Target tag id must be an application resource id.");
+      }
+      if (this.targetTagId != 0) {
+        throw new IllegalStateException("Target tag id already set.");
+      }
+      this.targetTagId = tagId;
+      return this;
+    }
+
+    /**
+     * Fail downloads larger than {@code maxBytes} instead of decoding them. Responses which declare
+     * a larger content length are not read at all. By default downloads are not limited.
+     */
+    public Builder maxDownloadSize(long maxBytes) {
+      if (maxBytes <= 0) {
+        throw new IllegalArgumentException("Max download size must be positive.");
+      }
+      if (this.maxDownloadSize != 0) {
+        throw new IllegalStateException("Max download size already set.");
+      }
+      this.maxDownloadSize = maxBytes;
+      return this;
+    }
+
+    /**
+     * Whether the drawables which are replaced on an {@link ImageView} are reused for the next
+     * image, which saves an allocation per delivered image. Only enable this if the app never
+     * keeps drawables it got from {@link ImageView#getDrawable()} of the views Picasso loads into,
+     * those would show another image later. Disabled by default.
+     */
+    public Builder recycleDrawables(boolean recycleDrawables) {
+      this.recycleDrawables = recycleDrawables;
+      return this;
+    }
+
+    /**
+     * Whether the stages of each request are recorded as systrace sections, e.g. cache checks,
+     * dispatcher events, downloads, decodes, transformations and delivery. Hunting threads are
+     * then also named after their request. Sections are only recorded on API 18 and up. Disabled
+     * by default.
+     */
+    public Builder tracing(boolean tracing) {
+      this.tracing = tracing;
+      return this;
+    }
+
     /** Whether debugging is enabled or not. */
     public Builder debugging(boolean debugging) {
       this.debugging = debugging;
@@ -501,12 +1112,88 @@ public class Picasso {
 
       Stats stats = new Stats(cache);
 
-      Dispatcher dispatcher = new Dispatcher(context, service, HANDLER, downloader, cache, stats);
+      Dispatcher dispatcher =
+          new Dispatcher(context, service, HANDLER, downloader, cache, stats, tracing);
 
-      return new Picasso(context, dispatcher, cache, listener, transformer, stats, debugging);
+      Options options = new Options();
+      options.decodeBudget = decodeBudget;
+      options.useThumbnails = useThumbnails;
+      options.intermediateCache = intermediateCache;
+      options.targetTagId = targetTagId;
+      options.eventListener = eventListener;
+      options.maxDownloadSize = maxDownloadSize;
+      options.asyncRequestTransformer = asyncRequestTransformer;
+      options.recycleDrawables = recycleDrawables;
+      options.tracing = tracing;
+      if (warmStartEntries != 0) {
+        options.warmStart = new WarmStart(WarmStart.createDefaultFile(context), warmStartEntries);
+      }
+
+      Picasso picasso =
+          new Picasso(context, dispatcher, cache, listener, transformer, stats, options, debugging);
+      if (options.warmStart != null) {
+        dispatcher.dispatchWarmStartLoad(picasso);
+      }
+      return picasso;
     }
   }
 
+  /** The optional features of an instance, all disabled by default. See {@link Builder}. */
+  static final class Options {
+    DecodeBudget decodeBudget;
+    boolean useThumbnails;
+    Cache intermediateCache;
+    int targetTagId;
+    EventListener eventListener;
+    long maxDownloadSize;
+    boolean asyncRequestTransformer;
+    WarmStart warmStart;
+    boolean recycleDrawables;
+    boolean tracing;
+  }
+
+  /** Requests collected by {@link Picasso#batch()}. */
+  public static final class Batch {
+    final Picasso picasso;
+    final List<Action> cancels = new ArrayList<Action>();
+    final List<Action> submits = new ArrayList<Action>();
+    /** Submits the batch if it is still open after the main thread message it was started in. */
+    final Runnable abandoned = new Runnable() {
+      @Override public void run() {
+        submit();
+      }
+    };
+
+    Batch(Picasso picasso) {
+      this.picasso = picasso;
+    }
+
+    /**
+     * Hands the collected requests to the dispatcher and ends the batch. Does nothing if the batch
+     * has ended already.
+     */
+    public void submit() {
+      if (picasso.batch != this) {
+        return;
+      }
+      picasso.batch = null;
+      HANDLER.removeCallbacks(abandoned);
+      if (!cancels.isEmpty() || !submits.isEmpty()) {
+        picasso.dispatcher.dispatchBatch(this);
+      }
+    }
+  }
+
+  /**
+   * The priority of a request. Higher priority requests are replayed first when connectivity is
+   * restored.
+   */
+  public enum Priority {
+    LOW,
+    NORMAL,
+    HIGH
+  }
+
   /** Describes where the image was loaded from. */
   public enum LoadedFrom {
     MEMORY(Color.GREEN),
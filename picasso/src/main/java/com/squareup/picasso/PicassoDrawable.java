@@ -16,102 +16,173 @@
 package com.squareup.picasso;
 
 import android.content.Context;
-import android.content.res.Resources;
 import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.ColorFilter;
 import android.graphics.Paint;
 import android.graphics.Path;
-import android.graphics.Point;
+import android.graphics.PixelFormat;
 import android.graphics.Rect;
-import android.graphics.drawable.BitmapDrawable;
 import android.graphics.drawable.Drawable;
 import android.os.SystemClock;
+import android.util.DisplayMetrics;
 import android.widget.ImageView;
 
 import static android.graphics.Color.WHITE;
 import static com.squareup.picasso.Picasso.LoadedFrom.MEMORY;
 
+/**
+ * Draws a loaded bitmap, fading it in over the placeholder. Drawing allocates nothing and, if
+ * enabled through {@link Picasso.Builder#recycleDrawables}, drawables replaced on their view are
+ * recycled for the next image delivered to a view.
+ */
 final class PicassoDrawable extends Drawable {
   // Only accessed from main thread.
   private static final Paint DEBUG_PAINT = new Paint();
+  private static final Path DEBUG_OUTER_PATH = new Path();
+  private static final Path DEBUG_INNER_PATH = new Path();
+  private static float debugPathDensity;
+  private static final int MAX_RECYCLED = 4;
+  private static final PicassoDrawable[] RECYCLED = new PicassoDrawable[MAX_RECYCLED];
+  static int recycledCount;
 
   private static final float FADE_DURATION = 200f; //ms
 
+  private final Paint paint = new Paint(Paint.FILTER_BITMAP_FLAG | Paint.DITHER_FLAG);
+
+  private boolean debugging;
+  private float density;
+  private Picasso.LoadedFrom loadedFrom;
+  private int alpha = 0xFF;
+  private int intrinsicWidth;
+  private int intrinsicHeight;
+  Bitmap bitmap;
+
+  Drawable placeholder;
+
+  long startTimeMillis;
+  boolean animating;
+
   /**
    * Create or update the drawable on the target {@link ImageView} to display the supplied bitmap
-   * image.
+   * image. The replaced drawable is recycled if {@code recycle} is set.
    */
   static void setBitmap(ImageView target, Context context, Bitmap bitmap,
-      Picasso.LoadedFrom loadedFrom, boolean noFade, boolean debugging) {
-    Drawable placeholder = target.getDrawable();
-    PicassoDrawable drawable =
-        new PicassoDrawable(context, placeholder, bitmap, loadedFrom, noFade, debugging);
+      Picasso.LoadedFrom loadedFrom, boolean noFade, boolean debugging, boolean recycle) {
+    Drawable previous = target.getDrawable();
+    PicassoDrawable drawable = obtain(context, previous, bitmap, loadedFrom, noFade, debugging);
     target.setImageDrawable(drawable);
+    if (recycle && drawable.placeholder != previous) {
+      recycle(previous);
+    }
   }
 
   /**
    * Create or update the drawable on the target {@link ImageView} to display the supplied
-   * placeholder image.
+   * placeholder image. The replaced drawable is recycled if {@code recycle} is set.
    */
-  static void setPlaceholder(ImageView target, int placeholderResId, Drawable placeholderDrawable) {
+  static void setPlaceholder(ImageView target, DrawableCache drawableCache, int placeholderResId,
+      Drawable placeholderDrawable, boolean recycle) {
+    Drawable previous = target.getDrawable();
     if (placeholderResId != 0) {
-      target.setImageResource(placeholderResId);
+      setResource(target, drawableCache, placeholderResId);
     } else {
       target.setImageDrawable(placeholderDrawable);
     }
+    if (recycle) {
+      recycle(previous);
+    }
   }
 
-  private final boolean debugging;
-  private final float density;
-  private final Picasso.LoadedFrom loadedFrom;
-  final BitmapDrawable image;
+  /** Display the drawable resource {@code resId}, shared through {@code drawableCache}. */
+  static void setResource(ImageView target, DrawableCache drawableCache, int resId) {
+    target.setImageDrawable(drawableCache.get(resId));
+  }
 
-  Drawable placeholder;
+  PicassoDrawable(Context context, Drawable placeholder, Bitmap bitmap,
+      Picasso.LoadedFrom loadedFrom, boolean noFade, boolean debugging) {
+    bind(context, placeholder, bitmap, loadedFrom, noFade, debugging);
+  }
 
-  long startTimeMillis;
-  boolean animating;
+  /** Returns a recycled drawable showing {@code bitmap} or a new one if there is none. */
+  static PicassoDrawable obtain(Context context, Drawable placeholder, Bitmap bitmap,
+      Picasso.LoadedFrom loadedFrom, boolean noFade, boolean debugging) {
+    if (recycledCount == 0) {
+      return new PicassoDrawable(context, placeholder, bitmap, loadedFrom, noFade, debugging);
+    }
+    PicassoDrawable drawable = RECYCLED[--recycledCount];
+    RECYCLED[recycledCount] = null;
+    drawable.bind(context, placeholder, bitmap, loadedFrom, noFade, debugging);
+    return drawable;
+  }
 
-  PicassoDrawable(Context context, Drawable placeholder, Bitmap bitmap,
+  /**
+   * Keeps {@code drawable} for reuse if it is a {@link PicassoDrawable} which was just replaced on
+   * its view. It must not be displayed anywhere else.
+   */
+  static void recycle(Drawable drawable) {
+    if (!(drawable instanceof PicassoDrawable) || recycledCount == MAX_RECYCLED) {
+      return;
+    }
+    PicassoDrawable picassoDrawable = (PicassoDrawable) drawable;
+    // Drop the images so that recycled drawables do not keep them alive.
+    picassoDrawable.bitmap = null;
+    picassoDrawable.placeholder = null;
+    picassoDrawable.animating = false;
+    RECYCLED[recycledCount++] = picassoDrawable;
+  }
+
+  /** Drops the recycled drawables. */
+  static void clearRecycled() {
+    for (int i = 0; i < recycledCount; i++) {
+      RECYCLED[i] = null;
+    }
+    recycledCount = 0;
+  }
+
+  private void bind(Context context, Drawable placeholder, Bitmap bitmap,
       Picasso.LoadedFrom loadedFrom, boolean noFade, boolean debugging) {
-    Resources res = context.getResources();
+    DisplayMetrics metrics = context.getResources().getDisplayMetrics();
 
     this.debugging = debugging;
-    this.density = res.getDisplayMetrics().density;
-
+    this.density = metrics.density;
     this.loadedFrom = loadedFrom;
-
-    this.image = new BitmapDrawable(res, bitmap);
+    this.bitmap = bitmap;
+    this.intrinsicWidth = bitmap.getScaledWidth(metrics.densityDpi);
+    this.intrinsicHeight = bitmap.getScaledHeight(metrics.densityDpi);
+    this.alpha = 0xFF;
+    paint.setAlpha(0xFF);
+    paint.setColorFilter(null);
 
     boolean fade = loadedFrom != MEMORY && !noFade;
+    this.placeholder = fade ? placeholder : null;
+    this.animating = fade;
     if (fade) {
-      this.placeholder = placeholder;
-      animating = true;
       startTimeMillis = SystemClock.uptimeMillis();
+      paint.setAlpha(0);
     }
   }
 
   @Override public void draw(Canvas canvas) {
-    if (!animating) {
-      image.draw(canvas);
-    } else {
+    Bitmap bitmap = this.bitmap;
+    if (bitmap == null) {
+      return;
+    }
+    if (animating) {
       float normalized = (SystemClock.uptimeMillis() - startTimeMillis) / FADE_DURATION;
       if (normalized >= 1f) {
         animating = false;
         placeholder = null;
-        image.draw(canvas);
+        paint.setAlpha(alpha);
       } else {
         if (placeholder != null) {
           placeholder.draw(canvas);
         }
-
-        int alpha = (int) (0xFF * normalized);
-        image.setAlpha(alpha);
-        image.draw(canvas);
-        image.setAlpha(0xFF);
+        paint.setAlpha((int) (alpha * normalized));
         invalidateSelf();
       }
     }
+    canvas.drawBitmap(bitmap, null, getBounds(), paint);
 
     if (debugging) {
       drawDebugIndicator(canvas);
@@ -119,35 +190,40 @@ final class PicassoDrawable extends Drawable {
   }
 
   @Override public int getIntrinsicWidth() {
-    return image.getIntrinsicWidth();
+    return intrinsicWidth;
   }
 
   @Override public int getIntrinsicHeight() {
-    return image.getIntrinsicHeight();
+    return intrinsicHeight;
   }
 
   @Override public void setAlpha(int alpha) {
     if (placeholder != null) {
       placeholder.setAlpha(alpha);
     }
-    image.setAlpha(alpha);
+    this.alpha = alpha;
+    if (!animating) {
+      paint.setAlpha(alpha);
+    }
   }
 
   @Override public void setColorFilter(ColorFilter cf) {
     if (placeholder != null) {
       placeholder.setColorFilter(cf);
     }
-    image.setColorFilter(cf);
+    paint.setColorFilter(cf);
   }
 
   @Override public int getOpacity() {
-    return image.getOpacity();
+    if (bitmap == null || bitmap.hasAlpha() || animating || alpha < 0xFF) {
+      return PixelFormat.TRANSLUCENT;
+    }
+    return PixelFormat.OPAQUE;
   }
 
   @Override protected void onBoundsChange(Rect bounds) {
     super.onBoundsChange(bounds);
 
-    image.setBounds(bounds);
     if (placeholder != null) {
       // Center placeholder inside the image bounds
       setBounds(placeholder);
@@ -181,24 +257,23 @@ final class PicassoDrawable extends Drawable {
   }
 
   private void drawDebugIndicator(Canvas canvas) {
+    if (debugPathDensity != density) {
+      setTrianglePath(DEBUG_OUTER_PATH, (int) (16 * density));
+      setTrianglePath(DEBUG_INNER_PATH, (int) (15 * density));
+      debugPathDensity = density;
+    }
+
     DEBUG_PAINT.setColor(WHITE);
-    Path path = getTrianglePath(new Point(0, 0), (int) (16 * density));
-    canvas.drawPath(path, DEBUG_PAINT);
+    canvas.drawPath(DEBUG_OUTER_PATH, DEBUG_PAINT);
 
     DEBUG_PAINT.setColor(loadedFrom.debugColor);
-    path = getTrianglePath(new Point(0, 0), (int) (15 * density));
-    canvas.drawPath(path, DEBUG_PAINT);
+    canvas.drawPath(DEBUG_INNER_PATH, DEBUG_PAINT);
   }
 
-  private static Path getTrianglePath(Point p1, int width) {
-    Point p2 = new Point(p1.x + width, p1.y);
-    Point p3 = new Point(p1.x, p1.y + width);
-
-    Path path = new Path();
-    path.moveTo(p1.x, p1.y);
-    path.lineTo(p2.x, p2.y);
-    path.lineTo(p3.x, p3.y);
-
-    return path;
+  private static void setTrianglePath(Path path, int width) {
+    path.reset();
+    path.moveTo(0, 0);
+    path.lineTo(width, 0);
+    path.lineTo(0, width);
   }
 }
@@ -0,0 +1,45 @@
+/*
+ * Copyright (C) 2013 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squareup.picasso;
+
+import android.graphics.Bitmap;
+
+/**
+ * A {@link Transformation} which draws into a destination bitmap provided by Picasso instead of
+ * allocating its own. Destination bitmaps are reused across the transformations of a request and
+ * across requests, so a chain of pooled transformations only allocates its final result. Picasso
+ * never calls {@link #transform(Bitmap)} on a pooled transformation.
+ */
+public interface PooledTransformation extends Transformation {
+  /** The width of the result for a source of {@code sourceWidth} by {@code sourceHeight}. */
+  int getOutputWidth(int sourceWidth, int sourceHeight);
+
+  /** The height of the result for a source of {@code sourceWidth} by {@code sourceHeight}. */
+  int getOutputHeight(int sourceWidth, int sourceHeight);
+
+  /**
+   * Whether {@link #transform(Bitmap, Bitmap)} can write its result over its source. Only used
+   * when the output has the size of the source.
+   */
+  boolean canTransformInPlace();
+
+  /**
+   * Draw the transformed {@code source} into {@code destination}, which is mutable, transparent
+   * and of the output size. {@code destination} is {@code source} itself when transforming in
+   * place. Neither bitmap may be recycled or retained.
+   */
+  void transform(Bitmap source, Bitmap destination);
+}
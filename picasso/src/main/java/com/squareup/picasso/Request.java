@@ -19,6 +19,7 @@ import android.net.Uri;
 import java.util.ArrayList;
 import java.util.List;
 
+import static com.squareup.picasso.Picasso.Priority;
 import static java.util.Collections.unmodifiableList;
 
 /** Immutable data about an image and the transformations that will be applied to it. */
@@ -35,6 +36,11 @@ public final class Request {
    * This is mutually exclusive with {@link #uri}.
    */
   public final int resourceId;
+  /**
+   * The key which identifies the image in place of {@link #uri} or {@link #resourceId} in the
+   * memory cache, or null to use those.
+   */
+  public final String stableKey;
   /** List of custom transformations to be applied after the built-in transformations. */
   public final List<Transformation> transformations;
   /** Target image width for resizing. */
@@ -61,12 +67,16 @@ public final class Request {
   public final float rotationPivotY;
   /** Whether or not {@link #rotationPivotX} and {@link #rotationPivotY} are set. */
   public final boolean hasRotationPivot;
+  /** The priority of this request. */
+  public final Priority priority;
 
-  private Request(Uri uri, int resourceId, List<Transformation> transformations, int targetWidth,
-      int targetHeight, boolean centerCrop, boolean centerInside, float rotationDegrees,
-      float rotationPivotX, float rotationPivotY, boolean hasRotationPivot) {
+  private Request(Uri uri, int resourceId, String stableKey, List<Transformation> transformations,
+      int targetWidth, int targetHeight, boolean centerCrop, boolean centerInside,
+      float rotationDegrees, float rotationPivotX, float rotationPivotY, boolean hasRotationPivot,
+      Priority priority) {
     this.uri = uri;
     this.resourceId = resourceId;
+    this.stableKey = stableKey;
     if (transformations == null) {
       this.transformations = null;
     } else {
@@ -80,6 +90,7 @@ public final class Request {
     this.rotationPivotX = rotationPivotX;
     this.rotationPivotY = rotationPivotY;
     this.hasRotationPivot = hasRotationPivot;
+    this.priority = priority;
   }
 
   String getName() {
@@ -113,6 +124,7 @@ public final class Request {
   public static final class Builder {
     private Uri uri;
     private int resourceId;
+    private String stableKey;
     private int targetWidth;
     private int targetHeight;
     private boolean centerCrop;
@@ -122,6 +134,7 @@ public final class Request {
     private float rotationPivotY;
     private boolean hasRotationPivot;
     private List<Transformation> transformations;
+    private Priority priority;
 
     /** Start building a request using the specified {@link Uri}. */
     public Builder(Uri uri) {
@@ -141,6 +154,7 @@ public final class Request {
     private Builder(Request request) {
       uri = request.uri;
       resourceId = request.resourceId;
+      stableKey = request.stableKey;
       targetWidth = request.targetWidth;
       targetHeight = request.targetHeight;
       centerCrop = request.centerCrop;
@@ -149,6 +163,7 @@ public final class Request {
       rotationPivotX = request.rotationPivotX;
       rotationPivotY = request.rotationPivotY;
       hasRotationPivot = request.hasRotationPivot;
+      priority = request.priority;
       if (request.transformations != null) {
         transformations = new ArrayList<Transformation>(request.transformations);
       }
@@ -162,6 +177,10 @@ public final class Request {
       return targetWidth != 0;
     }
 
+    Uri getUri() {
+      return uri;
+    }
+
     /**
      * Set the target image Uri.
      * <p>
@@ -190,6 +209,15 @@ public final class Request {
       return this;
     }
 
+    /**
+     * Identify the image by {@code stableKey} in the memory cache instead of its Uri or resource
+     * ID, e.g. when the Uri holds parameters which do not change what the image shows.
+     */
+    public Builder stableKey(String stableKey) {
+      this.stableKey = stableKey;
+      return this;
+    }
+
     /** Resize the image to the specified size in pixels. */
     public Builder resize(int targetWidth, int targetHeight) {
       if (targetWidth <= 0) {
@@ -273,6 +301,15 @@ public final class Request {
       return this;
     }
 
+    /** Set the priority of this request. */
+    public Builder priority(Priority priority) {
+      if (priority == null) {
+        throw new IllegalArgumentException("Priority must not be null.");
+      }
+      this.priority = priority;
+      return this;
+    }
+
     /**
      * Add a custom transformation to be applied to the image.
      * <p/>
@@ -300,8 +337,10 @@ public final class Request {
       if (centerInside && targetWidth == 0) {
         throw new IllegalStateException("Center inside requires calling resize.");
       }
-      return new Request(uri, resourceId, transformations, targetWidth, targetHeight, centerCrop,
-          centerInside, rotationDegrees, rotationPivotX, rotationPivotY, hasRotationPivot);
+      Priority priority = this.priority == null ? Priority.NORMAL : this.priority;
+      return new Request(uri, resourceId, stableKey, transformations, targetWidth, targetHeight,
+          centerCrop, centerInside, rotationDegrees, rotationPivotX, rotationPivotY,
+          hasRotationPivot, priority);
     }
   }
 }
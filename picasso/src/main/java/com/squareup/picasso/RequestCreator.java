@@ -19,6 +19,7 @@ import android.content.res.Resources;
 import android.graphics.Bitmap;
 import android.graphics.drawable.Drawable;
 import android.net.Uri;
+import android.view.ViewGroup;
 import android.widget.ImageView;
 import java.io.IOException;
 import org.jetbrains.annotations.TestOnly;
@@ -31,7 +32,7 @@ import static com.squareup.picasso.Utils.createKey;
 /** Fluent API for building an image download request. */
 @SuppressWarnings("UnusedDeclaration") // Public API.
 public class RequestCreator {
-  private final Picasso picasso;
+  final Picasso picasso;
   private final Request.Builder data;
 
   private boolean skipMemoryCache;
@@ -114,7 +115,9 @@ public class RequestCreator {
 
   /**
    * Attempt to resize the image to fit exactly into the target {@link ImageView}'s bounds. This
-   * will result in delayed execution of the request until the {@link ImageView} has been measured.
+   * will result in delayed execution of the request until the {@link ImageView} has been measured,
+   * unless its layout params specify an exact size. The source of a network image is downloaded
+   * into the disk cache while the request waits.
    * <p/>
    * <em>Note:</em> This method works only when your target is an {@link ImageView).
    */
@@ -174,6 +177,12 @@ public class RequestCreator {
     return this;
   }
 
+  /** Set the priority of this request. Defaults to {@link Picasso.Priority#NORMAL}. */
+  public RequestCreator priority(Picasso.Priority priority) {
+    data.priority(priority);
+    return this;
+  }
+
   /**
    * Add a custom transformation to be applied to the image.
    * <p/>
@@ -228,7 +237,7 @@ public class RequestCreator {
       throw new IllegalStateException("Fit cannot be used with fetch.");
     }
     if (data.hasImage()) {
-      Request finalData = picasso.transformRequest(data.build());
+      Request finalData = picasso.transformRequestOnSubmit(data.build());
       String key = Utils.createKey(finalData);
 
       Action action = new FetchAction(picasso, finalData, skipMemoryCache, key);
@@ -281,9 +290,7 @@ public class RequestCreator {
       throw new IllegalStateException("Fit cannot be used with a Target.");
     }
 
-    Drawable drawable =
-        placeholderResId != 0 ? picasso.context.getResources().getDrawable(placeholderResId)
-            : placeholderDrawable;
+    Drawable drawable = getPlaceholderDrawable();
 
     if (!data.hasImage()) {
       picasso.cancelRequest(target);
@@ -291,7 +298,7 @@ public class RequestCreator {
       return;
     }
 
-    Request finalData = picasso.transformRequest(data.build());
+    Request finalData = picasso.transformRequestOnSubmit(data.build());
     String requestKey = createKey(finalData);
 
     if (!skipMemoryCache) {
@@ -332,10 +339,12 @@ public class RequestCreator {
     if (target == null) {
       throw new IllegalArgumentException("Target must not be null.");
     }
+    picasso.restoreCacheSize(target);
 
     if (!data.hasImage()) {
       picasso.cancelRequest(target);
-      PicassoDrawable.setPlaceholder(target, placeholderResId, placeholderDrawable);
+      PicassoDrawable.setPlaceholder(target, picasso.drawableCache, placeholderResId,
+          placeholderDrawable, picasso.recycleDrawables);
       return;
     }
 
@@ -346,14 +355,25 @@ public class RequestCreator {
       int measuredWidth = target.getMeasuredWidth();
       int measuredHeight = target.getMeasuredHeight();
       if (measuredWidth == 0 && measuredHeight == 0) {
-        PicassoDrawable.setPlaceholder(target, placeholderResId, placeholderDrawable);
-        picasso.defer(target, new DeferredRequestCreator(this, target, callback));
-        return;
+        // Exact layout params predict the measured size before the first layout pass.
+        ViewGroup.LayoutParams params = target.getLayoutParams();
+        if (params != null && params.width > 0 && params.height > 0) {
+          measuredWidth = params.width;
+          measuredHeight = params.height;
+        } else {
+          PicassoDrawable.setPlaceholder(target, picasso.drawableCache, placeholderResId,
+              placeholderDrawable, picasso.recycleDrawables);
+          DeferredRequestCreator deferredRequest =
+              new DeferredRequestCreator(this, target, callback);
+          picasso.defer(target, deferredRequest);
+          picasso.prefetchSource(deferredRequest, data.getUri());
+          return;
+        }
       }
       data.resize(measuredWidth, measuredHeight);
     }
 
-    Request finalData = picasso.transformRequest(data.build());
+    Request finalData = picasso.transformRequestOnSubmit(data.build());
     String requestKey = createKey(finalData);
 
     if (!skipMemoryCache) {
@@ -361,7 +381,7 @@ public class RequestCreator {
       if (bitmap != null) {
         picasso.cancelRequest(target);
         PicassoDrawable.setBitmap(target, picasso.context, bitmap, MEMORY, noFade,
-            picasso.debugging);
+            picasso.debugging, picasso.recycleDrawables);
         if (callback != null) {
           callback.onSuccess();
         }
@@ -369,7 +389,8 @@ public class RequestCreator {
       }
     }
 
-    PicassoDrawable.setPlaceholder(target, placeholderResId, placeholderDrawable);
+    PicassoDrawable.setPlaceholder(target, picasso.drawableCache, placeholderResId,
+        placeholderDrawable, picasso.recycleDrawables);
 
     Action action =
         new ImageViewAction(picasso, target, finalData, skipMemoryCache, noFade, errorResId,
@@ -377,4 +398,11 @@ public class RequestCreator {
 
     picasso.enqueueAndSubmit(action);
   }
+
+  private Drawable getPlaceholderDrawable() {
+    if (placeholderResId == 0) {
+      return placeholderDrawable;
+    }
+    return picasso.drawableCache.get(placeholderResId);
+  }
 }
@@ -40,14 +40,13 @@ class ResourceBitmapHunter extends BitmapHunter {
     return DISK;
   }
 
-  private Bitmap decodeResource(Resources resources, Request data) {
+  private Bitmap decodeResource(Resources resources, Request data) throws IOException {
     int resourceId = data.resourceId;
-    BitmapFactory.Options bitmapOptions = null;
-    if (data.hasSize()) {
-      bitmapOptions = new BitmapFactory.Options();
+    BitmapFactory.Options bitmapOptions = createDecodeOptions();
+    if (requiresBoundsPass()) {
       bitmapOptions.inJustDecodeBounds = true;
       BitmapFactory.decodeResource(resources, resourceId, bitmapOptions);
-      calculateInSampleSize(data.targetWidth, data.targetHeight, bitmapOptions);
+      prepareDecode(bitmapOptions);
     }
     return BitmapFactory.decodeResource(resources, resourceId, bitmapOptions);
   }
@@ -0,0 +1,118 @@
+/*
+ * Copyright (C) 2013 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squareup.picasso;
+
+import android.net.Uri;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Future;
+
+/**
+ * Downloads the source of a network image without decoding it so that it is in the downloader's
+ * disk cache by the time the request knows its target size. Hunters for the same image wait for
+ * the prefetch instead of downloading the image a second time. Only used with a
+ * {@link CachingDownloader} which has a disk cache.
+ */
+class SourcePrefetcher implements Runnable {
+  private static final int BUFFER_SIZE = 4096;
+
+  final Dispatcher dispatcher;
+  final Downloader downloader;
+  final Uri uri;
+  /** The largest source in bytes which is read, {@code 0} for no limit. */
+  final long maxSize;
+  final List<BitmapHunter> waitingHunters;
+  /** The deferred requests which still wait for their size. Only used on the dispatcher thread. */
+  final Set<DeferredRequestCreator> deferredRequests;
+
+  Future<?> future;
+  volatile boolean cancelled; // Set by the dispatcher, polled by the prefetching thread.
+  // The stream currently being drained, if any. Closed from the dispatcher thread on cancel.
+  private volatile InputStream inFlightStream;
+
+  SourcePrefetcher(Dispatcher dispatcher, Downloader downloader, Uri uri, long maxSize) {
+    this.dispatcher = dispatcher;
+    this.downloader = downloader;
+    this.uri = uri;
+    this.maxSize = maxSize;
+    this.waitingHunters = new ArrayList<BitmapHunter>(1);
+    this.deferredRequests = new LinkedHashSet<DeferredRequestCreator>(2);
+  }
+
+  @Override public void run() {
+    // Renaming the thread allocates, so it only helps while tracing.
+    boolean tracing = dispatcher.tracing;
+    try {
+      if (tracing) {
+        Thread.currentThread().setName(Utils.THREAD_PREFIX + "Prefetch");
+      }
+      Downloader.Response response = downloader.load(uri, false);
+      if (response != null) {
+        InputStream stream = response.getInputStream();
+        inFlightStream = stream;
+        // The stream may have been opened after the dispatcher tried to close it. Sources which
+        // are too large are left to the hunters, which fail them without reading them.
+        long contentLength = response.getContentLength();
+        if (cancelled || maxSize > 0 && contentLength > maxSize) {
+          Utils.closeQuietly(stream);
+        } else if (stream != null) {
+          drain(new CountingInputStream(stream, maxSize));
+        }
+      }
+    } catch (IOException ignored) {
+      // The hunters waiting for this prefetch will retry on their own.
+    } finally {
+      inFlightStream = null;
+      dispatcher.dispatchPrefetchComplete(this);
+      if (tracing) {
+        Thread.currentThread().setName(Utils.THREAD_IDLE_NAME);
+      }
+    }
+  }
+
+  /** Aborts the download once nobody needs it. Called on the dispatcher thread. */
+  boolean cancel() {
+    if (future != null && future.cancel(false)) {
+      cancelled = true;
+      Utils.closeQuietly(inFlightStream);
+      return true;
+    }
+    return false;
+  }
+
+  boolean isCancelled() {
+    return future != null && future.isCancelled();
+  }
+
+  /** Reads {@code stream} to the end, which is when HTTP caches commit the response. */
+  static void drain(InputStream stream) throws IOException {
+    if (stream == null) {
+      return;
+    }
+    try {
+      byte[] buffer = new byte[BUFFER_SIZE];
+      while (stream.read(buffer) != -1) {
+        // Discard.
+      }
+    } finally {
+      Utils.closeQuietly(stream);
+    }
+  }
+}
@@ -29,6 +29,11 @@ class Stats {
   private static final int CACHE_MISS = 2;
   private static final int BITMAP_DECODE_FINISHED = 3;
   private static final int BITMAP_TRANSFORMED_FINISHED = 4;
+  private static final int BITMAP_WASTED = 5;
+  private static final int DOWNLOAD_ABORTED = 6;
+  private static final int THUMBNAIL_HIT = 7;
+  private static final int THUMBNAIL_MISS = 8;
+  private static final int DOWNLOAD_FINISHED = 9;
 
   private static final String STATS_THREAD_NAME = Utils.THREAD_PREFIX + "Stats";
 
@@ -44,6 +49,16 @@ class Stats {
   long averageTransformedBitmapSize;
   int originalBitmapCount;
   int transformedBitmapCount;
+  long totalWastedBitmapSize;
+  int wastedBitmapCount;
+  long totalAbortedDownloadSize;
+  int abortedDownloadCount;
+  long thumbnailHits;
+  long thumbnailMisses;
+  long totalNetworkDownloadSize;
+  int networkDownloadCount;
+  long totalDiskDownloadSize;
+  int diskDownloadCount;
 
   Stats(Cache cache) {
     this.cache = cache;
@@ -60,6 +75,31 @@ class Stats {
     processBitmap(bitmap, BITMAP_TRANSFORMED_FINISHED);
   }
 
+  /** A decoded bitmap was thrown away because its hunter was cancelled. */
+  void dispatchBitmapWasted(Bitmap bitmap) {
+    processBitmap(bitmap, BITMAP_WASTED);
+  }
+
+  /** A download was aborted by cancellation after {@code size} bytes had been read. */
+  void dispatchDownloadAborted(long size) {
+    handler.sendMessage(handler.obtainMessage(DOWNLOAD_ABORTED, size));
+  }
+
+  /** A download of {@code size} bytes from the network or the disk cache was decoded. */
+  void dispatchDownloadFinished(Picasso.LoadedFrom from, long size) {
+    handler.sendMessage(handler.obtainMessage(DOWNLOAD_FINISHED, from.ordinal(), 0, size));
+  }
+
+  /** A request was served from an embedded or MediaStore thumbnail. */
+  void dispatchThumbnailHit() {
+    handler.sendEmptyMessage(THUMBNAIL_HIT);
+  }
+
+  /** A request could have been served from a thumbnail but none was large enough. */
+  void dispatchThumbnailMiss() {
+    handler.sendEmptyMessage(THUMBNAIL_MISS);
+  }
+
   void dispatchCacheHit() {
     handler.sendEmptyMessage(CACHE_HIT);
   }
@@ -93,11 +133,41 @@ class Stats {
         getAverage(originalBitmapCount, totalTransformedBitmapSize);
   }
 
+  void performBitmapWasted(long size) {
+    wastedBitmapCount++;
+    totalWastedBitmapSize += size;
+  }
+
+  void performDownloadAborted(long size) {
+    abortedDownloadCount++;
+    totalAbortedDownloadSize += size;
+  }
+
+  void performDownloadFinished(Picasso.LoadedFrom from, long size) {
+    if (from == Picasso.LoadedFrom.NETWORK) {
+      networkDownloadCount++;
+      totalNetworkDownloadSize += size;
+    } else {
+      diskDownloadCount++;
+      totalDiskDownloadSize += size;
+    }
+  }
+
+  void performThumbnailHit() {
+    thumbnailHits++;
+  }
+
+  void performThumbnailMiss() {
+    thumbnailMisses++;
+  }
+
   synchronized StatsSnapshot createSnapshot() {
     return new StatsSnapshot(cache.maxSize(), cache.size(), cacheHits, cacheMisses,
         totalOriginalBitmapSize, totalTransformedBitmapSize, averageOriginalBitmapSize,
         averageTransformedBitmapSize, originalBitmapCount, transformedBitmapCount,
-        System.currentTimeMillis());
+        totalWastedBitmapSize, wastedBitmapCount, totalAbortedDownloadSize, abortedDownloadCount,
+        thumbnailHits, thumbnailMisses, totalNetworkDownloadSize, networkDownloadCount,
+        totalDiskDownloadSize, diskDownloadCount, System.currentTimeMillis());
   }
 
   private void processBitmap(Bitmap bitmap, int what) {
@@ -131,6 +201,21 @@ class Stats {
           case BITMAP_TRANSFORMED_FINISHED:
             performBitmapTransformed(msg.arg1);
             break;
+          case BITMAP_WASTED:
+            performBitmapWasted(msg.arg1);
+            break;
+          case DOWNLOAD_ABORTED:
+            performDownloadAborted((Long) msg.obj);
+            break;
+          case DOWNLOAD_FINISHED:
+            performDownloadFinished(Picasso.LoadedFrom.values()[msg.arg1], (Long) msg.obj);
+            break;
+          case THUMBNAIL_HIT:
+            performThumbnailHit();
+            break;
+          case THUMBNAIL_MISS:
+            performThumbnailMiss();
+            break;
           case REQUESTED_COMPLETED:
             break;
           default:
@@ -33,6 +33,16 @@ public class StatsSnapshot {
   public final long averageTransformedBitmapSize;
   public final int originalBitmapCount;
   public final int transformedBitmapCount;
+  public final long totalWastedBitmapSize;
+  public final int wastedBitmapCount;
+  public final long totalAbortedDownloadSize;
+  public final int abortedDownloadCount;
+  public final long thumbnailHits;
+  public final long thumbnailMisses;
+  public final long totalNetworkDownloadSize;
+  public final int networkDownloadCount;
+  public final long totalDiskDownloadSize;
+  public final int diskDownloadCount;
 
   public final long timeStamp;
 
@@ -40,6 +50,18 @@ public class StatsSnapshot {
       long totalOriginalBitmapSize, long totalTransformedBitmapSize, long averageOriginalBitmapSize,
       long averageTransformedBitmapSize, int originalBitmapCount, int transformedBitmapCount,
       long timeStamp) {
+    this(maxSize, size, cacheHits, cacheMisses, totalOriginalBitmapSize,
+        totalTransformedBitmapSize, averageOriginalBitmapSize, averageTransformedBitmapSize,
+        originalBitmapCount, transformedBitmapCount, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, timeStamp);
+  }
+
+  StatsSnapshot(int maxSize, int size, long cacheHits, long cacheMisses,
+      long totalOriginalBitmapSize, long totalTransformedBitmapSize, long averageOriginalBitmapSize,
+      long averageTransformedBitmapSize, int originalBitmapCount, int transformedBitmapCount,
+      long totalWastedBitmapSize, int wastedBitmapCount, long totalAbortedDownloadSize,
+      int abortedDownloadCount, long thumbnailHits, long thumbnailMisses,
+      long totalNetworkDownloadSize, int networkDownloadCount, long totalDiskDownloadSize,
+      int diskDownloadCount, long timeStamp) {
     this.maxSize = maxSize;
     this.size = size;
     this.cacheHits = cacheHits;
@@ -50,6 +72,16 @@ public class StatsSnapshot {
     this.averageTransformedBitmapSize = averageTransformedBitmapSize;
     this.originalBitmapCount = originalBitmapCount;
     this.transformedBitmapCount = transformedBitmapCount;
+    this.totalWastedBitmapSize = totalWastedBitmapSize;
+    this.wastedBitmapCount = wastedBitmapCount;
+    this.totalAbortedDownloadSize = totalAbortedDownloadSize;
+    this.abortedDownloadCount = abortedDownloadCount;
+    this.thumbnailHits = thumbnailHits;
+    this.thumbnailMisses = thumbnailMisses;
+    this.totalNetworkDownloadSize = totalNetworkDownloadSize;
+    this.networkDownloadCount = networkDownloadCount;
+    this.totalDiskDownloadSize = totalDiskDownloadSize;
+    this.diskDownloadCount = diskDownloadCount;
     this.timeStamp = timeStamp;
   }
 
@@ -87,6 +119,29 @@ public class StatsSnapshot {
     writer.println(averageOriginalBitmapSize);
     writer.print("  Average Transformed Bitmap Size: ");
     writer.println(averageTransformedBitmapSize);
+    writer.println("Cancellation Stats");
+    writer.print("  Total Wasted Bitmaps: ");
+    writer.println(wastedBitmapCount);
+    writer.print("  Total Wasted Bitmap Size: ");
+    writer.println(totalWastedBitmapSize);
+    writer.print("  Total Aborted Downloads: ");
+    writer.println(abortedDownloadCount);
+    writer.print("  Total Aborted Download Size: ");
+    writer.println(totalAbortedDownloadSize);
+    writer.println("Thumbnail Stats");
+    writer.print("  Thumbnail Hits: ");
+    writer.println(thumbnailHits);
+    writer.print("  Thumbnail Misses: ");
+    writer.println(thumbnailMisses);
+    writer.println("Download Stats");
+    writer.print("  Network Downloads: ");
+    writer.println(networkDownloadCount);
+    writer.print("  Network Download Size: ");
+    writer.println(totalNetworkDownloadSize);
+    writer.print("  Disk Cache Downloads: ");
+    writer.println(diskDownloadCount);
+    writer.print("  Disk Cache Download Size: ");
+    writer.println(totalDiskDownloadSize);
     writer.println("===============END PICASSO STATS ===============");
     writer.flush();
   }
@@ -113,6 +168,26 @@ public class StatsSnapshot {
         + originalBitmapCount
         + ", transformedBitmapCount="
         + transformedBitmapCount
+        + ", totalWastedBitmapSize="
+        + totalWastedBitmapSize
+        + ", wastedBitmapCount="
+        + wastedBitmapCount
+        + ", totalAbortedDownloadSize="
+        + totalAbortedDownloadSize
+        + ", abortedDownloadCount="
+        + abortedDownloadCount
+        + ", thumbnailHits="
+        + thumbnailHits
+        + ", thumbnailMisses="
+        + thumbnailMisses
+        + ", totalNetworkDownloadSize="
+        + totalNetworkDownloadSize
+        + ", networkDownloadCount="
+        + networkDownloadCount
+        + ", totalDiskDownloadSize="
+        + totalDiskDownloadSize
+        + ", diskDownloadCount="
+        + diskDownloadCount
         + ", timeStamp="
         + timeStamp
         + '}';
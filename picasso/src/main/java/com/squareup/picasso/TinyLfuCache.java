@@ -0,0 +1,309 @@
+/*
+ * Copyright (C) 2013 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squareup.picasso;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A memory cache which only admits images that are requested more frequently than the images they
+ * would replace.
+ * <p>
+ * New images enter a small least-recently used window. Images evicted from the window compete for
+ * a place in the main region against the least-recently used images there, based on how often
+ * each key was requested recently. A large image has to beat every image it would push out. This
+ * keeps a single pass over many one-off images from flushing small images that are shown all the
+ * time.
+ */
+public class TinyLfuCache implements Cache {
+  private static final int WINDOW_PERCENT = 10;
+
+  final LinkedHashMap<String, Bitmap> window;
+  final LinkedHashMap<String, Bitmap> main;
+  final FrequencySketch sketch;
+
+  private int maxSize;
+  private int windowMaxSize;
+  private int windowSize;
+  private int mainSize;
+
+  private int putCount;
+  private int evictionCount;
+  private int rejectionCount;
+  private int hitCount;
+  private int missCount;
+
+  /** Create a cache using an appropriate portion of the available RAM as the maximum size. */
+  public TinyLfuCache(Context context) {
+    this(Utils.calculateMemoryCacheSize(context));
+  }
+
+  /** Create a cache with a given maximum size in bytes. */
+  public TinyLfuCache(int maxSize) {
+    if (maxSize <= 0) {
+      throw new IllegalArgumentException("Max size must be positive.");
+    }
+    this.window = new LinkedHashMap<String, Bitmap>(0, 0.75f, true);
+    this.main = new LinkedHashMap<String, Bitmap>(0, 0.75f, true);
+    this.sketch = new FrequencySketch(maxSize);
+    setMaxSize(maxSize);
+  }
+
+  @Override public synchronized Bitmap get(String key) {
+    if (key == null) {
+      throw new NullPointerException("key == null");
+    }
+
+    sketch.increment(key);
+    Bitmap value = window.get(key);
+    if (value == null) {
+      value = main.get(key);
+    }
+    if (value != null) {
+      hitCount++;
+    } else {
+      missCount++;
+    }
+    return value;
+  }
+
+  @Override public synchronized void set(String key, Bitmap bitmap) {
+    if (key == null || bitmap == null) {
+      throw new NullPointerException("key == null || bitmap == null");
+    }
+
+    putCount++;
+    sketch.increment(key);
+    int size = Utils.getBitmapBytes(bitmap);
+
+    Bitmap previous = main.get(key);
+    if (previous != null) {
+      main.put(key, bitmap);
+      mainSize += size - Utils.getBitmapBytes(previous);
+      trimToSize(maxSize);
+      return;
+    }
+
+    previous = window.put(key, bitmap);
+    windowSize += size;
+    if (previous != null) {
+      windowSize -= Utils.getBitmapBytes(previous);
+    }
+    evictFromWindow();
+  }
+
+  @Override public synchronized int size() {
+    return windowSize + mainSize;
+  }
+
+  @Override public synchronized int maxSize() {
+    return maxSize;
+  }
+
+  @Override public synchronized void clear() {
+    evictionCount += window.size() + main.size();
+    window.clear();
+    main.clear();
+    windowSize = 0;
+    mainSize = 0;
+  }
+
+  /** Sets the maximum size in bytes that the cache can hold, evicting images if necessary. */
+  public synchronized void resize(int maxSize) {
+    if (maxSize <= 0) {
+      throw new IllegalArgumentException("Max size must be positive.");
+    }
+    setMaxSize(maxSize);
+    trimToSize(maxSize);
+    evictFromWindow();
+  }
+
+  /** Evicts images until the cache size is at most {@code size} bytes. */
+  public synchronized void trimToSize(int size) {
+    // Evict from the main region first, its least-recently used images lost against others before.
+    while (windowSize + mainSize > size && !main.isEmpty()) {
+      Map.Entry<String, Bitmap> eldest = main.entrySet().iterator().next();
+      main.remove(eldest.getKey());
+      mainSize -= Utils.getBitmapBytes(eldest.getValue());
+      evictionCount++;
+    }
+    while (windowSize + mainSize > size && !window.isEmpty()) {
+      Map.Entry<String, Bitmap> eldest = window.entrySet().iterator().next();
+      window.remove(eldest.getKey());
+      windowSize -= Utils.getBitmapBytes(eldest.getValue());
+      evictionCount++;
+    }
+  }
+
+  /** Returns the number of times {@link #get} returned a value. */
+  public final synchronized int hitCount() {
+    return hitCount;
+  }
+
+  /** Returns the number of times {@link #get} returned {@code null}. */
+  public final synchronized int missCount() {
+    return missCount;
+  }
+
+  /** Returns the number of times {@link #set(String, Bitmap)} was called. */
+  public final synchronized int putCount() {
+    return putCount;
+  }
+
+  /** Returns the number of values that have been evicted. */
+  public final synchronized int evictionCount() {
+    return evictionCount;
+  }
+
+  /** Returns the number of values that were not admitted into the main region. */
+  public final synchronized int rejectionCount() {
+    return rejectionCount;
+  }
+
+  private void setMaxSize(int maxSize) {
+    this.maxSize = maxSize;
+    this.windowMaxSize = Math.max(1, maxSize / 100 * WINDOW_PERCENT);
+  }
+
+  private void evictFromWindow() {
+    while (windowSize > windowMaxSize && !window.isEmpty()) {
+      Map.Entry<String, Bitmap> candidate = window.entrySet().iterator().next();
+      String key = candidate.getKey();
+      Bitmap value = candidate.getValue();
+      int size = Utils.getBitmapBytes(value);
+      window.remove(key);
+      windowSize -= size;
+      admit(key, value, size);
+    }
+  }
+
+  /**
+   * Moves an image evicted from the window into the main region if it was requested more often
+   * than each of the least-recently used images it would replace.
+   */
+  private void admit(String key, Bitmap value, int size) {
+    int mainMaxSize = maxSize - windowMaxSize;
+    if (size > mainMaxSize) {
+      rejectionCount++;
+      return;
+    }
+
+    int candidateFrequency = sketch.frequency(key);
+    int freed = 0;
+    List<Map.Entry<String, Bitmap>> victims = null;
+    Iterator<Map.Entry<String, Bitmap>> iterator = main.entrySet().iterator();
+    while (mainSize - freed + size > mainMaxSize && iterator.hasNext()) {
+      Map.Entry<String, Bitmap> victim = iterator.next();
+      if (sketch.frequency(victim.getKey()) >= candidateFrequency) {
+        rejectionCount++;
+        return;
+      }
+      if (victims == null) {
+        victims = new ArrayList<Map.Entry<String, Bitmap>>(4);
+      }
+      victims.add(victim);
+      freed += Utils.getBitmapBytes(victim.getValue());
+    }
+
+    if (victims != null) {
+      for (int i = 0, count = victims.size(); i < count; i++) {
+        main.remove(victims.get(i).getKey());
+        evictionCount++;
+      }
+      mainSize -= freed;
+    }
+    main.put(key, value);
+    mainSize += size;
+  }
+
+  /**
+   * A count-min sketch estimating how often each key was requested recently. Counters saturate at
+   * 15 and are all halved periodically so that keys which were popular long ago fade out.
+   */
+  static final class FrequencySketch {
+    private static final int DEPTH = 4;
+    private static final int MAX_COUNT = 15;
+    private static final int[] SEEDS = {
+        0x97cb3127, 0xb9f6d2b1, 0x8bd48e45, 0xc13a2f1d
+    };
+    // A rough guess of the average image size, used to size the sketch for the cache.
+    private static final int AVERAGE_IMAGE_BYTES = 16 * 1024;
+
+    private final int[][] table;
+    private final int mask;
+    private final int sampleSize;
+    private int additions;
+
+    FrequencySketch(int maxSize) {
+      int width = Integer.highestOneBit(Math.max(64, Math.min(1 << 16,
+          maxSize / AVERAGE_IMAGE_BYTES)) * 2 - 1);
+      this.table = new int[DEPTH][width];
+      this.mask = width - 1;
+      this.sampleSize = 10 * width;
+    }
+
+    void increment(String key) {
+      int hash = spread(key.hashCode());
+      boolean added = false;
+      for (int i = 0; i < DEPTH; i++) {
+        int index = indexOf(hash, i);
+        if (table[i][index] < MAX_COUNT) {
+          table[i][index]++;
+          added = true;
+        }
+      }
+      if (added && ++additions == sampleSize) {
+        reset();
+      }
+    }
+
+    int frequency(String key) {
+      int hash = spread(key.hashCode());
+      int frequency = MAX_COUNT;
+      for (int i = 0; i < DEPTH; i++) {
+        frequency = Math.min(frequency, table[i][indexOf(hash, i)]);
+      }
+      return frequency;
+    }
+
+    private void reset() {
+      for (int[] row : table) {
+        for (int i = 0; i < row.length; i++) {
+          row[i] >>>= 1;
+        }
+      }
+      additions /= 2;
+    }
+
+    private int indexOf(int hash, int row) {
+      int h = hash * SEEDS[row];
+      h ^= h >>> 16;
+      return h & mask;
+    }
+
+    private static int spread(int hash) {
+      hash ^= (hash >>> 17);
+      hash *= 0xed5ad4bb;
+      hash ^= (hash >>> 11);
+      return hash;
+    }
+  }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright (C) 2013 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squareup.picasso;
+
+import java.lang.reflect.Method;
+
+/**
+ * Emits systrace sections through {@code android.os.Trace}. The class only exists from API 18 on,
+ * on older platforms sections are ignored. Sections must be begun and ended on the same thread.
+ */
+final class Tracer {
+  private static final int MAX_SECTION_NAME_LENGTH = 127;
+  private static final Method BEGIN_SECTION;
+  private static final Method END_SECTION;
+
+  static {
+    Method beginSection = null;
+    Method endSection = null;
+    try {
+      Class<?> trace = Class.forName("android.os.Trace");
+      beginSection = trace.getMethod("beginSection", String.class);
+      endSection = trace.getMethod("endSection");
+    } catch (ClassNotFoundException ignored) {
+    } catch (NoSuchMethodException ignored) {
+    }
+    BEGIN_SECTION = beginSection;
+    END_SECTION = endSection;
+  }
+
+  static void beginSection(String name) {
+    if (BEGIN_SECTION == null) {
+      return;
+    }
+    if (name.length() > MAX_SECTION_NAME_LENGTH) {
+      name = name.substring(0, MAX_SECTION_NAME_LENGTH);
+    }
+    invoke(BEGIN_SECTION, name);
+  }
+
+  static void endSection() {
+    if (END_SECTION != null) {
+      invoke(END_SECTION);
+    }
+  }
+
+  private static void invoke(Method method, Object... args) {
+    try {
+      method.invoke(null, args);
+    } catch (Exception ignored) {
+    }
+  }
+
+  private Tracer() {
+    // No instances.
+  }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright (C) 2013 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squareup.picasso;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.PorterDuff;
+import java.util.Iterator;
+import java.util.LinkedList;
+
+/**
+ * A small pool of mutable bitmaps which {@link PooledTransformation}s draw into. Buffers are only
+ * reused for the exact same size and config since older platforms cannot reconfigure a bitmap.
+ * The pool keeps at most {@code maxBytes} of buffers, the oldest ones are recycled first.
+ */
+final class TransformationBuffers {
+  private final long maxBytes;
+  private final LinkedList<Bitmap> buffers = new LinkedList<Bitmap>();
+  private long size;
+
+  TransformationBuffers(long maxBytes) {
+    if (maxBytes < 0) {
+      throw new IllegalArgumentException("Max bytes must not be negative.");
+    }
+    this.maxBytes = maxBytes;
+  }
+
+  /** Returns a transparent mutable bitmap, reusing a released one if possible. */
+  Bitmap acquire(int width, int height, Bitmap.Config config) {
+    Bitmap buffer = remove(width, height, config);
+    if (buffer == null) {
+      return Bitmap.createBitmap(width, height, config);
+    }
+    // Cleared outside of the lock so that other hunting threads are not held up.
+    new Canvas(buffer).drawColor(Color.TRANSPARENT, PorterDuff.Mode.CLEAR);
+    return buffer;
+  }
+
+  private synchronized Bitmap remove(int width, int height, Bitmap.Config config) {
+    for (Iterator<Bitmap> i = buffers.iterator(); i.hasNext();) {
+      Bitmap buffer = i.next();
+      if (buffer.getWidth() == width && buffer.getHeight() == height
+          && buffer.getConfig() == config) {
+        i.remove();
+        size -= Utils.getBitmapBytes(buffer);
+        return buffer;
+      }
+    }
+    return null;
+  }
+
+  /** Keeps {@code buffer} for reuse, recycling the oldest buffers if the pool is full. */
+  synchronized void release(Bitmap buffer) {
+    buffers.addFirst(buffer);
+    size += Utils.getBitmapBytes(buffer);
+    while (size > maxBytes) {
+      Bitmap evicted = buffers.removeLast();
+      size -= Utils.getBitmapBytes(evicted);
+      evicted.recycle();
+    }
+  }
+
+  synchronized int size() {
+    return buffers.size();
+  }
+
+  synchronized long sizeInBytes() {
+    return size;
+  }
+
+  /** Recycles all pooled buffers. */
+  synchronized void clear() {
+    for (Bitmap buffer : buffers) {
+      buffer.recycle();
+    }
+    buffers.clear();
+    size = 0;
+  }
+}
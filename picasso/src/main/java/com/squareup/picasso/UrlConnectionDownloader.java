@@ -22,6 +22,7 @@ import android.os.Build;
 import java.io.File;
 import java.io.IOException;
 import java.net.HttpURLConnection;
+import java.net.ResponseCache;
 import java.net.URL;
 
 import static com.squareup.picasso.Utils.parseResponseSourceHeader;
@@ -31,7 +32,7 @@ import static com.squareup.picasso.Utils.parseResponseSourceHeader;
  * of the total available space will be used (capped at 50MB) will automatically be installed in the
  * application's cache directory, when available.
  */
-public class UrlConnectionDownloader implements Downloader {
+public class UrlConnectionDownloader implements CachingDownloader {
   static final String RESPONSE_SOURCE = "X-Android-Response-Source";
 
   private static final Object lock = new Object();
@@ -69,7 +70,16 @@ public class UrlConnectionDownloader implements Downloader {
 
     boolean fromCache = parseResponseSourceHeader(connection.getHeaderField(RESPONSE_SOURCE));
 
-    return new Response(connection.getInputStream(), fromCache);
+    long contentLength = connection.getHeaderFieldInt("Content-Length", -1);
+
+    return new Response(connection.getInputStream(), fromCache, contentLength);
+  }
+
+  @Override public boolean hasDiskCache() {
+    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.ICE_CREAM_SANDWICH) {
+      installCacheIfNeeded(context);
+    }
+    return ResponseCache.getDefault() != null;
   }
 
   private static void installCacheIfNeeded(Context context) {
@@ -26,9 +26,9 @@ import android.os.Looper;
 import android.os.Process;
 import android.os.StatFs;
 import android.provider.Settings;
+import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
 import java.util.concurrent.ThreadFactory;
 
 import static android.content.Context.ACTIVITY_SERVICE;
@@ -66,6 +66,12 @@ final class Utils {
     return result;
   }
 
+  static void checkMain() {
+    if (Looper.getMainLooper().getThread() != Thread.currentThread()) {
+      throw new IllegalStateException("Method call should happen from the main thread.");
+    }
+  }
+
   static void checkNotMain() {
     if (Looper.getMainLooper().getThread() == Thread.currentThread()) {
       throw new IllegalStateException("Method call should not happen from the main thread.");
@@ -73,9 +79,17 @@ final class Utils {
   }
 
   static String createKey(Request data) {
+    return createKey(data, data.transformations != null ? data.transformations.size() : 0);
+  }
+
+  /** The key of the result after the first {@code transformationCount} custom transformations. */
+  static String createKey(Request data, int transformationCount) {
     StringBuilder builder;
 
-    if (data.uri != null) {
+    if (data.stableKey != null) {
+      builder = new StringBuilder(data.stableKey.length() + KEY_PADDING);
+      builder.append(data.stableKey);
+    } else if (data.uri != null) {
       String path = data.uri.toString();
       builder = new StringBuilder(path.length() + KEY_PADDING);
       builder.append(path);
@@ -104,7 +118,7 @@ final class Utils {
 
     if (data.transformations != null) {
       //noinspection ForLoopReplaceableByForEach
-      for (int i = 0, count = data.transformations.size(); i < count; i++) {
+      for (int i = 0; i < transformationCount; i++) {
         builder.append(data.transformations.get(i).key());
         builder.append('\n');
       }
@@ -113,10 +127,10 @@ final class Utils {
     return builder.toString();
   }
 
-  static void closeQuietly(InputStream is) {
-    if (is == null) return;
+  static void closeQuietly(Closeable closeable) {
+    if (closeable == null) return;
     try {
-      is.close();
+      closeable.close();
     } catch (IOException ignored) {
     }
   }
@@ -0,0 +1,241 @@
+/*
+ * Copyright (C) 2013 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squareup.picasso;
+
+import android.content.Context;
+import android.net.Uri;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The requests of the images which were most recently put into or found in the memory cache. They
+ * are saved to a file so that the next process can load them from the disk cache before the app
+ * asks for them again. Only requests for URIs without custom transformations are kept since
+ * transformations can not be saved. Requests transformed by the dispatcher are saved along with
+ * the request the app made, so the main thread finds their images before transforming again.
+ */
+final class WarmStart {
+  private static final String HEADER = "picasso-warm-start 1";
+  private static final String FILE_NAME = "picasso-warm-start";
+  private static final int FIELD_COUNT = 6;
+
+  final File file;
+  final int maxEntries;
+  private final LinkedHashMap<String, Request> entries;
+  // The requests as the app made them by the key of their transformed request, only known if the
+  // dispatcher transformed them. Saved next to the transformed request.
+  private final LinkedHashMap<String, Request> untransformed;
+
+  WarmStart(File file, final int maxEntries) {
+    if (maxEntries <= 0) {
+      throw new IllegalArgumentException("Warm start entries must be positive.");
+    }
+    this.file = file;
+    this.maxEntries = maxEntries;
+    this.entries = new LinkedHashMap<String, Request>(16, 0.75f, true) {
+      @Override protected boolean removeEldestEntry(Map.Entry<String, Request> eldest) {
+        return size() > maxEntries;
+      }
+    };
+    this.untransformed = new LinkedHashMap<String, Request>(16, 0.75f, true) {
+      @Override protected boolean removeEldestEntry(Map.Entry<String, Request> eldest) {
+        return size() > maxEntries;
+      }
+    };
+  }
+
+  /** The file in the cache directory of the app which keeps the requests between processes. */
+  static File createDefaultFile(Context context) {
+    return new File(context.getApplicationContext().getCacheDir(), FILE_NAME);
+  }
+
+  /** Remembers the request of an image which was just put into the memory cache. */
+  synchronized void put(String key, Request request) {
+    if (canSave(request)) {
+      entries.put(key, request);
+    }
+  }
+
+  /** Remembers the request the app made for the transformed request of {@code key}. */
+  synchronized void putUntransformed(String key, Request request) {
+    if (canSave(request)) {
+      untransformed.put(key, request);
+    }
+  }
+
+  /** The request the app made for the transformed request of {@code key}, null if unknown. */
+  synchronized Request getUntransformed(String key) {
+    return untransformed.get(key);
+  }
+
+  /** Marks the image of {@code key} as recently used, e.g. after a memory cache hit. */
+  synchronized void touch(String key) {
+    entries.get(key);
+  }
+
+  /**
+   * Writes the requests to the file, most recently used first. Only called on the dispatcher
+   * thread, which keeps two saves from writing the temporary file at the same time.
+   */
+  void save() throws IOException {
+    List<String> lines = new ArrayList<String>();
+    synchronized (this) {
+      for (Map.Entry<String, Request> entry : entries.entrySet()) {
+        String line = encode(entry.getValue());
+        Request request = untransformed.get(entry.getKey());
+        lines.add(request != null ? line + '\t' + encode(request) : line);
+      }
+    }
+    Collections.reverse(lines);
+
+    // Write a temporary file first so that a crash does not leave a truncated file behind.
+    File temp = new File(file.getPath() + ".tmp");
+    Writer writer =
+        new BufferedWriter(new OutputStreamWriter(new FileOutputStream(temp), "UTF-8"));
+    try {
+      writer.write(HEADER);
+      writer.write('\n');
+      for (String line : lines) {
+        writer.write(line);
+        writer.write('\n');
+      }
+      writer.close();
+    } finally {
+      Utils.closeQuietly(writer);
+    }
+    if (!temp.renameTo(file)) {
+      throw new IOException("Unable to rename " + temp + " to " + file);
+    }
+  }
+
+  /**
+   * Reads the requests written by the last {@link #save()}, most recently used first. Returns an
+   * empty list if there is no file or it can not be read. The untransformed requests which were
+   * saved along are available from {@link #getUntransformed(String)} afterwards.
+   */
+  List<Request> load() {
+    if (!file.exists()) {
+      return Collections.emptyList();
+    }
+    List<Request> requests = new ArrayList<Request>();
+    BufferedReader reader = null;
+    try {
+      reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+      if (!HEADER.equals(reader.readLine())) {
+        return Collections.emptyList();
+      }
+      String line;
+      while (requests.size() < maxEntries && (line = reader.readLine()) != null) {
+        String[] fields = line.split("\t", -1);
+        if (fields.length != FIELD_COUNT && fields.length != 2 * FIELD_COUNT) {
+          continue;
+        }
+        Request request = decode(fields, 0);
+        if (request == null) {
+          continue;
+        }
+        requests.add(request);
+        if (fields.length == 2 * FIELD_COUNT) {
+          Request original = decode(fields, FIELD_COUNT);
+          if (original != null) {
+            putUntransformed(Utils.createKey(request), original);
+          }
+        }
+      }
+    } catch (IOException ignored) {
+      // Keep what was read so far, the snapshot is only a hint.
+    } finally {
+      Utils.closeQuietly(reader);
+    }
+    return requests;
+  }
+
+  /** Encodes the fields of {@code request} which affect its key, separated by tabs. */
+  static String encode(Request request) {
+    StringBuilder builder = new StringBuilder();
+    builder.append(request.targetWidth)
+        .append('\t')
+        .append(request.targetHeight)
+        .append('\t')
+        .append(request.centerCrop ? 'c' : request.centerInside ? 'i' : '-')
+        .append('\t')
+        .append(request.rotationDegrees)
+        .append('\t');
+    if (request.hasRotationPivot) {
+      builder.append(request.rotationPivotX).append(',').append(request.rotationPivotY);
+    } else {
+      builder.append('-');
+    }
+    return builder.append('\t').append(request.uri).toString();
+  }
+
+  /** Decodes a line written by {@link #encode(Request)}, null if it is malformed. */
+  static Request decode(String line) {
+    String[] fields = line.split("\t", -1);
+    return fields.length == FIELD_COUNT ? decode(fields, 0) : null;
+  }
+
+  private static Request decode(String[] fields, int offset) {
+    try {
+      Request.Builder builder = new Request.Builder(Uri.parse(fields[offset + 5]));
+      int targetWidth = Integer.parseInt(fields[offset]);
+      int targetHeight = Integer.parseInt(fields[offset + 1]);
+      if (targetWidth > 0 && targetHeight > 0) {
+        builder.resize(targetWidth, targetHeight);
+        if ("c".equals(fields[offset + 2])) {
+          builder.centerCrop();
+        } else if ("i".equals(fields[offset + 2])) {
+          builder.centerInside();
+        }
+      }
+      float degrees = Float.parseFloat(fields[offset + 3]);
+      String pivotField = fields[offset + 4];
+      int pivot = pivotField.indexOf(',');
+      if (pivot != -1) {
+        builder.rotate(degrees, Float.parseFloat(pivotField.substring(0, pivot)),
+            Float.parseFloat(pivotField.substring(pivot + 1)));
+      } else if (degrees != 0) {
+        builder.rotate(degrees);
+      }
+      return builder.priority(Picasso.Priority.LOW).build();
+    } catch (NumberFormatException e) {
+      return null;
+    } catch (IllegalArgumentException e) {
+      return null;
+    }
+  }
+
+  /** Whether {@code request} can be written as a line, URIs with tabs or line breaks can not. */
+  private static boolean canSave(Request request) {
+    if (request.uri == null || request.hasCustomTransformations()) {
+      return false;
+    }
+    String uri = request.uri.toString();
+    return uri.indexOf('\t') == -1 && uri.indexOf('\n') == -1;
+  }
+}
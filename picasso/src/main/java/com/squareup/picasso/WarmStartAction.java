@@ -0,0 +1,36 @@
+/*
+ * Copyright (C) 2013 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squareup.picasso;
+
+import android.graphics.Bitmap;
+
+/**
+ * Loads an image of the {@link WarmStart} snapshot into the memory cache. Network images are only
+ * loaded from the disk cache unless another request joins the hunt.
+ */
+class WarmStartAction extends Action<Void> {
+  WarmStartAction(Picasso picasso, Request data, String key) {
+    super(picasso, null, data, false, false, 0, null, key);
+    // The snapshot keeps requests after they were transformed.
+    this.transformPending = false;
+  }
+
+  @Override void complete(Bitmap result, Picasso.LoadedFrom from) {
+  }
+
+  @Override public void error() {
+  }
+}
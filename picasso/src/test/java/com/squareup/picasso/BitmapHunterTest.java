@@ -17,14 +17,19 @@ package com.squareup.picasso;
 
 import android.content.Context;
 import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
 import android.graphics.Matrix;
+import android.net.Uri;
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.concurrent.FutureTask;
 import org.junit.Before;
 import org.junit.Ignore;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.InOrder;
 import org.mockito.Mock;
+import org.robolectric.Robolectric;
 import org.robolectric.RobolectricTestRunner;
 import org.robolectric.annotation.Config;
 import org.robolectric.shadows.ShadowBitmap;
@@ -34,6 +39,7 @@ import static android.graphics.Bitmap.Config.ARGB_8888;
 import static com.squareup.picasso.BitmapHunter.forRequest;
 import static com.squareup.picasso.BitmapHunter.transformResult;
 import static com.squareup.picasso.Picasso.LoadedFrom.MEMORY;
+import static com.squareup.picasso.Picasso.RequestTransformer.IDENTITY;
 import static com.squareup.picasso.TestUtils.ASSET_URI_1;
 import static com.squareup.picasso.TestUtils.ASSET_KEY_1;
 import static com.squareup.picasso.TestUtils.BITMAP_1;
@@ -52,10 +58,17 @@ import static com.squareup.picasso.TestUtils.mockImageViewTarget;
 import static org.fest.assertions.api.ANDROID.assertThat;
 import static org.fest.assertions.api.Assertions.assertThat;
 import static org.fest.assertions.api.Assertions.entry;
+import static org.fest.assertions.api.Assertions.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.mockito.Mockito.when;
 import static org.mockito.MockitoAnnotations.initMocks;
 import static org.robolectric.Robolectric.shadowOf;
@@ -90,6 +103,39 @@ public class BitmapHunterTest {
     verify(dispatcher).dispatchComplete(hunter);
   }
 
+  @Test public void runNamesThreadOnlyWhenTracing() throws Exception {
+    Action action = mockAction(URI_KEY_1, URI_1);
+    final String[] decodingThreadName = new String[1];
+    BitmapHunter hunter = new TestableBitmapHunter(picasso, dispatcher, cache, stats, action) {
+      @Override Bitmap decode(Request data) throws IOException {
+        decodingThreadName[0] = Thread.currentThread().getName();
+        return super.decode(data);
+      }
+    };
+    String name = Thread.currentThread().getName();
+    hunter.run();
+    assertThat(decodingThreadName[0]).isEqualTo(name);
+
+    Picasso.Options options = new Picasso.Options();
+    options.tracing = true;
+    Picasso tracingPicasso = new Picasso(Robolectric.application, dispatcher, cache, null, IDENTITY,
+        stats, options, false);
+    hunter = new TestableBitmapHunter(tracingPicasso, dispatcher, cache, stats, action) {
+      @Override Bitmap decode(Request data) throws IOException {
+        decodingThreadName[0] = Thread.currentThread().getName();
+        return super.decode(data);
+      }
+    };
+    try {
+      hunter.run();
+      assertThat(decodingThreadName[0]).isEqualTo(Utils.THREAD_PREFIX + URI_1.getPath());
+      assertThat(Thread.currentThread().getName()).isEqualTo(Utils.THREAD_IDLE_NAME);
+    } finally {
+      Thread.currentThread().setName(name);
+      tracingPicasso.shutdown();
+    }
+  }
+
   @Test public void runWithNoResultDispatchFailed() throws Exception {
     Action action = mockAction(URI_KEY_1, URI_1);
     BitmapHunter hunter = new TestableBitmapHunter(picasso, dispatcher, cache, stats, action);
@@ -105,6 +151,29 @@ public class BitmapHunterTest {
     verify(dispatcher).dispatchRetry(hunter);
   }
 
+  @Test public void runWhenCancelledDoesNotDispatchFailedOrRetry() throws Exception {
+    Action action = mockAction(URI_KEY_1, URI_1);
+    BitmapHunter hunter = new TestableBitmapHunter(picasso, dispatcher, cache, stats, action);
+    hunter.cancelled = true;
+    hunter.run();
+    BitmapHunter throwingHunter =
+        new TestableBitmapHunter(picasso, dispatcher, cache, stats, action, null, true);
+    throwingHunter.cancelled = true;
+    throwingHunter.run();
+    verifyZeroInteractions(dispatcher);
+  }
+
+  @Test public void huntWhenCancelledAfterDecodeSkipsTransformations() throws Exception {
+    Action action = mockAction(URI_KEY_1, URI_1);
+    when(action.getData()).thenReturn(new Request.Builder(URI_1).rotate(90).build());
+    BitmapHunter hunter =
+        new TestableBitmapHunter(picasso, dispatcher, cache, stats, action, BITMAP_1);
+    hunter.cancelled = true;
+    assertThat(hunter.hunt()).isNull();
+    verify(stats).dispatchBitmapWasted(BITMAP_1);
+    verify(stats, never()).dispatchBitmapTransformed(any(Bitmap.class));
+  }
+
   @Test public void huntDecodesWhenNotInCache() throws Exception {
     Action action = mockAction(URI_KEY_1, URI_1, mockImageViewTarget());
     BitmapHunter hunter =
@@ -153,6 +222,26 @@ public class BitmapHunterTest {
     hunter.detach(action1);
     hunter.detach(action2);
     assertThat(hunter.cancel()).isTrue();
+    assertThat(hunter.cancelled).isTrue();
+  }
+
+  @Test public void cancelAbortsDecodeInFlight() throws Exception {
+    Action action = mockAction(FILE_KEY_1, FILE_1_URL);
+    BitmapHunter hunter =
+        forRequest(context, picasso, dispatcher, cache, stats, action, downloader);
+    BitmapFactory.Options options = hunter.createDecodeOptions();
+    hunter.future = new FutureTask<Object>(mock(Runnable.class), mock(Object.class));
+    hunter.detach(action);
+    assertThat(hunter.cancel()).isTrue();
+    assertThat(options.mCancel).isTrue();
+  }
+
+  @Test public void decodeOptionsOfCancelledHunterAreCancelled() throws Exception {
+    Action action = mockAction(URI_KEY_1, URI_1);
+    BitmapHunter hunter = new TestableBitmapHunter(picasso, dispatcher, cache, stats, action);
+    assertThat(hunter.createDecodeOptions().mCancel).isFalse();
+    hunter.cancelled = true;
+    assertThat(hunter.createDecodeOptions().mCancel).isTrue();
   }
 
   // ---------------------------------------
@@ -199,6 +288,194 @@ public class BitmapHunterTest {
     assertThat(hunter).isInstanceOf(AssetBitmapHunter.class);
   }
 
+  @Test public void thumbnailUsableForSmallerTargetOfSameAspect() throws Exception {
+    Request data = new Request.Builder(URI_1).resize(100, 75).build();
+    assertThat(BitmapHunter.isThumbnailUsable(data, 4000, 3000, 160, 120)).isTrue();
+    assertThat(BitmapHunter.isThumbnailUsable(data, 4000, 3000, 96, 72)).isFalse();
+  }
+
+  @Test public void thumbnailNotUsableForOtherAspectOrUnsizedRequest() throws Exception {
+    Request sized = new Request.Builder(URI_1).resize(100, 75).build();
+    assertThat(BitmapHunter.isThumbnailUsable(sized, 3000, 3000, 160, 120)).isFalse();
+    assertThat(BitmapHunter.isThumbnailUsable(sized, -1, -1, 160, 120)).isFalse();
+    Request unsized = new Request.Builder(URI_1).build();
+    assertThat(BitmapHunter.isThumbnailUsable(unsized, 4000, 3000, 160, 120)).isFalse();
+  }
+
+  @Test public void mediaStoreImageUris() throws Exception {
+    assertThat(ContentProviderBitmapHunter.isMediaStoreImage(
+        Uri.parse("content://media/external/images/media/12"))).isTrue();
+    assertThat(ContentProviderBitmapHunter.isMediaStoreImage(
+        Uri.parse("content://media/external/video/media/12"))).isFalse();
+    assertThat(ContentProviderBitmapHunter.isMediaStoreImage(
+        Uri.parse("content://com.example/external/images/media/12"))).isFalse();
+  }
+
+  @Test public void pooledTransformationsPingPongBetweenBuffers() throws Exception {
+    Bitmap source = Bitmap.createBitmap(10, 10, ARGB_8888);
+    TestPooledTransformation first = new TestPooledTransformation("1", false);
+    TestPooledTransformation second = new TestPooledTransformation("2", false);
+    TestPooledTransformation third = new TestPooledTransformation("3", false);
+    TransformationBuffers buffers = new TransformationBuffers(1024);
+
+    Bitmap result = BitmapHunter.applyCustomTransformations(
+        Arrays.<Transformation>asList(first, second, third), source, buffers);
+
+    assertThat(source.isRecycled()).isTrue();
+    assertThat(first.destination).isNotSameAs(second.destination);
+    assertThat(third.destination).isSameAs(first.destination);
+    assertThat(result).isSameAs(third.destination);
+    assertThat(buffers.size()).isEqualTo(1);
+  }
+
+  @Test public void pooledTransformationRunsInPlaceOnBuffer() throws Exception {
+    Bitmap source = Bitmap.createBitmap(10, 10, ARGB_8888);
+    TestPooledTransformation copy = new TestPooledTransformation("copy", false);
+    TestPooledTransformation inPlace = new TestPooledTransformation("inPlace", true);
+    TransformationBuffers buffers = new TransformationBuffers(1024);
+
+    Bitmap result = BitmapHunter.applyCustomTransformations(
+        Arrays.<Transformation>asList(inPlace, copy, inPlace), source, buffers);
+
+    // The immutable source can not be written so the first pass needs a buffer as well.
+    assertThat(source.isRecycled()).isTrue();
+    assertThat(result).isSameAs(inPlace.destination);
+    assertThat(inPlace.source).isSameAs(inPlace.destination);
+    assertThat(buffers.size()).isEqualTo(1);
+  }
+
+  @Test public void pooledTransformationDoesNotWriteOrPoolMutableSource() throws Exception {
+    Bitmap source = Bitmap.createBitmap(10, 10, ARGB_8888);
+    shadowOf(source).setMutable(true);
+    TestPooledTransformation inPlace = new TestPooledTransformation("inPlace", true);
+    TransformationBuffers buffers = new TransformationBuffers(1024);
+
+    Bitmap result = BitmapHunter.applyCustomTransformations(
+        Arrays.<Transformation>asList(inPlace), source, buffers);
+
+    assertThat(result).isNotSameAs(source);
+    assertThat(inPlace.source).isSameAs(source);
+    assertThat(buffers.size()).isZero();
+  }
+
+  @Test public void transformationBuffersAreOnlyCreatedForPooledTransformations()
+      throws Exception {
+    Picasso picasso = new Picasso(Robolectric.application, dispatcher, new LruCache(8192), null,
+        IDENTITY, stats, new Picasso.Options(), false);
+    Action action = mockTransformedAction(new CountingTransformation("transform"));
+    BitmapHunter hunter = new TestableBitmapHunter(picasso, dispatcher, cache, stats, action,
+        Bitmap.createBitmap(10, 10, ARGB_8888));
+    assertThat(hunter.hunt()).isNotNull();
+    assertThat(picasso.transformationBuffers).isNull();
+
+    action = mockTransformedAction(new TestPooledTransformation("pooled", false));
+    hunter = new TestableBitmapHunter(picasso, dispatcher, cache, stats, action,
+        Bitmap.createBitmap(10, 10, ARGB_8888));
+    assertThat(hunter.hunt()).isNotNull();
+    assertThat(picasso.transformationBuffers).isNotNull();
+    picasso.shutdown();
+  }
+
+  @Test public void pooledTransformationWithInvalidSizeThrows() throws Exception {
+    Bitmap source = Bitmap.createBitmap(10, 10, ARGB_8888);
+    TestPooledTransformation transformation = new TestPooledTransformation("empty", false, 0);
+    try {
+      BitmapHunter.applyCustomTransformations(Arrays.<Transformation>asList(transformation),
+          source, new TransformationBuffers(1024));
+      fail("Expected IllegalStateException.");
+    } catch (IllegalStateException expected) {
+    }
+  }
+
+  @Test public void huntNotifiesEventListener() throws Exception {
+    EventListener eventListener = mock(EventListener.class);
+    Picasso.Options options = new Picasso.Options();
+    options.eventListener = eventListener;
+    Picasso picasso = new Picasso(Robolectric.application, dispatcher, cache, null, IDENTITY, stats,
+        options, false);
+    Action action = mockTransformedAction(new CountingTransformation("transform"));
+    String key = action.getKey();
+    BitmapHunter hunter = new TestableBitmapHunter(picasso, dispatcher, cache, stats, action,
+        Bitmap.createBitmap(10, 10, ARGB_8888));
+    assertThat(hunter.hunt()).isNotNull();
+    verify(eventListener, never()).cacheMiss(anyString(), anyLong());
+    InOrder inOrder = inOrder(eventListener);
+    inOrder.verify(eventListener).decodeStart(eq(key), anyLong());
+    inOrder.verify(eventListener).decodeEnd(eq(key), anyLong());
+    inOrder.verify(eventListener).transformStart(eq(key), anyLong());
+    inOrder.verify(eventListener).transformEnd(eq(key), anyLong());
+    picasso.shutdown();
+  }
+
+  @Test public void huntReportsLateCacheHit() throws Exception {
+    EventListener eventListener = mock(EventListener.class);
+    Picasso.Options options = new Picasso.Options();
+    options.eventListener = eventListener;
+    Picasso picasso = new Picasso(Robolectric.application, dispatcher, cache, null, IDENTITY, stats,
+        options, false);
+    Action action = mockAction(URI_KEY_1, URI_1);
+    when(cache.get(URI_KEY_1)).thenReturn(BITMAP_1);
+    BitmapHunter hunter = new TestableBitmapHunter(picasso, dispatcher, cache, stats, action);
+    assertThat(hunter.hunt()).isSameAs(BITMAP_1);
+    verify(eventListener).cacheHit(eq(URI_KEY_1), anyLong());
+    verify(eventListener, never()).decodeStart(anyString(), anyLong());
+    picasso.shutdown();
+  }
+
+  @Test public void resumesFromDeepestCachedTransformationStage() throws Exception {
+    LruCache intermediateCache = new LruCache(1024 * 1024);
+    Picasso.Options options = new Picasso.Options();
+    options.intermediateCache = intermediateCache;
+    Picasso picasso = new Picasso(Robolectric.application, dispatcher, cache, null, IDENTITY, stats,
+        options, false);
+    CountingTransformation shared = new CountingTransformation("shared");
+    CountingTransformation first = new CountingTransformation("first");
+    CountingTransformation second = new CountingTransformation("second");
+
+    Action firstAction = mockTransformedAction(shared, first);
+    BitmapHunter firstHunter = new TestableBitmapHunter(picasso, dispatcher, cache, stats,
+        firstAction, Bitmap.createBitmap(10, 10, ARGB_8888));
+    assertThat(firstHunter.hunt()).isNotNull();
+    // Only the input of the last transformation is kept.
+    assertThat(intermediateCache.get(Utils.createKey(firstAction.getData(), 0))).isNull();
+    assertThat(intermediateCache.get(Utils.createKey(firstAction.getData(), 1))).isNotNull();
+    assertThat(intermediateCache.get(Utils.createKey(firstAction.getData(), 2))).isNull();
+
+    Action secondAction = mockTransformedAction(shared, second);
+    BitmapHunter secondHunter =
+        new TestableBitmapHunter(picasso, dispatcher, cache, stats, secondAction, null);
+    Bitmap result = secondHunter.hunt();
+
+    assertThat(result).isNotNull();
+    assertThat(secondHunter.loadedFrom).isEqualTo(MEMORY);
+    assertThat(shared.count).isEqualTo(1);
+    assertThat(second.count).isEqualTo(1);
+    Bitmap stage = intermediateCache.get(Utils.createKey(secondAction.getData(), 1));
+    assertThat(stage.isRecycled()).isFalse();
+    picasso.shutdown();
+  }
+
+  @Test public void uncopyableCachedStageDecodesSource() throws Exception {
+    CountingTransformation transformation = new CountingTransformation("transform");
+    Action action = mockTransformedAction(transformation);
+    Bitmap uncopyable = mock(Bitmap.class);
+    Cache intermediateCache = mock(Cache.class);
+    when(intermediateCache.get(Utils.createKey(action.getData(), 0))).thenReturn(uncopyable);
+    Picasso.Options options = new Picasso.Options();
+    options.intermediateCache = intermediateCache;
+    Picasso picasso = new Picasso(Robolectric.application, dispatcher, cache, null, IDENTITY, stats,
+        options, false);
+    Bitmap decoded = Bitmap.createBitmap(10, 10, ARGB_8888);
+    BitmapHunter hunter =
+        new TestableBitmapHunter(picasso, dispatcher, cache, stats, action, decoded);
+
+    assertThat(hunter.hunt()).isNotNull();
+    assertThat(transformation.count).isEqualTo(1);
+    verify(stats).dispatchBitmapDecoded(decoded);
+    verify(intermediateCache).set(Utils.createKey(action.getData(), 0), decoded);
+    picasso.shutdown();
+  }
+
   @Test public void exifRotation() throws Exception {
     Request data = new Request.Builder(URI_1).rotate(-45).build();
     Bitmap source = Bitmap.createBitmap(10, 10, ARGB_8888);
@@ -405,6 +682,80 @@ public class BitmapHunterTest {
     assertThat(result).isSameAs(source).isNotRecycled();
   }
 
+  private static Action mockTransformedAction(Transformation... transformations) {
+    Request.Builder builder = new Request.Builder(URI_1);
+    for (Transformation transformation : transformations) {
+      builder.transform(transformation);
+    }
+    Request data = builder.build();
+    Action action = mockAction(Utils.createKey(data), URI_1);
+    when(action.getData()).thenReturn(data);
+    return action;
+  }
+
+  private static class CountingTransformation implements Transformation {
+    private final String key;
+    int count;
+
+    CountingTransformation(String key) {
+      this.key = key;
+    }
+
+    @Override public Bitmap transform(Bitmap source) {
+      count++;
+      Bitmap result = Bitmap.createBitmap(source.getWidth(), source.getHeight(), ARGB_8888);
+      source.recycle();
+      return result;
+    }
+
+    @Override public String key() {
+      return key;
+    }
+  }
+
+  private static class TestPooledTransformation implements PooledTransformation {
+    private final String key;
+    private final boolean inPlace;
+    private final int size;
+    Bitmap source;
+    Bitmap destination;
+
+    TestPooledTransformation(String key, boolean inPlace) {
+      this(key, inPlace, -1);
+    }
+
+    TestPooledTransformation(String key, boolean inPlace, int size) {
+      this.key = key;
+      this.inPlace = inPlace;
+      this.size = size;
+    }
+
+    @Override public int getOutputWidth(int sourceWidth, int sourceHeight) {
+      return size == -1 ? sourceWidth : size;
+    }
+
+    @Override public int getOutputHeight(int sourceWidth, int sourceHeight) {
+      return size == -1 ? sourceHeight : size;
+    }
+
+    @Override public boolean canTransformInPlace() {
+      return inPlace;
+    }
+
+    @Override public void transform(Bitmap source, Bitmap destination) {
+      this.source = source;
+      this.destination = destination;
+    }
+
+    @Override public Bitmap transform(Bitmap source) {
+      throw new AssertionError();
+    }
+
+    @Override public String key() {
+      return key;
+    }
+  }
+
   private static class TestableBitmapHunter extends BitmapHunter {
     private final Bitmap result;
     private final boolean throwException;
@@ -0,0 +1,152 @@
+/*
+ * Copyright (C) 2013 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squareup.picasso;
+
+import android.graphics.Bitmap;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static android.graphics.Bitmap.Config.ALPHA_8;
+
+/**
+ * Replays cache key traces against {@link LruCache} and {@link TinyLfuCache} and prints their hit
+ * ratios. Not part of the regular test run, invoke it with:
+ * <pre>
+ * mvn test -Dtest=CacheReplayBenchmark -Dpicasso.traces=trace1.txt,trace2.txt
+ * </pre>
+ * Each line of a trace file is a cache key followed by the size of its image in bytes. Without
+ * trace files a synthetic trace of avatars mixed with a feed of one-off images is replayed.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class CacheReplayBenchmark {
+  private static final int[] CACHE_SIZES = {
+      256 * 1024, 1024 * 1024, 4 * 1024 * 1024
+  };
+
+  @Test public void replayTraces() throws IOException {
+    List<Trace> traces = new ArrayList<Trace>();
+    String paths = System.getProperty("picasso.traces");
+    if (paths == null || paths.length() == 0) {
+      traces.add(avatarsAndFeed(new Random(42), 200000, 200, 16 * 1024, 256 * 1024));
+    } else {
+      for (String path : paths.split(",")) {
+        traces.add(read(new File(path)));
+      }
+    }
+
+    for (Trace trace : traces) {
+      for (int cacheSize : CACHE_SIZES) {
+        double lru = replay(new LruCache(cacheSize), trace);
+        double tinyLfu = replay(new TinyLfuCache(cacheSize), trace);
+        System.out.println(String.format("%s cacheSize=%d lru=%.4f tinyLfu=%.4f", trace.name,
+            cacheSize, lru, tinyLfu));
+      }
+    }
+  }
+
+  /** Replays {@code trace} against {@code cache}, returning the hit ratio. */
+  static double replay(Cache cache, Trace trace) {
+    Map<Integer, Bitmap> bitmaps = new HashMap<Integer, Bitmap>();
+    int hits = 0;
+    for (int i = 0, count = trace.keys.length; i < count; i++) {
+      String key = trace.keys[i];
+      if (cache.get(key) != null) {
+        hits++;
+        continue;
+      }
+      int size = trace.sizes[i];
+      Bitmap bitmap = bitmaps.get(size);
+      if (bitmap == null) {
+        // One byte per pixel so the bitmap size in bytes is its width.
+        bitmap = Bitmap.createBitmap(size, 1, ALPHA_8);
+        bitmaps.put(size, bitmap);
+      }
+      cache.set(key, bitmap);
+    }
+    return (double) hits / trace.keys.length;
+  }
+
+  /**
+   * A trace where half of the requests are for a small set of avatars with skewed popularity and
+   * the other half are for feed images which are each requested exactly once.
+   */
+  static Trace avatarsAndFeed(Random random, int length, int avatarCount, int avatarBytes,
+      int feedBytes) {
+    String[] keys = new String[length];
+    int[] sizes = new int[length];
+    int feedImage = 0;
+    for (int i = 0; i < length; i++) {
+      if (random.nextBoolean()) {
+        double skew = random.nextDouble();
+        keys[i] = "avatar" + (int) (avatarCount * skew * skew);
+        sizes[i] = avatarBytes;
+      } else {
+        keys[i] = "feed" + feedImage++;
+        sizes[i] = feedBytes;
+      }
+    }
+    return new Trace("avatarsAndFeed", keys, sizes);
+  }
+
+  static Trace read(File file) throws IOException {
+    List<String> keys = new ArrayList<String>();
+    List<Integer> sizes = new ArrayList<Integer>();
+    BufferedReader reader = new BufferedReader(new FileReader(file));
+    try {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        line = line.trim();
+        if (line.length() == 0) {
+          continue;
+        }
+        int split = line.lastIndexOf(' ');
+        keys.add(line.substring(0, split));
+        sizes.add(Integer.parseInt(line.substring(split + 1)));
+      }
+    } finally {
+      reader.close();
+    }
+    int[] sizeArray = new int[sizes.size()];
+    for (int i = 0; i < sizeArray.length; i++) {
+      sizeArray[i] = sizes.get(i);
+    }
+    return new Trace(file.getName(), keys.toArray(new String[keys.size()]), sizeArray);
+  }
+
+  static final class Trace {
+    final String name;
+    final String[] keys;
+    final int[] sizes;
+
+    Trace(String name, String[] keys, int[] sizes) {
+      this.name = name;
+      this.keys = keys;
+      this.sizes = sizes;
+    }
+  }
+}
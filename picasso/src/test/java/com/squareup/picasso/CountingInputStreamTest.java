@@ -0,0 +1,53 @@
+/*
+ * Copyright (C) 2013 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squareup.picasso;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import org.junit.Test;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+import static org.fest.assertions.api.Assertions.fail;
+
+public class CountingInputStreamTest {
+  @Test public void countsReadAndSkippedBytes() throws Exception {
+    CountingInputStream in = new CountingInputStream(new ByteArrayInputStream(
+        "ABCDEFGHIJ".getBytes(Charset.forName("US-ASCII"))));
+    assertThat(in.getCount()).isZero();
+    assertThat(in.read()).isEqualTo('A');
+    assertThat(in.read(new byte[4])).isEqualTo(4);
+    assertThat(in.skip(2)).isEqualTo(2);
+    assertThat(in.getCount()).isEqualTo(7);
+    assertThat(in.read(new byte[8])).isEqualTo(3);
+    assertThat(in.read()).isEqualTo(-1);
+    assertThat(in.getCount()).isEqualTo(10);
+    assertThat(in.markSupported()).isFalse();
+  }
+
+  @Test public void failsOnceLimitIsExceeded() throws Exception {
+    CountingInputStream in = new CountingInputStream(new ByteArrayInputStream(
+        "ABCDEFGHIJ".getBytes(Charset.forName("US-ASCII"))), 6);
+    assertThat(in.read(new byte[6])).isEqualTo(6);
+    assertThat(in.isLimitExceeded()).isFalse();
+    try {
+      in.read();
+      fail("Reading past the limit should throw exception.");
+    } catch (IOException expected) {
+    }
+    assertThat(in.isLimitExceeded()).isTrue();
+  }
+}
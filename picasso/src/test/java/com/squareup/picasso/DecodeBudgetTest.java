@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2013 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squareup.picasso;
+
+import android.graphics.BitmapFactory;
+import java.io.InterruptedIOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static android.graphics.Bitmap.Config.ARGB_8888;
+import static android.graphics.Bitmap.Config.RGB_565;
+import static org.fest.assertions.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class DecodeBudgetTest {
+  private final BitmapHunter hunter = mock(BitmapHunter.class);
+
+  @Test public void estimateRoundsSampleSizeDownToPowerOfTwo() throws Exception {
+    assertThat(DecodeBudget.estimate(100, 50, 1, ARGB_8888)).isEqualTo(100 * 50 * 4);
+    assertThat(DecodeBudget.estimate(100, 50, 1, RGB_565)).isEqualTo(100 * 50 * 2);
+    assertThat(DecodeBudget.estimate(100, 50, 3, ARGB_8888)).isEqualTo(50 * 25 * 4);
+    assertThat(DecodeBudget.estimate(101, 51, 2, null)).isEqualTo(51 * 26 * 4);
+  }
+
+  @Test public void reserveKeepsSampleSizeWhenImageFits() throws Exception {
+    DecodeBudget budget = new DecodeBudget(100 * 100 * 4);
+    BitmapFactory.Options options = boundsOf(100, 100);
+    assertThat(budget.reserve(options, hunter)).isEqualTo(100 * 100 * 4);
+    assertThat(options.inSampleSize).isEqualTo(1);
+    assertThat(budget.getReservedBytes()).isEqualTo(100 * 100 * 4);
+  }
+
+  @Test public void reserveRaisesSampleSizeWhenImageExceedsBudget() throws Exception {
+    DecodeBudget budget = new DecodeBudget(100 * 100 * 4);
+    BitmapFactory.Options options = boundsOf(400, 300);
+    assertThat(budget.reserve(options, hunter)).isEqualTo(100 * 75 * 4);
+    assertThat(options.inSampleSize).isEqualTo(4);
+  }
+
+  @Test public void reserveWithUnknownBoundsReservesNothing() throws Exception {
+    DecodeBudget budget = new DecodeBudget(1024);
+    assertThat(budget.reserve(boundsOf(-1, -1), hunter)).isZero();
+    assertThat(budget.getReservedBytes()).isZero();
+  }
+
+  @Test public void reserveBlocksUntilReleased() throws Exception {
+    final DecodeBudget budget = new DecodeBudget(100 * 100 * 4);
+    final long first = budget.reserve(boundsOf(100, 60), hunter);
+    final CountDownLatch reserved = new CountDownLatch(1);
+    new Thread(new Runnable() {
+      @Override public void run() {
+        try {
+          budget.reserve(boundsOf(100, 60), hunter);
+          reserved.countDown();
+        } catch (Exception ignored) {
+        }
+      }
+    }).start();
+    assertThat(reserved.await(100, TimeUnit.MILLISECONDS)).isFalse();
+    budget.release(first);
+    assertThat(reserved.await(5, TimeUnit.SECONDS)).isTrue();
+    assertThat(budget.getReservedBytes()).isEqualTo(first);
+  }
+
+  @Test public void reserveStopsWaitingOnceHunterIsCancelled() throws Exception {
+    final DecodeBudget budget = new DecodeBudget(100 * 100 * 4);
+    final long first = budget.reserve(boundsOf(100, 60), hunter);
+    final BitmapHunter waitingHunter = mock(BitmapHunter.class);
+    final CountDownLatch interrupted = new CountDownLatch(1);
+    new Thread(new Runnable() {
+      @Override public void run() {
+        try {
+          budget.reserve(boundsOf(100, 60), waitingHunter);
+        } catch (InterruptedIOException e) {
+          interrupted.countDown();
+        }
+      }
+    }).start();
+    assertThat(interrupted.await(100, TimeUnit.MILLISECONDS)).isFalse();
+    waitingHunter.cancelled = true;
+    budget.hunterCancelled();
+    assertThat(interrupted.await(5, TimeUnit.SECONDS)).isTrue();
+    assertThat(budget.getReservedBytes()).isEqualTo(first);
+  }
+
+  private static BitmapFactory.Options boundsOf(int width, int height) {
+    BitmapFactory.Options options = new BitmapFactory.Options();
+    options.outWidth = width;
+    options.outHeight = height;
+    return options;
+  }
+}
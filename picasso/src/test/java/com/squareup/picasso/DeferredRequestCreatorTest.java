@@ -22,15 +22,19 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Captor;
+import org.mockito.InOrder;
+import org.robolectric.Robolectric;
 import org.robolectric.RobolectricTestRunner;
 import org.robolectric.annotation.Config;
 
+import static com.squareup.picasso.Picasso.RequestTransformer.IDENTITY;
 import static com.squareup.picasso.TestUtils.TRANSFORM_REQUEST_ANSWER;
 import static com.squareup.picasso.TestUtils.URI_1;
 import static com.squareup.picasso.TestUtils.mockCallback;
 import static com.squareup.picasso.TestUtils.mockFitImageViewTarget;
 import static org.fest.assertions.api.Assertions.assertThat;
 import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
@@ -45,6 +49,7 @@ import static org.mockito.MockitoAnnotations.initMocks;
 public class DeferredRequestCreatorTest {
 
   @Captor ArgumentCaptor<Action> actionCaptor;
+  @Captor ArgumentCaptor<DeferredRequestCreator> requestCaptor;
 
   @Before public void setUp() throws Exception {
     initMocks(this);
@@ -130,6 +135,8 @@ public class DeferredRequestCreatorTest {
   @Test public void onGlobalLayoutSubmitsRequestAndCleansUp() throws Exception {
     Picasso picasso = mock(Picasso.class);
     when(picasso.transformRequest(any(Request.class))).thenAnswer(TRANSFORM_REQUEST_ANSWER);
+    when(picasso.transformRequestOnSubmit(any(Request.class)))
+        .thenAnswer(TRANSFORM_REQUEST_ANSWER);
 
     RequestCreator creator = new RequestCreator(picasso, URI_1, 0);
 
@@ -150,4 +157,41 @@ public class DeferredRequestCreatorTest {
     assertThat(value.getData().targetWidth).isEqualTo(100);
     assertThat(value.getData().targetHeight).isEqualTo(100);
   }
+
+  @Test public void cancelReleasesPrefetch() throws Exception {
+    Dispatcher dispatcher = mock(Dispatcher.class);
+    Picasso picasso = createPicasso(dispatcher);
+    ImageView target = mockFitImageViewTarget(true);
+    new RequestCreator(picasso, URI_1, 0).fit().into(target);
+    verify(dispatcher).dispatchPrefetch(requestCaptor.capture());
+    DeferredRequestCreator request = requestCaptor.getValue();
+    assertThat(request.prefetchUri).isEqualTo(URI_1);
+
+    picasso.cancelRequest(target);
+    picasso.cancelRequest(target);
+    verify(dispatcher).dispatchPrefetchRelease(request);
+    picasso.shutdown();
+  }
+
+  @Test public void onPreDrawReleasesPrefetchAfterSubmittingSizedRequest() throws Exception {
+    Dispatcher dispatcher = mock(Dispatcher.class);
+    Picasso picasso = createPicasso(dispatcher);
+    ImageView target = mockFitImageViewTarget(true);
+    new RequestCreator(picasso, URI_1, 0).fit().into(target);
+    verify(dispatcher).dispatchPrefetch(requestCaptor.capture());
+    DeferredRequestCreator request = requestCaptor.getValue();
+
+    when(target.getMeasuredWidth()).thenReturn(100);
+    when(target.getMeasuredHeight()).thenReturn(100);
+    request.onPreDraw();
+    InOrder inOrder = inOrder(dispatcher);
+    inOrder.verify(dispatcher).dispatchSubmit(any(Action.class));
+    inOrder.verify(dispatcher).dispatchPrefetchRelease(request);
+    picasso.shutdown();
+  }
+
+  private static Picasso createPicasso(Dispatcher dispatcher) {
+    return new Picasso(Robolectric.application, dispatcher, mock(Cache.class), null, IDENTITY,
+        mock(Stats.class), new Picasso.Options(), false);
+  }
 }
@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2013 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squareup.picasso;
+
+import java.util.concurrent.CountDownLatch;
+import org.junit.Test;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+public class DispatchQueueTest {
+
+  @Test public void pollsEventsInOfferOrder() throws Exception {
+    DispatchQueue queue = new DispatchQueue();
+    queue.offer(1, "a", 0);
+    queue.offer(2, "b", 7);
+
+    DispatchQueue.Event first = queue.poll();
+    assertThat(first.what).isEqualTo(1);
+    assertThat(first.obj).isEqualTo("a");
+    DispatchQueue.Event second = queue.poll();
+    assertThat(second.what).isEqualTo(2);
+    assertThat(second.obj).isEqualTo("b");
+    assertThat(second.arg).isEqualTo(7);
+    assertThat(queue.poll()).isNull();
+  }
+
+  @Test public void onlyFirstOfferWakesConsumer() throws Exception {
+    DispatchQueue queue = new DispatchQueue();
+    assertThat(queue.offer(1, null, 0)).isTrue();
+    assertThat(queue.offer(1, null, 0)).isFalse();
+    queue.poll();
+    queue.poll();
+    assertThat(queue.poll()).isNull();
+    assertThat(queue.onDrained()).isFalse();
+    assertThat(queue.offer(1, null, 0)).isTrue();
+  }
+
+  @Test public void eventsOfferedDuringDrainKeepConsumerAwake() throws Exception {
+    DispatchQueue queue = new DispatchQueue();
+    queue.offer(1, null, 0);
+    queue.poll();
+    assertThat(queue.poll()).isNull();
+    assertThat(queue.offer(2, null, 0)).isFalse();
+    assertThat(queue.onDrained()).isTrue();
+    assertThat(queue.poll().what).isEqualTo(2);
+  }
+
+  @Test public void consumedEventsAreNotRetained() throws Exception {
+    DispatchQueue queue = new DispatchQueue();
+    queue.offer(1, "a", 0);
+    DispatchQueue.Event event = queue.poll();
+    assertThat(queue.poll()).isNull();
+    queue.onDrained();
+    assertThat(event.obj).isNull();
+  }
+
+  @Test public void concurrentProducersDeliverEveryEventInOrder() throws Exception {
+    final int producers = 4;
+    final int eventsPerProducer = 10000;
+    final DispatchQueue queue = new DispatchQueue();
+    final CountDownLatch start = new CountDownLatch(1);
+    Thread[] threads = new Thread[producers];
+    for (int i = 0; i < producers; i++) {
+      final int producer = i;
+      threads[i] = new Thread() {
+        @Override public void run() {
+          try {
+            start.await();
+          } catch (InterruptedException e) {
+            return;
+          }
+          for (int j = 0; j < eventsPerProducer; j++) {
+            queue.offer(producer, null, j);
+          }
+        }
+      };
+      threads[i].start();
+    }
+    start.countDown();
+
+    int[] next = new int[producers];
+    int received = 0;
+    while (received < producers * eventsPerProducer) {
+      DispatchQueue.Event event = queue.poll();
+      if (event == null) {
+        Thread.yield();
+        continue;
+      }
+      assertThat(event.arg).isEqualTo(next[event.what]);
+      next[event.what]++;
+      received++;
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertThat(queue.poll()).isNull();
+  }
+}
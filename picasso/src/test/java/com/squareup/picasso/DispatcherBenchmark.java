@@ -0,0 +1,179 @@
+/*
+ * Copyright (C) 2013 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squareup.picasso;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.locks.LockSupport;
+import org.junit.Test;
+
+/**
+ * Compares how many events per second hunter threads can hand to the dispatcher thread, through a
+ * model of the handler message queue (a pooled message, a synchronized enqueue and a wake-up per
+ * message) versus {@link DispatchQueue}. Not part of the regular test run, invoke it with:
+ * <pre>
+ * mvn test -Dtest=DispatcherBenchmark
+ * </pre>
+ */
+public class DispatcherBenchmark {
+  private static final int HUNTERS = 8;
+  private static final int EVENTS_PER_HUNTER = 200000;
+  private static final int RUNS = 3;
+
+  @Test public void eventsPerSecond() throws Exception {
+    for (int run = 0; run < RUNS; run++) {
+      double messages = eventsPerSecond(new MessageQueueChannel());
+      double events = eventsPerSecond(new DispatchQueueChannel());
+      System.out.println(String.format("hunters=%d messageQueue=%.0f/s dispatchQueue=%.0f/s",
+          HUNTERS, messages, events));
+    }
+  }
+
+  private static double eventsPerSecond(final Channel channel) throws InterruptedException {
+    final CountDownLatch start = new CountDownLatch(1);
+    Thread[] hunters = new Thread[HUNTERS];
+    for (int i = 0; i < HUNTERS; i++) {
+      hunters[i] = new Thread() {
+        @Override public void run() {
+          try {
+            start.await();
+          } catch (InterruptedException e) {
+            return;
+          }
+          for (int j = 0; j < EVENTS_PER_HUNTER; j++) {
+            channel.send(Dispatcher.HUNTER_COMPLETE, this);
+          }
+        }
+      };
+      hunters[i].start();
+    }
+
+    long begin = System.nanoTime();
+    start.countDown();
+    channel.receive(HUNTERS * EVENTS_PER_HUNTER);
+    long nanos = System.nanoTime() - begin;
+    for (Thread hunter : hunters) {
+      hunter.join();
+    }
+    return HUNTERS * EVENTS_PER_HUNTER * 1e9 / nanos;
+  }
+
+  interface Channel {
+    /** Called by hunter threads. */
+    void send(int what, Object obj);
+
+    /** Called by the dispatcher thread, returns after {@code count} events. */
+    void receive(int count);
+  }
+
+  static final class DispatchQueueChannel implements Channel {
+    final DispatchQueue queue = new DispatchQueue();
+    volatile Thread consumer = Thread.currentThread();
+
+    @Override public void send(int what, Object obj) {
+      if (queue.offer(what, obj, 0)) {
+        LockSupport.unpark(consumer);
+      }
+    }
+
+    @Override public void receive(int count) {
+      int received = 0;
+      while (received < count) {
+        if (queue.poll() != null) {
+          received++;
+        } else if (!queue.onDrained()) {
+          LockSupport.park(this);
+        }
+      }
+    }
+  }
+
+  /** Mirrors android.os.Message pooling and the synchronized MessageQueue of a looper. */
+  static final class MessageQueueChannel implements Channel {
+    private static final Object POOL_LOCK = new Object();
+
+    static final class Message {
+      int what;
+      Object obj;
+      Message next;
+    }
+
+    private Message pool;
+    private Message head;
+    private Message tail;
+    private boolean blocked;
+
+    Message obtain() {
+      synchronized (POOL_LOCK) {
+        if (pool != null) {
+          Message message = pool;
+          pool = message.next;
+          message.next = null;
+          return message;
+        }
+      }
+      return new Message();
+    }
+
+    void recycle(Message message) {
+      message.obj = null;
+      synchronized (POOL_LOCK) {
+        message.next = pool;
+        pool = message;
+      }
+    }
+
+    @Override public void send(int what, Object obj) {
+      Message message = obtain();
+      message.what = what;
+      message.obj = obj;
+      synchronized (this) {
+        if (tail == null) {
+          head = message;
+        } else {
+          tail.next = message;
+        }
+        tail = message;
+        if (blocked) {
+          notify();
+        }
+      }
+    }
+
+    @Override public void receive(int count) {
+      for (int i = 0; i < count; i++) {
+        Message message;
+        synchronized (this) {
+          while (head == null) {
+            blocked = true;
+            try {
+              wait();
+            } catch (InterruptedException e) {
+              throw new AssertionError(e);
+            }
+            blocked = false;
+          }
+          message = head;
+          head = message.next;
+          if (head == null) {
+            tail = null;
+          }
+        }
+        message.next = null;
+        recycle(message);
+      }
+    }
+  }
+}
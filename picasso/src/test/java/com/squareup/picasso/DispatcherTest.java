@@ -16,28 +16,42 @@
 package com.squareup.picasso;
 
 import android.content.Context;
+import android.net.ConnectivityManager;
 import android.net.NetworkInfo;
+import android.net.Uri;
 import android.os.Handler;
+import java.io.File;
+import java.util.Random;
+import java.util.concurrent.FutureTask;
 import java.util.concurrent.ExecutorService;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.robolectric.RobolectricTestRunner;
 import org.robolectric.annotation.Config;
 
+import static com.squareup.picasso.Picasso.Priority.HIGH;
+import static com.squareup.picasso.Picasso.Priority.LOW;
+import static com.squareup.picasso.Picasso.RequestTransformer.IDENTITY;
 import static com.squareup.picasso.TestUtils.BITMAP_1;
 import static com.squareup.picasso.TestUtils.BITMAP_2;
 import static com.squareup.picasso.TestUtils.URI_1;
 import static com.squareup.picasso.TestUtils.URI_2;
 import static com.squareup.picasso.TestUtils.URI_KEY_1;
 import static com.squareup.picasso.TestUtils.URI_KEY_2;
+import static com.squareup.picasso.TestUtils.mockAction;
+import static com.squareup.picasso.TestUtils.mockDeferredRequestCreator;
 import static com.squareup.picasso.TestUtils.mockHunter;
 import static com.squareup.picasso.TestUtils.mockNetworkInfo;
 import static org.fest.assertions.api.Assertions.assertThat;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -53,14 +67,16 @@ public class DispatcherTest {
   @Mock Context context;
   @Mock ExecutorService service;
   @Mock Handler mainThreadHandler;
-  @Mock Downloader downloader;
+  @Mock CachingDownloader downloader;
   @Mock Cache cache;
   @Mock Stats stats;
   private Dispatcher dispatcher;
 
   @Before public void setUp() throws Exception {
     initMocks(this);
-    dispatcher = new Dispatcher(context, service, mainThreadHandler, downloader, cache, stats);
+    when(downloader.hasDiskCache()).thenReturn(true);
+    dispatcher =
+        new Dispatcher(context, service, mainThreadHandler, downloader, cache, stats, false);
   }
 
   @Test public void shutdownStopsService() throws Exception {
@@ -73,6 +89,34 @@ public class DispatcherTest {
     verify(context).unregisterReceiver(dispatcher.receiver);
   }
 
+  @Test public void dispatchedEventsArePerformedInOrder() throws Exception {
+    Action action1 = TestUtils.mockAction(URI_KEY_1, URI_1);
+    Action action2 = TestUtils.mockAction(URI_KEY_1, URI_1);
+    dispatcher.dispatchSubmit(action1);
+    dispatcher.dispatchSubmit(action2);
+    dispatcher.dispatchCancel(action1);
+    dispatcher.drainEvents();
+    assertThat(dispatcher.hunterMap).hasSize(1);
+    assertThat(dispatcher.hunterMap.get(URI_KEY_1).getActions()).containsExactly(action2);
+    verify(service).submit(any(BitmapHunter.class));
+  }
+
+  @Test public void performBatchCancelsAndSubmitsHighestPriorityFirst() throws Exception {
+    Action existing = mockAction(URI_KEY_1, URI_1);
+    dispatcher.performSubmit(existing);
+    dispatcher.hunterMap.get(URI_KEY_1).future = new FutureTask<Object>(mock(Runnable.class), null);
+    Action low = mockAction(URI_KEY_1, URI_1);
+    Action high = mockAction(URI_KEY_2, URI_2);
+    when(high.getData()).thenReturn(new Request.Builder(URI_2).priority(HIGH).build());
+    Picasso.Batch batch = new Picasso.Batch(mock(Picasso.class));
+    batch.cancels.add(existing);
+    batch.submits.add(low);
+    batch.submits.add(high);
+    dispatcher.performBatch(batch);
+    assertThat(dispatcher.hunterMap.keySet()).containsExactly(URI_KEY_2, URI_KEY_1);
+    assertThat(dispatcher.hunterMap.get(URI_KEY_1).getActions()).containsExactly(low);
+  }
+
   @Test public void performSubmitWithNewRequestQueuesHunter() throws Exception {
     Action action = TestUtils.mockAction(URI_KEY_1, URI_1);
     dispatcher.performSubmit(action);
@@ -80,6 +124,39 @@ public class DispatcherTest {
     verify(service).submit(any(BitmapHunter.class));
   }
 
+  @Test public void performSubmitTransformsPendingRequest() throws Exception {
+    Picasso picasso = mock(Picasso.class);
+    Request transformed = new Request.Builder(URI_2).build();
+    when(picasso.transformRequest(any(Request.class))).thenReturn(transformed);
+    Action action = new FetchAction(picasso, new Request.Builder(URI_1).build(), false, URI_KEY_1);
+    action.transformPending = true;
+    dispatcher.performSubmit(action);
+    assertThat(action.transformPending).isFalse();
+    assertThat(action.getData()).isSameAs(transformed);
+    assertThat(action.getKey()).isEqualTo(URI_KEY_2);
+    assertThat(dispatcher.hunterMap.keySet()).containsExactly(URI_KEY_2);
+    verify(picasso).putTransformedKey(URI_KEY_1, URI_KEY_2);
+    verify(service).submit(any(BitmapHunter.class));
+  }
+
+  @Test public void performSubmitCompletesTransformedRequestFromCache() throws Exception {
+    Picasso picasso = mock(Picasso.class);
+    when(picasso.transformRequest(any(Request.class)))
+        .thenReturn(new Request.Builder(URI_2).build());
+    when(cache.get(URI_KEY_2)).thenReturn(BITMAP_1);
+    Action action = new FetchAction(picasso, new Request.Builder(URI_1).build(), false, URI_KEY_1);
+    action.transformPending = true;
+    dispatcher.performSubmit(action);
+    assertThat(dispatcher.hunterMap).isEmpty();
+    verifyZeroInteractions(service);
+
+    // Once transformed the action is not transformed again, e.g. if the image was evicted.
+    when(cache.get(URI_KEY_2)).thenReturn(null);
+    dispatcher.performSubmit(action);
+    verify(picasso).transformRequest(any(Request.class));
+    assertThat(dispatcher.hunterMap.keySet()).containsExactly(URI_KEY_2);
+  }
+
   @Test public void performSubmitWithTwoDifferentRequestsQueuesHunters() throws Exception {
     Action action1 = TestUtils.mockAction(URI_KEY_1, URI_1);
     Action action2 = TestUtils.mockAction(URI_KEY_2, URI_2);
@@ -98,6 +175,26 @@ public class DispatcherTest {
     verify(service).submit(any(BitmapHunter.class));
   }
 
+  @Test public void performSubmitAndCancelNotifyEventListener() throws Exception {
+    EventListener eventListener = mock(EventListener.class);
+    Picasso.Options options = new Picasso.Options();
+    options.eventListener = eventListener;
+    Picasso picasso = new Picasso(context, mock(Dispatcher.class), cache, null, IDENTITY, stats,
+        options, false);
+    Action action1 = TestUtils.mockAction(URI_KEY_1, URI_1);
+    Action action2 = TestUtils.mockAction(URI_KEY_1, URI_1);
+    when(action1.getPicasso()).thenReturn(picasso);
+    when(action2.getPicasso()).thenReturn(picasso);
+    dispatcher.performSubmit(action1);
+    dispatcher.performSubmit(action2);
+    dispatcher.performCancel(action2);
+    InOrder inOrder = inOrder(eventListener);
+    inOrder.verify(eventListener).requestSubmitted(eq(URI_KEY_1), anyLong());
+    inOrder.verify(eventListener).requestCoalesced(eq(URI_KEY_1), anyLong());
+    inOrder.verify(eventListener).cancelled(eq(URI_KEY_1), anyLong());
+    picasso.shutdown();
+  }
+
   @Test public void performSubmitWithShutdownServiceIgnoresRequest() throws Exception {
     when(service.isShutdown()).thenReturn(true);
     Action action = TestUtils.mockAction(URI_KEY_1, URI_1);
@@ -117,6 +214,110 @@ public class DispatcherTest {
     verify(service, never()).submit(any(BitmapHunter.class));
   }
 
+  @Test public void performPrefetchSubmitsOncePerNetworkUri() throws Exception {
+    dispatcher.performPrefetch(prefetchRequest(URI_1));
+    dispatcher.performPrefetch(prefetchRequest(URI_1));
+    dispatcher.performPrefetch(prefetchRequest(Uri.parse("file:///sdcard/1.png")));
+    assertThat(dispatcher.prefetcherMap).hasSize(1);
+    assertThat(dispatcher.prefetcherMap.get(URI_1.toString()).deferredRequests).hasSize(2);
+    verify(service).submit(any(SourcePrefetcher.class));
+  }
+
+  @Test public void performPrefetchSkipsDownloadersWithoutDiskCache() throws Exception {
+    when(downloader.hasDiskCache()).thenReturn(false);
+    dispatcher.performPrefetch(prefetchRequest(URI_1));
+    Dispatcher uncached = new Dispatcher(context, service, mainThreadHandler,
+        mock(Downloader.class), cache, stats, false);
+    uncached.performPrefetch(prefetchRequest(URI_1));
+    assertThat(dispatcher.prefetcherMap).isEmpty();
+    assertThat(uncached.prefetcherMap).isEmpty();
+    verify(service, never()).submit(any(SourcePrefetcher.class));
+  }
+
+  @Test public void performPrefetchPassesMaxSize() throws Exception {
+    DeferredRequestCreator request = prefetchRequest(URI_1);
+    request.prefetchMaxSize = 1024;
+    dispatcher.performPrefetch(request);
+    assertThat(dispatcher.prefetcherMap.get(URI_1.toString()).maxSize).isEqualTo(1024);
+  }
+
+  @Test public void performPrefetchReleaseOfLastRequestCancelsPrefetch() throws Exception {
+    DeferredRequestCreator request1 = prefetchRequest(URI_1);
+    DeferredRequestCreator request2 = prefetchRequest(URI_1);
+    dispatcher.performPrefetch(request1);
+    dispatcher.performPrefetch(request2);
+    SourcePrefetcher prefetcher = dispatcher.prefetcherMap.get(URI_1.toString());
+    prefetcher.future = new FutureTask<Object>(mock(Runnable.class), null);
+
+    dispatcher.performPrefetchRelease(request1);
+    assertThat(prefetcher.isCancelled()).isFalse();
+    dispatcher.performPrefetchRelease(request2);
+    assertThat(prefetcher.isCancelled()).isTrue();
+    assertThat(prefetcher.cancelled).isTrue();
+    assertThat(dispatcher.prefetcherMap).isEmpty();
+  }
+
+  @Test public void performPrefetchReleaseKeepsPrefetchForWaitingHunter() throws Exception {
+    DeferredRequestCreator request = prefetchRequest(URI_1);
+    dispatcher.performPrefetch(request);
+    SourcePrefetcher prefetcher = dispatcher.prefetcherMap.get(URI_1.toString());
+    prefetcher.future = new FutureTask<Object>(mock(Runnable.class), null);
+    Action action = mockAction(URI_KEY_1, URI_1);
+    dispatcher.performSubmit(action);
+
+    dispatcher.performPrefetchRelease(request);
+    assertThat(prefetcher.isCancelled()).isFalse();
+    dispatcher.performCancel(action);
+    assertThat(prefetcher.isCancelled()).isTrue();
+    assertThat(dispatcher.prefetcherMap).isEmpty();
+  }
+
+  @Test public void performPrefetchCompleteOfCancelledPrefetchKeepsNewPrefetch() throws Exception {
+    DeferredRequestCreator request = prefetchRequest(URI_1);
+    dispatcher.performPrefetch(request);
+    SourcePrefetcher cancelled = dispatcher.prefetcherMap.get(URI_1.toString());
+    cancelled.future = new FutureTask<Object>(mock(Runnable.class), null);
+    dispatcher.performPrefetchRelease(request);
+    dispatcher.performPrefetch(prefetchRequest(URI_1));
+
+    dispatcher.performPrefetchComplete(cancelled);
+    assertThat(dispatcher.prefetcherMap).hasSize(1);
+  }
+
+  @Test public void performShutdownCancelsPrefetches() throws Exception {
+    dispatcher.performPrefetch(prefetchRequest(URI_1));
+    SourcePrefetcher prefetcher = dispatcher.prefetcherMap.get(URI_1.toString());
+    prefetcher.future = new FutureTask<Object>(mock(Runnable.class), null);
+    dispatcher.performShutdown();
+    assertThat(prefetcher.isCancelled()).isTrue();
+    assertThat(dispatcher.prefetcherMap).isEmpty();
+  }
+
+  @Test public void performSubmitWaitsForPrefetchOfSameUri() throws Exception {
+    dispatcher.performPrefetch(prefetchRequest(URI_1));
+    SourcePrefetcher prefetcher = dispatcher.prefetcherMap.get(URI_1.toString());
+    Action action = mockAction(URI_KEY_1, URI_1);
+    dispatcher.performSubmit(action);
+    assertThat(dispatcher.hunterMap).hasSize(1);
+    assertThat(prefetcher.waitingHunters).hasSize(1);
+    verify(service, times(1)).submit(any(Runnable.class));
+
+    dispatcher.performPrefetchComplete(prefetcher);
+    assertThat(dispatcher.prefetcherMap).isEmpty();
+    assertThat(prefetcher.waitingHunters).isEmpty();
+    verify(service, times(2)).submit(any(Runnable.class));
+  }
+
+  @Test public void performCancelRemovesHunterWaitingForPrefetch() throws Exception {
+    dispatcher.performPrefetch(prefetchRequest(URI_1));
+    SourcePrefetcher prefetcher = dispatcher.prefetcherMap.get(URI_1.toString());
+    Action action = mockAction(URI_KEY_1, URI_1);
+    dispatcher.performSubmit(action);
+    dispatcher.performCancel(action);
+    assertThat(dispatcher.hunterMap).isEmpty();
+    assertThat(prefetcher.waitingHunters).isEmpty();
+  }
+
   @Test public void performCancelDetachesRequestAndCleansMap() throws Exception {
     Action action = TestUtils.mockAction(URI_KEY_1, URI_1);
     BitmapHunter hunter = mockHunter(URI_KEY_1, BITMAP_1, false);
@@ -148,6 +349,66 @@ public class DispatcherTest {
     verify(cache).set(hunter.getKey(), hunter.getResult());
   }
 
+  @Test public void performWarmStartLoadHuntsSavedRequestsAtLowPriority() throws Exception {
+    WarmStart warmStart = new WarmStart(File.createTempFile("warm-start", null), 10);
+    Picasso.Options options = new Picasso.Options();
+    options.warmStart = warmStart;
+    Picasso picasso = new Picasso(context, mock(Dispatcher.class), cache, null, IDENTITY, stats,
+        options, false);
+    BitmapHunter hunter = mockHunter(URI_KEY_1, BITMAP_1, false);
+    when(hunter.getPicasso()).thenReturn(picasso);
+    dispatcher.performComplete(hunter);
+    dispatcher.performWarmStartSave(warmStart);
+    dispatcher.hunterMap.clear();
+
+    dispatcher.performWarmStartLoad(picasso);
+    assertThat(dispatcher.hunterMap.keySet()).containsExactly(URI_KEY_1);
+    BitmapHunter warm = dispatcher.hunterMap.get(URI_KEY_1);
+    assertThat(warm.getActions().get(0)).isInstanceOf(WarmStartAction.class);
+    assertThat(warm.getPriority()).isEqualTo(LOW);
+    verify(service).submit(warm);
+    picasso.shutdown();
+  }
+
+  @Test public void performWarmStartLoadSubmitsOneRequestAtATime() throws Exception {
+    WarmStart warmStart = new WarmStart(File.createTempFile("warm-start", null), 10);
+    warmStart.put(URI_KEY_1, new Request.Builder(URI_1).build());
+    warmStart.put(URI_KEY_2, new Request.Builder(URI_2).build());
+    warmStart.save();
+    Picasso.Options options = new Picasso.Options();
+    options.warmStart = warmStart;
+    Picasso picasso = new Picasso(context, mock(Dispatcher.class), cache, null, IDENTITY, stats,
+        options, false);
+
+    dispatcher.performWarmStartLoad(picasso);
+    assertThat(dispatcher.hunterMap.keySet()).containsExactly(URI_KEY_2);
+    assertThat(dispatcher.warmStartQueue).hasSize(1);
+    verify(service).submit(any(BitmapHunter.class));
+
+    dispatcher.performError(dispatcher.hunterMap.get(URI_KEY_2));
+    assertThat(dispatcher.hunterMap.keySet()).containsExactly(URI_KEY_1);
+    assertThat(dispatcher.warmStartQueue).isEmpty();
+    verify(service, times(2)).submit(any(BitmapHunter.class));
+    picasso.shutdown();
+  }
+
+  @Test public void performWarmStartLoadMapsUntransformedKeys() throws Exception {
+    WarmStart warmStart = new WarmStart(File.createTempFile("warm-start", null), 10);
+    warmStart.putUntransformed(URI_KEY_2, new Request.Builder(URI_1).build());
+    warmStart.put(URI_KEY_2, new Request.Builder(URI_2).build());
+    warmStart.save();
+    Picasso.Options options = new Picasso.Options();
+    options.asyncRequestTransformer = true;
+    options.warmStart = new WarmStart(warmStart.file, 10);
+    Picasso picasso = new Picasso(context, mock(Dispatcher.class), cache, null, IDENTITY, stats,
+        options, false);
+
+    dispatcher.performWarmStartLoad(picasso);
+    when(cache.get(URI_KEY_2)).thenReturn(BITMAP_1);
+    assertThat(picasso.quickMemoryCacheCheck(URI_KEY_1)).isSameAs(BITMAP_1);
+    picasso.shutdown();
+  }
+
   @Test public void performCompleteWithSkipCacheDoesNotCache() throws Exception {
     BitmapHunter hunter = mockHunter(URI_KEY_1, BITMAP_1, true);
     dispatcher.performComplete(hunter);
@@ -225,6 +486,93 @@ public class DispatcherTest {
     verify(service, never()).submit(hunter);
   }
 
+  @Test public void performRetryParksReplayableHunterWhileDisconnected() throws Exception {
+    NetworkInfo info = mockNetworkInfo();
+    dispatcher.performNetworkStateChange(info);
+    BitmapHunter hunter = mockReplayableHunter(URI_KEY_1, Picasso.Priority.NORMAL);
+    dispatcher.performRetry(hunter);
+    assertThat(dispatcher.parkedHunterMap).hasSize(1);
+    verify(service, never()).submit(hunter);
+    verify(hunter, never()).shouldRetry(anyBoolean(), any(NetworkInfo.class));
+  }
+
+  @Test public void performRetryParksReplayableHunterInAirplaneMode() throws Exception {
+    dispatcher.performAirplaneModeChange(true);
+    BitmapHunter hunter = mockReplayableHunter(URI_KEY_1, Picasso.Priority.NORMAL);
+    dispatcher.performRetry(hunter);
+    assertThat(dispatcher.parkedHunterMap).hasSize(1);
+    verify(service, never()).submit(hunter);
+    dispatcher.performAirplaneModeChange(false);
+    assertThat(dispatcher.parkedHunterMap).isEmpty();
+    verify(service).submit(hunter);
+  }
+
+  @Test public void performRetryIncrementsRetryAttempt() throws Exception {
+    BitmapHunter hunter = mockHunter(URI_KEY_1, BITMAP_1, false);
+    when(hunter.shouldRetry(anyBoolean(), any(NetworkInfo.class))).thenReturn(true);
+    dispatcher.performRetry(hunter);
+    dispatcher.performRetry(hunter);
+    assertThat(hunter.retryAttempt).isEqualTo(2);
+  }
+
+  @Test public void performNetworkStateChangeReplaysParkedHuntersByPriority() throws Exception {
+    NetworkInfo info = mockNetworkInfo();
+    dispatcher.performNetworkStateChange(info);
+    BitmapHunter low = mockReplayableHunter(URI_KEY_1, Picasso.Priority.LOW);
+    BitmapHunter high = mockReplayableHunter(URI_KEY_2, Picasso.Priority.HIGH);
+    low.retryAttempt = 3;
+    dispatcher.performRetry(low);
+    dispatcher.performRetry(high);
+    when(info.isConnectedOrConnecting()).thenReturn(true);
+    dispatcher.performNetworkStateChange(info);
+    assertThat(dispatcher.parkedHunterMap).isEmpty();
+    assertThat(low.retryAttempt).isZero();
+    InOrder inOrder = inOrder(service);
+    inOrder.verify(service).submit(high);
+    inOrder.verify(service).submit(low);
+  }
+
+  @Test public void performRetryFailsEldestParkedHunterWhenFull() throws Exception {
+    dispatcher.performAirplaneModeChange(true);
+    BitmapHunter eldest = mockReplayableHunter("eldest", Picasso.Priority.NORMAL);
+    dispatcher.hunterMap.put(eldest.getKey(), eldest);
+    dispatcher.performRetry(eldest);
+    for (int i = 1; i < Dispatcher.MAX_PARKED_HUNTERS; i++) {
+      dispatcher.performRetry(mockReplayableHunter("key" + i, Picasso.Priority.NORMAL));
+    }
+    assertThat(dispatcher.batch).isEmpty();
+    dispatcher.performRetry(mockReplayableHunter("newest", Picasso.Priority.NORMAL));
+    assertThat(dispatcher.parkedHunterMap).hasSize(Dispatcher.MAX_PARKED_HUNTERS);
+    assertThat(dispatcher.parkedHunterMap).doesNotContainKey("eldest");
+    assertThat(dispatcher.hunterMap).isEmpty();
+    assertThat(dispatcher.batch).containsExactly(eldest);
+  }
+
+  @Test public void performCancelRemovesParkedHunter() throws Exception {
+    dispatcher.performAirplaneModeChange(true);
+    Action action = mockAction(URI_KEY_1, URI_1);
+    BitmapHunter hunter = mockReplayableHunter(URI_KEY_1, Picasso.Priority.NORMAL);
+    dispatcher.hunterMap.put(URI_KEY_1, hunter);
+    dispatcher.performRetry(hunter);
+    dispatcher.performCancel(action);
+    verify(hunter).detach(action);
+    assertThat(dispatcher.hunterMap).isEmpty();
+    assertThat(dispatcher.parkedHunterMap).isEmpty();
+  }
+
+  @Test public void retryDelayGrowsWithAttemptsAndIsCapped() throws Exception {
+    Random random = new Random(42);
+    for (int i = 0; i < 100; i++) {
+      assertThat(Dispatcher.getRetryDelay(0, random)).isGreaterThanOrEqualTo(250)
+          .isLessThanOrEqualTo(500);
+      assertThat(Dispatcher.getRetryDelay(2, random)).isGreaterThanOrEqualTo(1000)
+          .isLessThanOrEqualTo(2000);
+      assertThat(Dispatcher.getRetryDelay(40, random)) //
+          .isGreaterThanOrEqualTo(Dispatcher.MAX_RETRY_DELAY / 2)
+          .isLessThanOrEqualTo(Dispatcher.MAX_RETRY_DELAY);
+    }
+  }
+
   @Test public void performAirplaneModeChange() throws Exception {
     assertThat(dispatcher.airplaneMode).isFalse();
     dispatcher.performAirplaneModeChange(true);
@@ -233,6 +581,18 @@ public class DispatcherTest {
     assertThat(dispatcher.airplaneMode).isFalse();
   }
 
+  @Test public void performNetworkStateChangeTracksNetworkType() throws Exception {
+    assertThat(dispatcher.networkType).isEqualTo(-1);
+    NetworkInfo info = mockNetworkInfo();
+    when(info.isConnectedOrConnecting()).thenReturn(true);
+    when(info.getType()).thenReturn(ConnectivityManager.TYPE_WIFI);
+    dispatcher.performNetworkStateChange(info);
+    assertThat(dispatcher.networkType).isEqualTo(ConnectivityManager.TYPE_WIFI);
+    when(info.isConnectedOrConnecting()).thenReturn(false);
+    dispatcher.performNetworkStateChange(info);
+    assertThat(dispatcher.networkType).isEqualTo(-1);
+  }
+
   @Test public void performNetworkStateChangeWithNullInfoIgnores() throws Exception {
     dispatcher.performNetworkStateChange(null);
     verifyZeroInteractions(service);
@@ -258,11 +618,24 @@ public class DispatcherTest {
       throws Exception {
     PicassoExecutorService service = mock(PicassoExecutorService.class);
     Dispatcher dispatcher =
-        new Dispatcher(context, service, mainThreadHandler, downloader, cache, stats);
+        new Dispatcher(context, service, mainThreadHandler, downloader, cache, stats, false);
     NetworkInfo info = mockNetworkInfo();
     when(info.isConnectedOrConnecting()).thenReturn(true);
     dispatcher.performNetworkStateChange(info);
     verify(service).adjustThreadCount(info);
     verifyZeroInteractions(service);
   }
+
+  private static BitmapHunter mockReplayableHunter(String key, Picasso.Priority priority) {
+    BitmapHunter hunter = mockHunter(key, BITMAP_1, false);
+    when(hunter.supportsReplay()).thenReturn(true);
+    when(hunter.getPriority()).thenReturn(priority);
+    return hunter;
+  }
+
+  private static DeferredRequestCreator prefetchRequest(Uri uri) {
+    DeferredRequestCreator request = mockDeferredRequestCreator();
+    request.prefetchUri = uri;
+    return request;
+  }
 }
@@ -0,0 +1,47 @@
+/*
+ * Copyright (C) 2013 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squareup.picasso;
+
+import android.R;
+import android.graphics.drawable.Drawable;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class DrawableCacheTest {
+
+  @Test public void sharesStateButHandsOutSeparateDrawables() throws Exception {
+    DrawableCache cache = new DrawableCache(Robolectric.application.getResources());
+    Drawable first = cache.get(R.drawable.picture_frame);
+    Drawable second = cache.get(R.drawable.picture_frame);
+    assertThat(first).isNotNull();
+    assertThat(second).isNotNull().isNotSameAs(first);
+    assertThat(cache.size()).isEqualTo(1);
+  }
+
+  @Test public void clearDropsStates() throws Exception {
+    DrawableCache cache = new DrawableCache(Robolectric.application.getResources());
+    cache.get(R.drawable.picture_frame);
+    cache.clear();
+    assertThat(cache.size()).isZero();
+  }
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright (C) 2013 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squareup.picasso;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import org.junit.Test;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+public class ImageHeaderTest {
+
+  @Test public void parsesJpegDimensionsAndBigEndianExifOrientation() throws Exception {
+    byte[] jpeg = jpeg(exif(true, 6), 640, 480);
+    ImageHeader header = ImageHeader.parse(ByteBuffer.wrap(jpeg));
+    assertThat(header.width).isEqualTo(640);
+    assertThat(header.height).isEqualTo(480);
+    assertThat(header.orientation).isEqualTo(6);
+    assertThat(header.getExifRotation()).isEqualTo(90);
+  }
+
+  @Test public void parsesLittleEndianExifOrientation() throws Exception {
+    ImageHeader header = ImageHeader.parse(ByteBuffer.wrap(jpeg(exif(false, 8), 10, 20)));
+    assertThat(header.getExifRotation()).isEqualTo(270);
+    assertThat(header.hasSize()).isTrue();
+  }
+
+  @Test public void jpegWithoutExifHasNoRotation() throws Exception {
+    ImageHeader header = ImageHeader.parse(ByteBuffer.wrap(jpeg(null, 3000, 2000)));
+    assertThat(header.width).isEqualTo(3000);
+    assertThat(header.height).isEqualTo(2000);
+    assertThat(header.getExifRotation()).isZero();
+  }
+
+  @Test public void truncatedJpegKeepsOrientationWithoutSize() throws Exception {
+    byte[] jpeg = jpeg(exif(true, 3), 640, 480);
+    byte[] truncated = new byte[jpeg.length - 19];
+    System.arraycopy(jpeg, 0, truncated, 0, truncated.length);
+    ImageHeader header = ImageHeader.parse(ByteBuffer.wrap(truncated));
+    assertThat(header.hasSize()).isFalse();
+    assertThat(header.getExifRotation()).isEqualTo(180);
+  }
+
+  @Test public void parsesEmbeddedThumbnail() throws Exception {
+    byte[] thumbnail = jpeg(null, 160, 120);
+    byte[] app1 = exifWithThumbnail(thumbnail);
+    byte[] jpeg = jpeg(app1, 4000, 3000);
+    ImageHeader header = ImageHeader.parse(ByteBuffer.wrap(jpeg));
+    assertThat(header.width).isEqualTo(4000);
+    assertThat(header.getExifRotation()).isEqualTo(90);
+    assertThat(header.hasThumbnail()).isTrue();
+    assertThat(header.thumbnailWidth).isEqualTo(160);
+    assertThat(header.thumbnailHeight).isEqualTo(120);
+    assertThat(header.thumbnailLength).isEqualTo(thumbnail.length);
+    assertThat(jpeg[header.thumbnailOffset] & 0xFF).isEqualTo(0xFF);
+    assertThat(jpeg[header.thumbnailOffset + 1] & 0xFF).isEqualTo(0xD8);
+  }
+
+  @Test public void thumbnailOutsideOfBufferIsIgnored() throws Exception {
+    byte[] app1 = exifWithThumbnail(jpeg(null, 160, 120));
+    // Claim a longer thumbnail than the segment holds.
+    app1[6 + 26 + 2 + 12 + 8 + 3] += 100;
+    ImageHeader header = ImageHeader.parse(ByteBuffer.wrap(jpeg(app1, 4000, 3000)));
+    assertThat(header.hasSize()).isTrue();
+    assertThat(header.hasThumbnail()).isFalse();
+  }
+
+  @Test public void parsesPngDimensions() throws Exception {
+    ByteBuffer png = ByteBuffer.allocate(33);
+    png.put(new byte[] {
+        (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n', 0, 0, 0, 13, 'I', 'H', 'D', 'R'
+    });
+    png.putInt(1024).putInt(768);
+    png.rewind();
+    ImageHeader header = ImageHeader.parse(png);
+    assertThat(header.width).isEqualTo(1024);
+    assertThat(header.height).isEqualTo(768);
+    assertThat(png.position()).isZero();
+  }
+
+  @Test public void unknownFormat() throws Exception {
+    ImageHeader header = ImageHeader.parse(ByteBuffer.wrap(new byte[] { 'G', 'I', 'F', '8' }));
+    assertThat(header).isSameAs(ImageHeader.UNKNOWN);
+    assertThat(ImageHeader.parse(ByteBuffer.allocate(0))).isSameAs(ImageHeader.UNKNOWN);
+  }
+
+  @Test public void readsHeaderFromMappedFile() throws Exception {
+    File file = File.createTempFile("picasso", ".jpg");
+    try {
+      FileOutputStream out = new FileOutputStream(file);
+      out.write(jpeg(exif(true, 6), 320, 240));
+      out.close();
+      RandomAccessFile raf = new RandomAccessFile(file, "r");
+      try {
+        ImageHeader header = FileBitmapHunter.readHeader(raf);
+        assertThat(header.width).isEqualTo(320);
+        assertThat(header.getExifRotation()).isEqualTo(90);
+        assertThat(raf.getFilePointer()).isZero();
+      } finally {
+        raf.close();
+      }
+    } finally {
+      file.delete();
+    }
+  }
+
+  /** A JPEG header with an optional APP1 segment followed by a baseline SOF0 segment. */
+  private static byte[] jpeg(byte[] app1, int width, int height) {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    out.write(0xFF);
+    out.write(0xD8);
+    // An APP0 segment to skip over.
+    writeSegment(out, 0xE0, new byte[] { 'J', 'F', 'I', 'F', 0, 1, 1, 0, 0, 1, 0, 1, 0, 0 });
+    if (app1 != null) {
+      writeSegment(out, 0xE1, app1);
+    }
+    writeSegment(out, 0xC0, new byte[] {
+        8, (byte) (height >> 8), (byte) height, (byte) (width >> 8), (byte) width, 3,
+        1, 0x22, 0, 2, 0x11, 1, 3, 0x11, 1
+    });
+    out.write(0xFF);
+    out.write(0xDA);
+    return out.toByteArray();
+  }
+
+  private static byte[] exif(boolean bigEndian, int orientation) {
+    ByteBuffer buffer = ByteBuffer.allocate(6 + 8 + 2 + 2 * 12 + 4);
+    buffer.order(bigEndian ? java.nio.ByteOrder.BIG_ENDIAN : java.nio.ByteOrder.LITTLE_ENDIAN);
+    buffer.put(new byte[] { 'E', 'x', 'i', 'f', 0, 0 });
+    buffer.put(bigEndian ? new byte[] { 'M', 'M' } : new byte[] { 'I', 'I' });
+    buffer.putShort((short) 42);
+    buffer.putInt(8);
+    buffer.putShort((short) 2);
+    // ImageWidth, then Orientation.
+    buffer.putShort((short) 0x0100).putShort((short) 4).putInt(1).putInt(640);
+    buffer.putShort((short) 0x0112).putShort((short) 3).putInt(1).putShort((short) orientation)
+        .putShort((short) 0);
+    buffer.putInt(0);
+    return buffer.array();
+  }
+
+  /** A big endian EXIF segment with orientation 6 and {@code thumbnail} referenced from IFD1. */
+  private static byte[] exifWithThumbnail(byte[] thumbnail) {
+    ByteBuffer buffer = ByteBuffer.allocate(6 + 56 + thumbnail.length);
+    buffer.put(new byte[] { 'E', 'x', 'i', 'f', 0, 0 });
+    buffer.put(new byte[] { 'M', 'M' });
+    buffer.putShort((short) 42);
+    buffer.putInt(8);
+    // IFD0 with the orientation, pointing to IFD1 at 26.
+    buffer.putShort((short) 1);
+    buffer.putShort((short) 0x0112).putShort((short) 3).putInt(1).putShort((short) 6)
+        .putShort((short) 0);
+    buffer.putInt(26);
+    // IFD1 with the thumbnail offset and length, the thumbnail follows at 56.
+    buffer.putShort((short) 2);
+    buffer.putShort((short) 0x0201).putShort((short) 4).putInt(1).putInt(56);
+    buffer.putShort((short) 0x0202).putShort((short) 4).putInt(1).putInt(thumbnail.length);
+    buffer.putInt(0);
+    buffer.put(thumbnail);
+    return buffer.array();
+  }
+
+  private static void writeSegment(ByteArrayOutputStream out, int marker, byte[] data) {
+    out.write(0xFF);
+    out.write(marker);
+    int length = data.length + 2;
+    out.write(length >> 8);
+    out.write(length & 0xFF);
+    out.write(data, 0, data.length);
+  }
+}
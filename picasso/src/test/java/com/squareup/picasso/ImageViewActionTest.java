@@ -15,6 +15,7 @@
  */
 package com.squareup.picasso;
 
+import android.R;
 import android.graphics.drawable.Drawable;
 import android.widget.ImageView;
 import org.junit.Test;
@@ -26,10 +27,10 @@ import org.robolectric.annotation.Config;
 import static com.squareup.picasso.Picasso.LoadedFrom.MEMORY;
 import static com.squareup.picasso.Picasso.RequestTransformer.IDENTITY;
 import static com.squareup.picasso.TestUtils.BITMAP_1;
-import static com.squareup.picasso.TestUtils.RESOURCE_ID_1;
 import static com.squareup.picasso.TestUtils.URI_KEY_1;
 import static com.squareup.picasso.TestUtils.mockCallback;
 import static com.squareup.picasso.TestUtils.mockImageViewTarget;
+import static com.squareup.picasso.TestUtils.mockPicasso;
 import static org.fest.assertions.api.Assertions.assertThat;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.mock;
@@ -78,7 +79,7 @@ public class ImageViewActionTest {
   public void invokesTargetAndCallbackSuccessIfTargetIsNotNull() throws Exception {
     Picasso picasso =
         new Picasso(Robolectric.application, mock(Dispatcher.class), Cache.NONE, null, IDENTITY,
-            mock(Stats.class), true);
+            mock(Stats.class), new Picasso.Options(), true);
     ImageView target = mockImageViewTarget();
     Callback callback = mockCallback();
     ImageViewAction request =
@@ -92,11 +93,11 @@ public class ImageViewActionTest {
   public void invokesTargetAndCallbackErrorIfTargetIsNotNullWithErrorResourceId() throws Exception {
     ImageView target = mockImageViewTarget();
     Callback callback = mockCallback();
-    Picasso mock = mock(Picasso.class);
-    ImageViewAction request =
-        new ImageViewAction(mock, target, null, false, false, RESOURCE_ID_1, null, null, callback);
+    Picasso mock = mockPicasso();
+    ImageViewAction request = new ImageViewAction(mock, target, null, false, false,
+        R.drawable.picture_frame, null, null, callback);
     request.error();
-    verify(target).setImageResource(RESOURCE_ID_1);
+    verify(target).setImageDrawable(any(Drawable.class));
     verify(callback).onError();
   }
 
@@ -104,11 +105,11 @@ public class ImageViewActionTest {
   public void invokesErrorIfTargetIsNotNullWithErrorResourceId() throws Exception {
     ImageView target = mockImageViewTarget();
     Callback callback = mockCallback();
-    Picasso mock = mock(Picasso.class);
-    ImageViewAction request =
-        new ImageViewAction(mock, target, null, false, false, RESOURCE_ID_1, null, null, callback);
+    Picasso mock = mockPicasso();
+    ImageViewAction request = new ImageViewAction(mock, target, null, false, false,
+        R.drawable.picture_frame, null, null, callback);
     request.error();
-    verify(target).setImageResource(RESOURCE_ID_1);
+    verify(target).setImageDrawable(any(Drawable.class));
     verify(callback).onError();
   }
 
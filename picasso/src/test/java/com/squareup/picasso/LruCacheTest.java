@@ -149,6 +149,40 @@ public class LruCacheTest {
     assertThat(cache.map).isEmpty();
   }
 
+  @Test public void resizeEvictsAndLimitsFutureSets() {
+    LruCache cache = new LruCache(4);
+    cache.set("a", A);
+    cache.set("b", B);
+    cache.set("c", C);
+    cache.resize(2);
+    assertThat(cache.maxSize()).isEqualTo(2);
+    assertSnapshot(cache, "b", B, "c", C);
+    cache.set("d", D);
+    assertSnapshot(cache, "c", C, "d", D);
+    cache.resize(4);
+    cache.set("e", E);
+    assertSnapshot(cache, "c", C, "d", D, "e", E);
+  }
+
+  @Test public void resizeDoesNotAllowZeroCacheSize() {
+    LruCache cache = new LruCache(3);
+    try {
+      cache.resize(0);
+      fail();
+    } catch (IllegalArgumentException expected) {
+    }
+  }
+
+  @Test public void trimToSizeKeepsMaxSize() {
+    LruCache cache = new LruCache(4);
+    cache.set("a", A);
+    cache.set("b", B);
+    cache.set("c", C);
+    cache.trimToSize(1);
+    assertSnapshot(cache, "c", C);
+    assertThat(cache.maxSize()).isEqualTo(4);
+  }
+
   private void assertHit(LruCache cache, String key, Bitmap value) {
     assertThat(cache.get(key)).isEqualTo(value);
     expectedHitCount++;
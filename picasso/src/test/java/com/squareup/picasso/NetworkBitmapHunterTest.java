@@ -20,21 +20,26 @@ import android.graphics.Bitmap;
 import android.net.NetworkInfo;
 import android.net.Uri;
 import java.io.IOException;
+import java.io.InputStream;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Mock;
+import org.robolectric.Robolectric;
 import org.robolectric.RobolectricTestRunner;
 import org.robolectric.annotation.Config;
 
 import static android.graphics.Bitmap.Config.ARGB_8888;
+import static com.squareup.picasso.Picasso.RequestTransformer.IDENTITY;
 import static com.squareup.picasso.TestUtils.URI_1;
 import static com.squareup.picasso.TestUtils.URI_KEY_1;
 import static com.squareup.picasso.TestUtils.mockNetworkInfo;
 import static org.fest.assertions.api.Assertions.assertThat;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Matchers.anyInt;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.mockito.MockitoAnnotations.initMocks;
@@ -72,6 +77,50 @@ public class NetworkBitmapHunterTest {
     verify(downloader).load(URI_1, true);
   }
 
+  @Test public void warmStartLoadsFromLocalCacheOnlyUntilJoined() throws Exception {
+    Action warmStart = new WarmStartAction(picasso, new Request.Builder(URI_1).build(), URI_KEY_1);
+    NetworkBitmapHunter hunter =
+        new NetworkBitmapHunter(picasso, dispatcher, cache, stats, warmStart, downloader);
+    hunter.decode(warmStart.getData());
+    verify(downloader).load(URI_1, true);
+    assertThat(hunter.shouldRetry(false, null)).isFalse();
+
+    hunter.attach(TestUtils.mockAction(URI_KEY_1, URI_1));
+    assertThat(hunter.shouldRetry(false, null)).isTrue();
+    hunter.decode(warmStart.getData());
+    verify(downloader).load(URI_1, false);
+  }
+
+  @Test public void decodeWhenCancelledClosesStreamWithoutDecoding() throws Exception {
+    InputStream stream = mock(InputStream.class);
+    when(downloader.load(any(Uri.class), anyBoolean())).thenReturn(
+        new Downloader.Response(stream, false));
+    Action action = TestUtils.mockAction(URI_KEY_1, URI_1);
+    NetworkBitmapHunter hunter =
+        new NetworkBitmapHunter(picasso, dispatcher, cache, stats, action, downloader);
+    hunter.cancelled = true;
+    assertThat(hunter.decode(action.getData())).isNull();
+    verify(stream).close();
+    verify(stream, never()).read(any(byte[].class), anyInt(), anyInt());
+  }
+
+  @Test public void decodeWithContentLengthAboveMaxDownloadSizeSkipsStream() throws Exception {
+    Picasso.Options options = new Picasso.Options();
+    options.maxDownloadSize = 1024;
+    Picasso picasso = new Picasso(Robolectric.application, dispatcher, cache, null, IDENTITY, stats,
+        options, false);
+    InputStream stream = mock(InputStream.class);
+    when(downloader.load(any(Uri.class), anyBoolean())).thenReturn(
+        new Downloader.Response(stream, false, 2048));
+    Action action = TestUtils.mockAction(URI_KEY_1, URI_1);
+    NetworkBitmapHunter hunter =
+        new NetworkBitmapHunter(picasso, dispatcher, cache, stats, action, downloader);
+    assertThat(hunter.decode(action.getData())).isNull();
+    verify(stream).close();
+    verify(stream, never()).read(any(byte[].class), anyInt(), anyInt());
+    picasso.shutdown();
+  }
+
   @Test public void shouldRetryTwiceWithAirplaneModeOffAndNoNetworkInfo() throws Exception {
     Action action = TestUtils.mockAction(URI_KEY_1, URI_1);
     NetworkBitmapHunter hunter =
@@ -20,6 +20,7 @@ import android.net.Uri;
 import com.google.mockwebserver.MockResponse;
 import com.google.mockwebserver.MockWebServer;
 import com.google.mockwebserver.RecordedRequest;
+import com.squareup.okhttp.OkHttpClient;
 import java.io.IOException;
 import java.net.HttpURLConnection;
 import org.junit.After;
@@ -58,6 +59,19 @@ public class OkHttpDownloaderTest {
     server.shutdown();
   }
 
+  @Test public void contentLengthHeaderSetsResponseValue() throws Exception {
+    server.enqueue(new MockResponse().setBody("hello"));
+    assertThat(loader.load(URL, false).getContentLength()).isEqualTo(5);
+
+    server.enqueue(new MockResponse().setChunkedBody("hello", 2));
+    assertThat(loader.load(URL, false).getContentLength()).isEqualTo(-1);
+  }
+
+  @Test public void hasDiskCacheOnlyWithResponseCache() throws Exception {
+    assertThat(loader.hasDiskCache()).isTrue();
+    assertThat(new OkHttpDownloader(new OkHttpClient()).hasDiskCache()).isFalse();
+  }
+
   @Test public void nonTwoHundredReturnsNull() throws Exception {
     server.enqueue(new MockResponse().setResponseCode(302));
     server.enqueue(new MockResponse().setResponseCode(404));
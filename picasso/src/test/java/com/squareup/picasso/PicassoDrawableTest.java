@@ -19,8 +19,20 @@ import android.content.Context;
 import android.graphics.Bitmap;
 import android.graphics.drawable.ColorDrawable;
 import android.graphics.drawable.Drawable;
+import android.widget.ImageView;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.MethodInsnNode;
+import org.objectweb.asm.tree.MethodNode;
 import org.robolectric.Robolectric;
 import org.robolectric.RobolectricTestRunner;
 import org.robolectric.annotation.Config;
@@ -30,7 +42,14 @@ import static android.graphics.Color.RED;
 import static com.squareup.picasso.Picasso.LoadedFrom.DISK;
 import static com.squareup.picasso.Picasso.LoadedFrom.MEMORY;
 import static com.squareup.picasso.TestUtils.BITMAP_1;
+import static com.squareup.picasso.TestUtils.BITMAP_2;
+import static com.squareup.picasso.TestUtils.mockImageViewTarget;
 import static org.fest.assertions.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+import static org.objectweb.asm.Opcodes.ANEWARRAY;
+import static org.objectweb.asm.Opcodes.MULTIANEWARRAY;
+import static org.objectweb.asm.Opcodes.NEW;
+import static org.objectweb.asm.Opcodes.NEWARRAY;
 
 @RunWith(RobolectricTestRunner.class)
 @Config(manifest = Config.NONE)
@@ -38,24 +57,109 @@ public class PicassoDrawableTest {
   private final Context context = Robolectric.application;
   private final Drawable placeholder = new ColorDrawable(RED);
 
+  @Before public void setUp() {
+    PicassoDrawable.clearRecycled();
+  }
+
   @Test public void createWithNoPlaceholderAnimation() {
     PicassoDrawable pd = new PicassoDrawable(context, null, BITMAP_1, DISK, false, false);
-    assertThat(pd.image.getBitmap()).isSameAs(BITMAP_1);
+    assertThat(pd.bitmap).isSameAs(BITMAP_1);
     assertThat(pd.placeholder).isNull();
     assertThat(pd.animating).isTrue();
   }
 
   @Test public void createWithPlaceholderAnimation() {
     PicassoDrawable pd = new PicassoDrawable(context, placeholder, BITMAP_1, DISK, false, false);
-    assertThat(pd.image.getBitmap()).isSameAs(BITMAP_1);
+    assertThat(pd.bitmap).isSameAs(BITMAP_1);
     assertThat(pd.placeholder).isSameAs(placeholder);
     assertThat(pd.animating).isTrue();
   }
 
   @Test public void createWithBitmapCacheHit() {
     PicassoDrawable pd = new PicassoDrawable(context, placeholder, BITMAP_1, MEMORY, false, false);
-    assertThat(pd.image.getBitmap()).isSameAs(BITMAP_1);
+    assertThat(pd.bitmap).isSameAs(BITMAP_1);
     assertThat(pd.placeholder).isNull();
     assertThat(pd.animating).isFalse();
   }
+
+  @Test public void replacedDrawableIsRecycledForNextDelivery() {
+    PicassoDrawable previous = new PicassoDrawable(context, null, BITMAP_1, MEMORY, false, false);
+    ImageView target = mockImageViewTarget();
+    when(target.getDrawable()).thenReturn(previous);
+    PicassoDrawable.setPlaceholder(target, null, 0, placeholder, true);
+    assertThat(previous.bitmap).isNull();
+
+    PicassoDrawable pd = PicassoDrawable.obtain(context, placeholder, BITMAP_2, DISK, false, false);
+    assertThat(pd).isSameAs(previous);
+    assertThat(pd.bitmap).isSameAs(BITMAP_2);
+    assertThat(pd.placeholder).isSameAs(placeholder);
+    assertThat(pd.animating).isTrue();
+    assertThat(PicassoDrawable.recycledCount).isZero();
+  }
+
+  @Test public void drawableFadedFromIsNotRecycled() {
+    PicassoDrawable previous = new PicassoDrawable(context, null, BITMAP_1, MEMORY, false, false);
+    ImageView target = mockImageViewTarget();
+    when(target.getDrawable()).thenReturn(previous);
+    PicassoDrawable.setBitmap(target, context, BITMAP_2, DISK, false, false, true);
+    assertThat(previous.bitmap).isSameAs(BITMAP_1);
+    assertThat(PicassoDrawable.recycledCount).isZero();
+  }
+
+  @Test public void replacedDrawableIsKeptUnlessRecyclingIsEnabled() {
+    PicassoDrawable previous = new PicassoDrawable(context, null, BITMAP_1, MEMORY, false, false);
+    ImageView target = mockImageViewTarget();
+    when(target.getDrawable()).thenReturn(previous);
+    PicassoDrawable.setPlaceholder(target, null, 0, placeholder, false);
+    PicassoDrawable.setBitmap(target, context, BITMAP_2, MEMORY, false, false, false);
+    assertThat(previous.bitmap).isSameAs(BITMAP_1);
+    assertThat(PicassoDrawable.recycledCount).isZero();
+  }
+
+  /**
+   * Shadowed framework calls allocate on the JVM, so instead of counting bytes this checks that
+   * neither draw() nor any method of the class it calls contains an allocating instruction.
+   */
+  @Test public void drawDoesNotAllocate() throws Exception {
+    InputStream in = PicassoDrawable.class.getClassLoader()
+        .getResourceAsStream(PicassoDrawable.class.getName().replace('.', '/') + ".class");
+    ClassNode classNode = new ClassNode();
+    try {
+      new ClassReader(in).accept(classNode, 0);
+    } finally {
+      in.close();
+    }
+    List<String> allocations = new ArrayList<String>();
+    findAllocations(classNode, "draw", "(Landroid/graphics/Canvas;)V", new HashSet<String>(),
+        allocations);
+    assertThat(allocations).isEmpty();
+  }
+
+  private static void findAllocations(ClassNode classNode, String name, String desc,
+      Set<String> visited, List<String> allocations) {
+    if (!visited.add(name + desc)) {
+      return;
+    }
+    for (Object m : classNode.methods) {
+      MethodNode method = (MethodNode) m;
+      if (!method.name.equals(name) || !method.desc.equals(desc)) {
+        continue;
+      }
+      for (AbstractInsnNode insn = method.instructions.getFirst(); insn != null;
+          insn = insn.getNext()) {
+        int opcode = insn.getOpcode();
+        if (opcode == NEW || opcode == NEWARRAY || opcode == ANEWARRAY
+            || opcode == MULTIANEWARRAY) {
+          allocations.add(name + " allocates");
+        } else if (insn instanceof MethodInsnNode) {
+          MethodInsnNode call = (MethodInsnNode) insn;
+          if (call.owner.equals(classNode.name)) {
+            findAllocations(classNode, call.name, call.desc, visited, allocations);
+          } else if (call.name.equals("valueOf") && call.owner.startsWith("java/lang/")) {
+            allocations.add(name + " boxes");
+          }
+        }
+      }
+    }
+  }
 }
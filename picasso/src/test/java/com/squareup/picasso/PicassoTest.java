@@ -15,15 +15,22 @@
  */
 package com.squareup.picasso;
 
+import android.content.ComponentCallbacks;
+import android.content.ComponentCallbacks2;
 import android.content.Context;
 import android.graphics.Bitmap;
+import android.os.IBinder;
 import android.widget.ImageView;
+import java.io.File;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.ExecutorService;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.robolectric.Robolectric;
 import org.robolectric.RobolectricTestRunner;
@@ -33,7 +40,9 @@ import static com.squareup.picasso.Picasso.Listener;
 import static com.squareup.picasso.Picasso.LoadedFrom.MEMORY;
 import static com.squareup.picasso.TestUtils.BITMAP_1;
 import static com.squareup.picasso.TestUtils.URI_1;
+import static com.squareup.picasso.TestUtils.URI_2;
 import static com.squareup.picasso.TestUtils.URI_KEY_1;
+import static com.squareup.picasso.TestUtils.URI_KEY_2;
 import static com.squareup.picasso.TestUtils.mockAction;
 import static com.squareup.picasso.TestUtils.mockCanceledAction;
 import static com.squareup.picasso.TestUtils.mockDeferredRequestCreator;
@@ -43,7 +52,10 @@ import static com.squareup.picasso.TestUtils.mockTarget;
 import static org.fest.assertions.api.Assertions.assertThat;
 import static org.fest.assertions.api.Assertions.fail;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyLong;
 import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
@@ -54,6 +66,7 @@ import static org.mockito.MockitoAnnotations.initMocks;
 
 @RunWith(RobolectricTestRunner.class) @Config(manifest = Config.NONE)
 public class PicassoTest {
+  private static final int TAG_ID = 0x7f0a0001;
 
   @Mock Context context;
   @Mock Downloader downloader;
@@ -67,7 +80,136 @@ public class PicassoTest {
 
   @Before public void setUp() {
     initMocks(this);
-    picasso = new Picasso(context, dispatcher, cache, listener, transformer, stats, false);
+    picasso = new Picasso(context, dispatcher, cache, listener, transformer, stats,
+        new Picasso.Options(), false);
+  }
+
+  @Test public void registersForMemoryCallbacksAndUnregistersOnShutdown() throws Exception {
+    ArgumentCaptor<ComponentCallbacks> callbacksCaptor =
+        ArgumentCaptor.forClass(ComponentCallbacks.class);
+    verify(context).registerComponentCallbacks(callbacksCaptor.capture());
+    picasso.shutdown();
+    verify(context).unregisterComponentCallbacks(callbacksCaptor.getValue());
+  }
+
+  @Test public void trimMemoryWhileRunningTrimsCacheContents() throws Exception {
+    TinyLfuCache resizableCache = mock(TinyLfuCache.class);
+    when(resizableCache.maxSize()).thenReturn(1000);
+    when(resizableCache.size()).thenReturn(800);
+    Picasso picasso = new Picasso(context, dispatcher, resizableCache, listener, transformer, stats,
+        new Picasso.Options(), false);
+    picasso.trimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW);
+    verify(resizableCache).trimToSize(400);
+    verify(resizableCache, never()).resize(anyInt());
+    assertThat(picasso.cacheTrimmed).isFalse();
+  }
+
+  @Test public void trimMemoryInBackgroundResizesCacheUntilAttachedViewIsBound() throws Exception {
+    TinyLfuCache resizableCache = mock(TinyLfuCache.class);
+    when(resizableCache.maxSize()).thenReturn(1000);
+    Picasso picasso = new Picasso(context, dispatcher, resizableCache, listener, transformer, stats,
+        new Picasso.Options(), false);
+    picasso.trimMemory(ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN);
+    verify(resizableCache).resize(500);
+    picasso.trimMemory(ComponentCallbacks2.TRIM_MEMORY_BACKGROUND);
+    verify(resizableCache).resize(250);
+    picasso.quickMemoryCacheCheck(URI_KEY_1);
+    picasso.enqueueAndSubmit(mockAction(URI_KEY_1, URI_1, mockTarget()));
+    ImageView detached = mockImageViewTarget();
+    picasso.restoreCacheSize(detached);
+    verify(resizableCache, never()).resize(1000);
+    assertThat(picasso.cacheTrimmed).isTrue();
+    ImageView attached = mockImageViewTarget();
+    when(attached.getWindowToken()).thenReturn(mock(IBinder.class));
+    picasso.restoreCacheSize(attached);
+    verify(resizableCache).resize(1000);
+    assertThat(picasso.cacheTrimmed).isFalse();
+  }
+
+  @Test public void trimMemoryWhileRunningRestoresCacheSize() throws Exception {
+    TinyLfuCache resizableCache = mock(TinyLfuCache.class);
+    when(resizableCache.maxSize()).thenReturn(1000);
+    Picasso picasso = new Picasso(context, dispatcher, resizableCache, listener, transformer, stats,
+        new Picasso.Options(), false);
+    picasso.trimMemory(ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN);
+    verify(resizableCache).resize(500);
+    picasso.trimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW);
+    verify(resizableCache).resize(1000);
+    assertThat(picasso.cacheTrimmed).isFalse();
+  }
+
+  @Test public void trimMemoryCompleteClearsCache() throws Exception {
+    TinyLfuCache resizableCache = mock(TinyLfuCache.class);
+    when(resizableCache.maxSize()).thenReturn(1000);
+    Picasso picasso = new Picasso(context, dispatcher, resizableCache, listener, transformer, stats,
+        new Picasso.Options(), false);
+    picasso.trimMemory(ComponentCallbacks2.TRIM_MEMORY_COMPLETE);
+    verify(resizableCache).clear();
+    verify(resizableCache).resize(125);
+  }
+
+  @Test public void trimMemoryResizesLruCache() throws Exception {
+    LruCache lruCache = new LruCache(1000);
+    Picasso picasso = new Picasso(context, dispatcher, lruCache, listener, transformer, stats,
+        new Picasso.Options(), false);
+    picasso.trimMemory(ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN);
+    assertThat(lruCache.maxSize()).isEqualTo(500);
+    picasso.trimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE);
+    assertThat(lruCache.maxSize()).isEqualTo(1000);
+  }
+
+  @Test public void trimMemoryOnlyClearsOtherCaches() throws Exception {
+    when(cache.maxSize()).thenReturn(1000);
+    picasso = new Picasso(context, dispatcher, cache, listener, transformer, stats,
+        new Picasso.Options(), false);
+    picasso.trimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW);
+    picasso.trimMemory(ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN);
+    verify(cache, never()).clear();
+    assertThat(picasso.cacheTrimmed).isFalse();
+    picasso.trimMemory(ComponentCallbacks2.TRIM_MEMORY_COMPLETE);
+    verify(cache).clear();
+  }
+
+  @Test public void trimMemoryOnceHiddenSavesWarmStart() throws Exception {
+    WarmStart warmStart = new WarmStart(File.createTempFile("warm-start", null), 10);
+    Picasso.Options options = new Picasso.Options();
+    options.warmStart = warmStart;
+    Picasso picasso = new Picasso(context, dispatcher, cache, listener, transformer, stats, options,
+        false);
+    picasso.trimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW);
+    verify(dispatcher, never()).dispatchWarmStartSave(warmStart);
+    picasso.trimMemory(ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN);
+    verify(dispatcher).dispatchWarmStartSave(warmStart);
+  }
+
+  @Test public void quickMemoryCheckHitMarksWarmStartEntry() throws Exception {
+    File file = File.createTempFile("warm-start", null);
+    WarmStart warmStart = new WarmStart(file, 1);
+    Picasso.Options options = new Picasso.Options();
+    options.warmStart = warmStart;
+    Picasso picasso = new Picasso(context, dispatcher, cache, listener, transformer, stats, options,
+        false);
+    warmStart.put(URI_KEY_1, new Request.Builder(URI_1).build());
+    warmStart.put(URI_KEY_2, new Request.Builder(URI_2).build());
+    when(cache.get(URI_KEY_2)).thenReturn(BITMAP_1);
+    picasso.quickMemoryCacheCheck(URI_KEY_2);
+    warmStart.save();
+    List<Request> saved = warmStart.load();
+    assertThat(saved).hasSize(1);
+    assertThat(saved.get(0).uri).isEqualTo(URI_2);
+    picasso.shutdown();
+  }
+
+  @Test public void shutdownSavesWarmStartBeforeDispatcherStops() throws Exception {
+    WarmStart warmStart = new WarmStart(File.createTempFile("warm-start", null), 1);
+    Picasso.Options options = new Picasso.Options();
+    options.warmStart = warmStart;
+    Picasso picasso = new Picasso(context, dispatcher, cache, listener, transformer, stats, options,
+        false);
+    picasso.shutdown();
+    InOrder inOrder = inOrder(dispatcher);
+    inOrder.verify(dispatcher).dispatchWarmStartSave(warmStart);
+    inOrder.verify(dispatcher).shutdown();
   }
 
   @Test public void submitWithNullTargetInvokesDispatcher() throws Exception {
@@ -85,6 +227,215 @@ public class PicassoTest {
     verify(dispatcher).dispatchSubmit(action);
   }
 
+  @Test public void submitWithTagTrackedTargetStoresActionOnView() throws Exception {
+    Picasso.Options options = new Picasso.Options();
+    options.targetTagId = TAG_ID;
+    Picasso picasso = new Picasso(context, dispatcher, cache, listener, transformer, stats, options,
+        false);
+    ImageView target = new ImageView(Robolectric.application);
+    Action action1 = mockAction(URI_KEY_1, URI_1, target);
+    Action action2 = mockAction(URI_KEY_1, URI_1, target);
+    picasso.enqueueAndSubmit(action1);
+    assertThat(target.getTag(TAG_ID)).isSameAs(action1);
+    picasso.enqueueAndSubmit(action2);
+    assertThat(target.getTag(TAG_ID)).isSameAs(action2);
+    assertThat(picasso.targetToAction).isEmpty();
+    verify(action1).cancel();
+    verify(dispatcher).dispatchCancel(action1);
+    verify(dispatcher).dispatchSubmit(action2);
+  }
+
+  @Test public void completeClearsTagOfTagTrackedTarget() throws Exception {
+    Picasso.Options options = new Picasso.Options();
+    options.targetTagId = TAG_ID;
+    Picasso picasso = new Picasso(context, dispatcher, cache, listener, transformer, stats, options,
+        false);
+    ImageView target = new ImageView(Robolectric.application);
+    Action action = mockAction(URI_KEY_1, URI_1, target);
+    picasso.enqueueAndSubmit(action);
+    BitmapHunter hunter = mockHunter(URI_KEY_1, BITMAP_1, false);
+    when(hunter.getActions()).thenReturn(Arrays.asList(action));
+    when(hunter.getLoadedFrom()).thenReturn(MEMORY);
+    picasso.complete(hunter);
+    assertThat(target.getTag(TAG_ID)).isNull();
+    verify(action).complete(BITMAP_1, MEMORY);
+  }
+
+  @Test public void deferOnTagTrackedTargetReplacesAndCancels() throws Exception {
+    Picasso.Options options = new Picasso.Options();
+    options.targetTagId = TAG_ID;
+    Picasso picasso = new Picasso(context, dispatcher, cache, listener, transformer, stats, options,
+        false);
+    ImageView target = new ImageView(Robolectric.application);
+    Action action = mockAction(URI_KEY_1, URI_1, target);
+    DeferredRequestCreator deferredRequestCreator = mockDeferredRequestCreator();
+    picasso.enqueueAndSubmit(action);
+    picasso.defer(target, deferredRequestCreator);
+    assertThat(target.getTag(TAG_ID)).isSameAs(deferredRequestCreator);
+    assertThat(picasso.targetToDeferredRequestCreator).hasSize(1);
+    verify(dispatcher).dispatchCancel(action);
+    picasso.cancelRequest(target);
+    assertThat(target.getTag(TAG_ID)).isNull();
+    verify(deferredRequestCreator).cancel();
+    assertThat(picasso.targetToDeferredRequestCreator).isEmpty();
+  }
+
+  @Test public void submitWithTagTrackingCancelsCollectedRequests() throws Exception {
+    Picasso.Options options = new Picasso.Options();
+    options.targetTagId = TAG_ID;
+    Picasso picasso = new Picasso(context, dispatcher, cache, listener, transformer, stats, options,
+        false);
+    ImageViewAction collected =
+        new ImageViewAction(picasso, new ImageView(Robolectric.application), null, false, false, 0,
+            null, URI_KEY_1, null);
+    collected.target.enqueue();
+    Action action = mockAction(URI_KEY_1, URI_1, new ImageView(Robolectric.application));
+    picasso.enqueueAndSubmit(action);
+    assertThat(collected.isCancelled()).isTrue();
+    verify(dispatcher).dispatchCancel(collected);
+    verify(dispatcher).dispatchSubmit(action);
+  }
+
+  @Test public void batchCollectsRequestsUntilSubmitted() throws Exception {
+    ImageView target = mockImageViewTarget();
+    Action existing = mockAction(URI_KEY_1, URI_1, target);
+    picasso.enqueueAndSubmit(existing);
+    Robolectric.pauseMainLooper();
+    try {
+      Picasso.Batch batch = picasso.batch();
+      Action replaced = mockAction(URI_KEY_1, URI_1, target);
+      Action action = mockAction(URI_KEY_1, URI_1, target);
+      picasso.enqueueAndSubmit(replaced);
+      picasso.enqueueAndSubmit(action);
+      verify(dispatcher, never()).dispatchCancel(any(Action.class));
+      verify(dispatcher, never()).dispatchSubmit(replaced);
+      verify(replaced).cancel();
+      batch.submit();
+      assertThat(batch.cancels).containsExactly(existing);
+      assertThat(batch.submits).containsExactly(action);
+      assertThat(picasso.batch).isNull();
+      verify(dispatcher).dispatchBatch(batch);
+      Robolectric.runUiThreadTasks();
+      verify(dispatcher).dispatchBatch(batch);
+    } finally {
+      Robolectric.unPauseMainLooper();
+    }
+  }
+
+  @Test public void abandonedBatchIsSubmittedAfterCurrentMessage() throws Exception {
+    Robolectric.pauseMainLooper();
+    try {
+      Picasso.Batch batch = picasso.batch();
+      Action collected = mockAction(URI_KEY_1, URI_1, mockImageViewTarget());
+      picasso.enqueueAndSubmit(collected);
+      // The bind pass threw before the batch was submitted.
+      verify(dispatcher, never()).dispatchBatch(any(Picasso.Batch.class));
+      Robolectric.runUiThreadTasks();
+      verify(dispatcher).dispatchBatch(batch);
+      assertThat(batch.submits).containsExactly(collected);
+    } finally {
+      Robolectric.unPauseMainLooper();
+    }
+    Action later = mockAction(URI_KEY_2, URI_2, mockImageViewTarget());
+    picasso.enqueueAndSubmit(later);
+    verify(dispatcher).dispatchSubmit(later);
+  }
+
+  @Test public void batchOffMainThreadThrows() throws Exception {
+    final Exception[] thrown = new Exception[1];
+    Thread thread = new Thread(new Runnable() {
+      @Override public void run() {
+        try {
+          picasso.batch();
+        } catch (IllegalStateException e) {
+          thrown[0] = e;
+        }
+      }
+    });
+    thread.start();
+    thread.join();
+    assertThat(thrown[0]).isNotNull();
+    assertThat(picasso.batch).isNull();
+  }
+
+  @Test public void emptyBatchIsNotDispatched() throws Exception {
+    Robolectric.pauseMainLooper();
+    try {
+      picasso.batch().submit();
+      Robolectric.runUiThreadTasks();
+      verifyZeroInteractions(dispatcher);
+    } finally {
+      Robolectric.unPauseMainLooper();
+    }
+  }
+
+  @Test public void batchMisuseThrows() throws Exception {
+    Robolectric.pauseMainLooper();
+    try {
+      Picasso.Batch batch = picasso.batch();
+      try {
+        picasso.batch();
+        fail("Starting a second batch should throw exception.");
+      } catch (IllegalStateException expected) {
+      }
+      batch.submit();
+      // Submitting again, e.g. from a finally block, does nothing.
+      batch.submit();
+      verify(dispatcher, never()).dispatchBatch(batch);
+    } finally {
+      Robolectric.unPauseMainLooper();
+    }
+  }
+
+  @Test public void networkAwareTransformerReceivesNetworkType() throws Exception {
+    Picasso.NetworkAwareRequestTransformer transformer =
+        mock(Picasso.NetworkAwareRequestTransformer.class);
+    Picasso picasso = new Picasso(context, dispatcher, cache, listener, transformer, stats,
+        new Picasso.Options(), false);
+    Request request = new Request.Builder(URI_1).build();
+    when(transformer.transformRequest(request, dispatcher.networkType)).thenReturn(request);
+    assertThat(picasso.transformRequest(request)).isSameAs(request);
+    verify(transformer).transformRequest(request, dispatcher.networkType);
+    verify(transformer, never()).transformRequest(request);
+  }
+
+  @Test public void asyncTransformerLeavesRequestsToDispatcher() throws Exception {
+    Picasso.Options options = new Picasso.Options();
+    options.asyncRequestTransformer = true;
+    Picasso picasso = new Picasso(context, dispatcher, cache, listener, transformer, stats, options,
+        false);
+    Request request = new Request.Builder(URI_1).build();
+    assertThat(picasso.transformRequestOnSubmit(request)).isSameAs(request);
+    verifyZeroInteractions(transformer);
+    Action action = new FetchAction(picasso, request, false, URI_KEY_1);
+    assertThat(action.transformPending).isTrue();
+  }
+
+  @Test public void asyncTransformerQuickMemoryCheckFindsTransformedKey() throws Exception {
+    Picasso.Options options = new Picasso.Options();
+    options.asyncRequestTransformer = true;
+    Picasso picasso = new Picasso(context, dispatcher, cache, listener, transformer, stats, options,
+        false);
+    assertThat(picasso.quickMemoryCacheCheck(URI_KEY_1)).isNull();
+    picasso.putTransformedKey(URI_KEY_1, URI_KEY_2);
+    when(cache.get(URI_KEY_2)).thenReturn(BITMAP_1);
+    assertThat(picasso.quickMemoryCacheCheck(URI_KEY_1)).isSameAs(BITMAP_1);
+    verify(stats).dispatchCacheHit();
+    verifyZeroInteractions(transformer);
+  }
+
+  @Test public void completeFromCacheDeliversOrResubmits() throws Exception {
+    Action action = mockAction(URI_KEY_1, URI_1, mockImageViewTarget());
+    when(cache.get(URI_KEY_1)).thenReturn(BITMAP_1);
+    picasso.completeFromCache(action);
+    verify(action).complete(BITMAP_1, MEMORY);
+
+    Action evicted = mockAction(URI_KEY_2, URI_2, mockImageViewTarget());
+    picasso.completeFromCache(evicted);
+    verify(evicted, never()).complete(any(Bitmap.class), any(Picasso.LoadedFrom.class));
+    verify(dispatcher).dispatchSubmit(evicted);
+  }
+
   @Test public void quickMemoryCheckReturnsBitmapIfInCache() throws Exception {
     when(cache.get(URI_KEY_1)).thenReturn(BITMAP_1);
     Bitmap cached = picasso.quickMemoryCacheCheck(URI_KEY_1);
@@ -96,6 +447,23 @@ public class PicassoTest {
     Bitmap cached = picasso.quickMemoryCacheCheck(URI_KEY_1);
     assertThat(cached).isNull();
     verify(stats).dispatchCacheMiss();
+    verify(dispatcher, never()).dispatchEvent(any(EventListener.Pending.class));
+  }
+
+  @Test public void quickMemoryCheckForwardsEventToDispatcher() throws Exception {
+    EventListener eventListener = mock(EventListener.class);
+    Picasso.Options options = new Picasso.Options();
+    options.eventListener = eventListener;
+    Picasso picasso = new Picasso(context, dispatcher, cache, listener, transformer, stats, options,
+        false);
+    when(cache.get(URI_KEY_1)).thenReturn(BITMAP_1);
+    picasso.quickMemoryCacheCheck(URI_KEY_1);
+    ArgumentCaptor<EventListener.Pending> captor =
+        ArgumentCaptor.forClass(EventListener.Pending.class);
+    verify(dispatcher).dispatchEvent(captor.capture());
+    verifyZeroInteractions(eventListener);
+    captor.getValue().deliver();
+    verify(eventListener).cacheHit(eq(URI_KEY_1), anyLong());
   }
 
   @Test public void completeInvokesSuccessOnAllSuccessfulRequests() throws Exception {
@@ -176,6 +544,16 @@ public class PicassoTest {
     assertThat(picasso.targetToDeferredRequestCreator).hasSize(1);
   }
 
+  @Test public void deferCancelsExistingRequest() throws Exception {
+    ImageView target = mockImageViewTarget();
+    Action action = mockAction(URI_KEY_1, URI_1, target);
+    picasso.enqueueAndSubmit(action);
+    picasso.defer(target, mockDeferredRequestCreator());
+    assertThat(picasso.targetToAction).isEmpty();
+    verify(action).cancel();
+    verify(dispatcher).dispatchCancel(action);
+  }
+
   @Test public void shutdown() throws Exception {
     picasso.shutdown();
     verify(cache).clear();
@@ -211,6 +589,19 @@ public class PicassoTest {
     assertThat(picasso.targetToDeferredRequestCreator).isEmpty();
   }
 
+  @Test public void shutdownCancelsTagTrackedDeferredRequests() throws Exception {
+    Picasso.Options options = new Picasso.Options();
+    options.targetTagId = TAG_ID;
+    Picasso picasso = new Picasso(context, dispatcher, cache, listener, transformer, stats, options,
+        false);
+    DeferredRequestCreator deferredRequestCreator = mockDeferredRequestCreator();
+    ImageView target = new ImageView(Robolectric.application);
+    picasso.defer(target, deferredRequestCreator);
+    picasso.shutdown();
+    verify(deferredRequestCreator).cancel();
+    assertThat(picasso.targetToDeferredRequestCreator).isEmpty();
+  }
+
   @Test public void whenTransformRequestReturnsNullThrows() throws Exception {
     try {
       when(transformer.transformRequest(any(Request.class))).thenReturn(null);
@@ -315,6 +706,72 @@ public class PicassoTest {
     }
   }
 
+  @Test public void builderInvalidDecodeMemoryBudget() throws Exception {
+    try {
+      new Picasso.Builder(context).decodeMemoryBudget(0);
+      fail("Non-positive decode memory budget should throw exception.");
+    } catch (IllegalArgumentException expected) {
+    }
+    try {
+      new Picasso.Builder(context).decodeMemoryBudget(1024).decodeMemoryBudget(1024);
+      fail("Setting decode memory budget twice should throw exception.");
+    } catch (IllegalStateException expected) {
+    }
+  }
+
+  @Test public void builderInvalidTargetTagId() throws Exception {
+    try {
+      new Picasso.Builder(context).targetTagId(1);
+      fail("Framework tag id should throw exception.");
+    } catch (IllegalArgumentException expected) {
+    }
+    try {
+      new Picasso.Builder(context).targetTagId(TAG_ID).targetTagId(TAG_ID);
+      fail("Setting target tag id twice should throw exception.");
+    } catch (IllegalStateException expected) {
+    }
+  }
+
+  @Test public void builderInvalidMaxDownloadSize() throws Exception {
+    try {
+      new Picasso.Builder(context).maxDownloadSize(0);
+      fail("Zero max download size should throw exception.");
+    } catch (IllegalArgumentException expected) {
+    }
+    try {
+      new Picasso.Builder(context).maxDownloadSize(1024).maxDownloadSize(1024);
+      fail("Setting max download size twice should throw exception.");
+    } catch (IllegalStateException expected) {
+    }
+  }
+
+  @Test public void builderInvalidWarmStart() throws Exception {
+    try {
+      new Picasso.Builder(context).warmStart(0);
+      fail("Zero warm start entries should throw exception.");
+    } catch (IllegalArgumentException expected) {
+    }
+    try {
+      new Picasso.Builder(context).warmStart(20).warmStart(20);
+      fail("Setting warm start twice should throw exception.");
+    } catch (IllegalStateException expected) {
+    }
+  }
+
+  @Test public void builderInvalidEventListener() throws Exception {
+    try {
+      new Picasso.Builder(context).eventListener(null);
+      fail("Null event listener should throw exception.");
+    } catch (IllegalArgumentException expected) {
+    }
+    try {
+      new Picasso.Builder(context).eventListener(mock(EventListener.class))
+          .eventListener(mock(EventListener.class));
+      fail("Setting event listener twice should throw exception.");
+    } catch (IllegalStateException expected) {
+    }
+  }
+
   @Test public void builderInvalidContext() throws Exception {
     try {
       new Picasso.Builder(null);
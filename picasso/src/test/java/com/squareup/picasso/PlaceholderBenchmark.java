@@ -0,0 +1,70 @@
+/*
+ * Copyright (C) 2013 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squareup.picasso;
+
+import android.R;
+import android.content.res.Resources;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+/**
+ * Compares the time a bind spends creating its placeholder, inflating the resource every time
+ * versus going through {@link DrawableCache}. Not part of the regular test run, invoke it with:
+ * <pre>
+ * mvn test -Dtest=PlaceholderBenchmark
+ * </pre>
+ * Numbers from the JVM only show the relative saving, measure on a device for absolute ones.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class PlaceholderBenchmark {
+  private static final int WARMUP_BINDS = 2000;
+  private static final int BINDS = 20000;
+
+  @Test public void placeholderPerBind() {
+    Resources resources = Robolectric.application.getResources();
+    DrawableCache cache = new DrawableCache(resources);
+
+    inflate(resources, WARMUP_BINDS);
+    cached(cache, WARMUP_BINDS);
+    long inflateNanos = inflate(resources, BINDS);
+    long cachedNanos = cached(cache, BINDS);
+
+    double inflateMicros = inflateNanos / 1000.0 / BINDS;
+    double cachedMicros = cachedNanos / 1000.0 / BINDS;
+    System.out.println(String.format("getDrawable=%.2fus/bind drawableCache=%.2fus/bind "
+        + "saved=%.2fus/bind", inflateMicros, cachedMicros, inflateMicros - cachedMicros));
+  }
+
+  private static long inflate(Resources resources, int binds) {
+    long start = System.nanoTime();
+    for (int i = 0; i < binds; i++) {
+      resources.getDrawable(R.drawable.picture_frame).mutate();
+    }
+    return System.nanoTime() - start;
+  }
+
+  private static long cached(DrawableCache cache, int binds) {
+    long start = System.nanoTime();
+    for (int i = 0; i < binds; i++) {
+      cache.get(R.drawable.picture_frame);
+    }
+    return System.nanoTime() - start;
+  }
+}
@@ -19,6 +19,7 @@ import android.R;
 import android.graphics.Bitmap;
 import android.graphics.drawable.ColorDrawable;
 import android.graphics.drawable.Drawable;
+import android.view.ViewGroup;
 import android.widget.ImageView;
 import java.io.IOException;
 import java.util.concurrent.CountDownLatch;
@@ -27,7 +28,6 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Captor;
-import org.mockito.Mock;
 import org.robolectric.Robolectric;
 import org.robolectric.RobolectricTestRunner;
 import org.robolectric.annotation.Config;
@@ -41,6 +41,7 @@ import static com.squareup.picasso.TestUtils.URI_KEY_1;
 import static com.squareup.picasso.TestUtils.mockCallback;
 import static com.squareup.picasso.TestUtils.mockFitImageViewTarget;
 import static com.squareup.picasso.TestUtils.mockImageViewTarget;
+import static com.squareup.picasso.TestUtils.mockPicasso;
 import static com.squareup.picasso.TestUtils.mockTarget;
 import static org.fest.assertions.api.Assertions.assertThat;
 import static org.fest.assertions.api.Assertions.fail;
@@ -54,12 +55,15 @@ import static org.mockito.MockitoAnnotations.initMocks;
 @Config(manifest = Config.NONE)
 public class RequestCreatorTest {
 
-  @Mock Picasso picasso;
+  Picasso picasso;
   @Captor ArgumentCaptor<Action> actionCaptor;
 
   @Before public void shutUp() throws Exception {
     initMocks(this);
+    picasso = mockPicasso();
     when(picasso.transformRequest(any(Request.class))).thenAnswer(TRANSFORM_REQUEST_ANSWER);
+    when(picasso.transformRequestOnSubmit(any(Request.class)))
+        .thenAnswer(TRANSFORM_REQUEST_ANSWER);
   }
 
   @Test
@@ -107,6 +111,26 @@ public class RequestCreatorTest {
     assertThat(actionCaptor.getValue()).isInstanceOf(FetchAction.class);
   }
 
+  @Test public void fetchDefaultsToNormalPriority() throws Exception {
+    new RequestCreator(picasso, URI_1, 0).fetch();
+    verify(picasso).enqueueAndSubmit(actionCaptor.capture());
+    assertThat(actionCaptor.getValue().getData().priority).isEqualTo(Picasso.Priority.NORMAL);
+  }
+
+  @Test public void fetchWithPrioritySetsPriority() throws Exception {
+    new RequestCreator(picasso, URI_1, 0).priority(Picasso.Priority.HIGH).fetch();
+    verify(picasso).enqueueAndSubmit(actionCaptor.capture());
+    assertThat(actionCaptor.getValue().getData().priority).isEqualTo(Picasso.Priority.HIGH);
+  }
+
+  @Test public void nullPriorityThrows() throws Exception {
+    try {
+      new RequestCreator(picasso, URI_1, 0).priority(null);
+      fail("Null priority should throw exception.");
+    } catch (IllegalArgumentException expected) {
+    }
+  }
+
   @Test public void fetchWithFitThrows() throws Exception {
     try {
       new RequestCreator(picasso, URI_1, 0).fit().fetch();
@@ -193,7 +217,7 @@ public class RequestCreatorTest {
   public void intoImageViewWithQuickMemoryCacheCheckDoesNotSubmit() throws Exception {
     Picasso picasso =
         spy(new Picasso(Robolectric.application, mock(Dispatcher.class), Cache.NONE, null, IDENTITY,
-            mock(Stats.class), true));
+            mock(Stats.class), new Picasso.Options(), true));
     doReturn(BITMAP_1).when(picasso).quickMemoryCacheCheck(URI_KEY_1);
     ImageView target = mockImageViewTarget();
     Callback callback = mockCallback();
@@ -208,7 +232,7 @@ public class RequestCreatorTest {
   public void intoImageViewSetsPlaceholderDrawable() throws Exception {
     Picasso picasso =
         spy(new Picasso(Robolectric.application, mock(Dispatcher.class), Cache.NONE, null, IDENTITY,
-            mock(Stats.class), true));
+            mock(Stats.class), new Picasso.Options(), true));
     ImageView target = mockImageViewTarget();
     Drawable placeHolderDrawable = mock(Drawable.class);
     new RequestCreator(picasso, URI_1, 0).placeholder(placeHolderDrawable).into(target);
@@ -221,10 +245,11 @@ public class RequestCreatorTest {
   public void intoImageViewSetsPlaceholderWithResourceId() throws Exception {
     Picasso picasso =
         spy(new Picasso(Robolectric.application, mock(Dispatcher.class), Cache.NONE, null, IDENTITY,
-            mock(Stats.class), true));
+            mock(Stats.class), new Picasso.Options(), true));
     ImageView target = mockImageViewTarget();
     new RequestCreator(picasso, URI_1, 0).placeholder(R.drawable.picture_frame).into(target);
-    verify(target).setImageResource(R.drawable.picture_frame);
+    verify(target).setImageDrawable(any(Drawable.class));
+    assertThat(picasso.drawableCache.size()).isEqualTo(1);
     verify(picasso).enqueueAndSubmit(actionCaptor.capture());
     assertThat(actionCaptor.getValue()).isInstanceOf(ImageViewAction.class);
   }
@@ -245,6 +270,38 @@ public class RequestCreatorTest {
     new RequestCreator(picasso, URI_1, 0).fit().into(target);
     verify(picasso, never()).enqueueAndSubmit(any(Action.class));
     verify(picasso).defer(eq(target), any(DeferredRequestCreator.class));
+    verify(picasso).prefetchSource(any(DeferredRequestCreator.class), eq(URI_1));
+  }
+
+  @Test
+  public void intoImageViewWithFitCenterCropAndNoDimensionsDefers() throws Exception {
+    ImageView target = mockFitImageViewTarget(true);
+    new RequestCreator(picasso, URI_1, 0).fit().centerCrop().into(target);
+    new RequestCreator(picasso, URI_1, 0).fit().centerInside().into(target);
+    verify(picasso, never()).enqueueAndSubmit(any(Action.class));
+    verify(picasso, times(2)).defer(eq(target), any(DeferredRequestCreator.class));
+    verify(picasso, times(2)).prefetchSource(any(DeferredRequestCreator.class), eq(URI_1));
+  }
+
+  @Test
+  public void intoImageViewWithFitAndExactLayoutParamsQueuesResizedRequest() throws Exception {
+    ImageView target = mockFitImageViewTarget(true);
+    when(target.getLayoutParams()).thenReturn(new ViewGroup.LayoutParams(120, 80));
+    new RequestCreator(picasso, URI_1, 0).fit().into(target);
+    verify(picasso, never()).defer(eq(target), any(DeferredRequestCreator.class));
+    verify(picasso).enqueueAndSubmit(actionCaptor.capture());
+    Request data = actionCaptor.getValue().getData();
+    assertThat(data.targetWidth).isEqualTo(120);
+    assertThat(data.targetHeight).isEqualTo(80);
+  }
+
+  @Test
+  public void intoImageViewWithFitAndWrapContentDefers() throws Exception {
+    ImageView target = mockFitImageViewTarget(true);
+    when(target.getLayoutParams()).thenReturn(
+        new ViewGroup.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, 80));
+    new RequestCreator(picasso, URI_1, 0).fit().into(target);
+    verify(picasso).defer(eq(target), any(DeferredRequestCreator.class));
   }
 
   @Test
@@ -0,0 +1,436 @@
+/*
+ * Copyright (C) 2013 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squareup.picasso;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Matrix;
+import android.graphics.Rect;
+import android.graphics.drawable.Drawable;
+import android.net.Uri;
+import android.widget.ImageView;
+import com.google.mockwebserver.MockResponse;
+import com.google.mockwebserver.MockWebServer;
+import com.google.mockwebserver.RecordedRequest;
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.Implementation;
+import org.robolectric.annotation.Implements;
+import org.robolectric.shadows.ShadowBitmap;
+import org.robolectric.shadows.ShadowMatrix;
+
+/**
+ * A reproducible load test which scrolls a simulated list of image views at fling speeds against a
+ * real {@link Picasso} instance loading a corpus of JPEG and PNG files from {@link MockWebServer}.
+ * Views scrolled into sight are rebound the way an adapter recycles them, which cancels the
+ * request of the row they showed before. Not part of the regular test run, invoke it with:
+ * <pre>
+ * mvn test -Dtest=ScrollSimulationBenchmark -Dscroll.latencyMs=80 -Dscroll.bytesPerSecond=500000
+ * </pre>
+ * The following system properties configure the run:
+ * <ul>
+ * <li>{@code scroll.seed}: seed of the corpus and the scroll script, defaults to 1.</li>
+ * <li>{@code scroll.images}: number of distinct images, defaults to 120.</li>
+ * <li>{@code scroll.rows}: number of rows in the list, defaults to 400.</li>
+ * <li>{@code scroll.visibleRows}: number of views on screen, defaults to 8.</li>
+ * <li>{@code scroll.frames}: number of 16ms frames to simulate, defaults to 600.</li>
+ * <li>{@code scroll.latencyMs}: server latency before each response, defaults to 40.</li>
+ * <li>{@code scroll.bytesPerSecond}: bandwidth of each response, unlimited by default.</li>
+ * <li>{@code scroll.targetSize}: width and height images are resized to, defaults to 256.</li>
+ * <li>{@code scroll.cacheBytes}: size of the memory cache, defaults to 16MB.</li>
+ * <li>{@code scroll.report}: file to write the report to in addition to standard out.</li>
+ * </ul>
+ * The report is a single JSON object on a line starting with {@code scroll-simulation}.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, shadows = {
+    ScrollSimulationBenchmark.DecodingBitmapFactory.class,
+    ScrollSimulationBenchmark.ScalingBitmap.class
+})
+public class ScrollSimulationBenchmark {
+  private static final long FRAME_MILLIS = 16;
+
+  private final long seed = Long.getLong("scroll.seed", 1);
+  private final int imageCount = Integer.getInteger("scroll.images", 120);
+  private final int rowCount = Integer.getInteger("scroll.rows", 400);
+  private final int visibleRows = Integer.getInteger("scroll.visibleRows", 8);
+  private final int frames = Integer.getInteger("scroll.frames", 600);
+  private final long latencyMillis = Long.getLong("scroll.latencyMs", 40);
+  private final int bytesPerSecond = Integer.getInteger("scroll.bytesPerSecond", Integer.MAX_VALUE);
+  private final int targetSize = Integer.getInteger("scroll.targetSize", 256);
+  private final int cacheBytes = Integer.getInteger("scroll.cacheBytes", 16 * 1024 * 1024);
+  private final String reportPath = System.getProperty("scroll.report");
+
+  private MockWebServer server;
+  private Picasso picasso;
+  private byte[][] corpus;
+  private final AtomicInteger responses = new AtomicInteger();
+
+  @Before public void setUp() throws Exception {
+    corpus = createCorpus(new Random(seed), imageCount);
+    server = new MockWebServer();
+    server.setDispatcher(new com.google.mockwebserver.Dispatcher() {
+      @Override public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+        Thread.sleep(latencyMillis);
+        String path = request.getPath();
+        int index = Integer.parseInt(path.substring(path.lastIndexOf('/') + 1, path.indexOf('.')));
+        responses.incrementAndGet();
+        return new MockResponse().setBody(corpus[index])
+            .addHeader("Cache-Control", "no-store")
+            .setBytesPerSecond(bytesPerSecond);
+      }
+    });
+    server.play();
+
+    Downloader downloader = new UrlConnectionDownloader(Robolectric.application) {
+      @Override protected HttpURLConnection openConnection(Uri path) throws IOException {
+        return (HttpURLConnection) server.getUrl(path.getPath()).openConnection();
+      }
+    };
+    picasso = new Picasso.Builder(Robolectric.application)
+        .downloader(downloader)
+        .memoryCache(new LruCache(cacheBytes))
+        .build();
+    // Completions are delivered on the simulated main thread, once per frame.
+    Robolectric.pauseMainLooper();
+  }
+
+  @After public void tearDown() throws Exception {
+    Robolectric.unPauseMainLooper();
+    picasso.shutdown();
+    server.shutdown();
+  }
+
+  @Test public void flingThroughList() throws Exception {
+    Report report = new Report();
+    Row[] views = new Row[visibleRows];
+    for (int i = 0; i < visibleRows; i++) {
+      views[i] = new Row(new ImageView(Robolectric.application), report);
+    }
+    ScrollScript script = new ScrollScript(new Random(seed), rowCount - visibleRows);
+
+    long start = System.nanoTime();
+    int firstBound = -visibleRows;
+    for (int frame = 0; frame < frames; frame++) {
+      long frameStart = System.nanoTime();
+      int first = (int) script.next();
+      // Recycle the views of rows which scrolled out for the rows which scrolled in.
+      for (int row = first; row < first + visibleRows; row++) {
+        if (row < firstBound || row >= firstBound + visibleRows) {
+          views[row % visibleRows].bind(row);
+        }
+      }
+      firstBound = first;
+
+      runFrame();
+      report.sampleMemory(picasso.cache.size(), views);
+
+      long sleep = FRAME_MILLIS - (System.nanoTime() - frameStart) / 1000000;
+      if (sleep > 0) {
+        Thread.sleep(sleep);
+      }
+    }
+    for (Row view : views) {
+      view.unbind();
+    }
+    runFrame();
+    long elapsedNanos = System.nanoTime() - start;
+
+    String json = report.toJson(picasso.getSnapshot(), responses.get(), elapsedNanos);
+    System.out.println("scroll-simulation " + json);
+    if (reportPath != null) {
+      FileWriter writer = new FileWriter(new File(reportPath));
+      try {
+        writer.write(json);
+        writer.write('\n');
+      } finally {
+        writer.close();
+      }
+    }
+  }
+
+  /**
+   * Robolectric only runs the messages of background loopers when their scheduler is advanced, so
+   * the dispatcher and stats threads are advanced by one frame along with the main thread.
+   */
+  private void runFrame() {
+    Robolectric.runUiThreadTasks();
+    Robolectric.shadowOf(picasso.dispatcher.dispatcherThread.getLooper())
+        .getScheduler()
+        .advanceBy(FRAME_MILLIS);
+    Robolectric.shadowOf(picasso.stats.statsThread.getLooper())
+        .getScheduler()
+        .advanceBy(FRAME_MILLIS);
+  }
+
+  private String urlFor(int row) {
+    int index = row % imageCount;
+    return "http://localhost/images/" + index + (index % 2 == 0 ? ".jpg" : ".png");
+  }
+
+  /** A recycled view of the list which remembers when it was bound. */
+  private final class Row implements Callback {
+    final ImageView view;
+    final Report report;
+    long boundAt;
+    boolean pending;
+    boolean binding;
+
+    Row(ImageView view, Report report) {
+      this.view = view;
+      this.report = report;
+    }
+
+    void bind(int row) {
+      if (pending) {
+        report.rebinds++;
+      }
+      report.binds++;
+      pending = true;
+      boundAt = System.nanoTime();
+      binding = true;
+      picasso.load(urlFor(row)).resize(targetSize, targetSize).centerCrop().into(view, this);
+      binding = false;
+    }
+
+    void unbind() {
+      if (pending) {
+        report.cancels++;
+        pending = false;
+      }
+      picasso.cancelRequest(view);
+    }
+
+    Bitmap getBitmap() {
+      Drawable drawable = view.getDrawable();
+      return drawable instanceof PicassoDrawable ? ((PicassoDrawable) drawable).bitmap : null;
+    }
+
+    @Override public void onSuccess() {
+      pending = false;
+      report.delivered(System.nanoTime() - boundAt, binding);
+    }
+
+    @Override public void onError() {
+      pending = false;
+      report.errors++;
+    }
+  }
+
+  /**
+   * Alternates flings, which start fast and decelerate, with pauses. Every other fling goes back up
+   * so that rows seen before are shown again.
+   */
+  static final class ScrollScript {
+    private final Random random;
+    private final int maxPosition;
+    private float position;
+    private float velocity;
+    private int pauseFrames;
+    private boolean down = true;
+
+    ScrollScript(Random random, int maxPosition) {
+      this.random = random;
+      this.maxPosition = maxPosition;
+    }
+
+    /** The first visible row in the next frame. */
+    float next() {
+      if (pauseFrames > 0) {
+        pauseFrames--;
+        return position;
+      }
+      if (Math.abs(velocity) < 0.05f) {
+        if (velocity != 0) {
+          velocity = 0;
+          pauseFrames = 10 + random.nextInt(40);
+          return position;
+        }
+        // Rows per frame, a fast fling moves a few screens per second.
+        velocity = (0.5f + random.nextFloat() * 1.5f) * (down ? 1 : -1);
+        down = random.nextInt(3) != 0;
+      }
+      position = Math.max(0, Math.min(maxPosition, position + velocity));
+      velocity *= 0.98f;
+      if (position == 0 || position == maxPosition) {
+        velocity = 0;
+      }
+      return position;
+    }
+  }
+
+  static final class Report {
+    int binds;
+    int rebinds;
+    int cancels;
+    int errors;
+    int memoryHits;
+    long peakBitmapBytes;
+    final List<Long> timesToImage = new ArrayList<Long>();
+
+    void delivered(long nanos, boolean fromMemory) {
+      if (fromMemory) {
+        memoryHits++;
+      }
+      timesToImage.add(nanos);
+    }
+
+    void sampleMemory(int cacheBytes, Row[] views) {
+      long bytes = cacheBytes;
+      for (Row view : views) {
+        Bitmap bitmap = view.getBitmap();
+        if (bitmap != null) {
+          bytes += Utils.getBitmapBytes(bitmap);
+        }
+      }
+      peakBitmapBytes = Math.max(peakBitmapBytes, bytes);
+    }
+
+    String toJson(StatsSnapshot stats, int responses, long elapsedNanos) {
+      long[] times = new long[timesToImage.size()];
+      for (int i = 0; i < times.length; i++) {
+        times[i] = timesToImage.get(i);
+      }
+      Arrays.sort(times);
+      double seconds = elapsedNanos / 1e9;
+      long lookups = stats.cacheHits + stats.cacheMisses;
+      // Every decode which did not end up in a view was wasted.
+      int wastedDecodes = Math.max(0, stats.originalBitmapCount - (times.length - memoryHits));
+      return String.format(Locale.US, "{\"binds\":%d,\"rebinds\":%d,\"cancels\":%d,"
+              + "\"delivered\":%d,\"memoryHits\":%d,\"errors\":%d,\"responses\":%d,"
+              + "\"seconds\":%.2f,\"imagesPerSecond\":%.1f,\"decodes\":%d,\"wastedDecodes\":%d,"
+              + "\"abortedDownloads\":%d,\"cacheHitRatio\":%.3f,\"timeToImageMs\":"
+              + "{\"p50\":%.1f,\"p90\":%.1f,\"p99\":%.1f,\"max\":%.1f},\"peakBitmapBytes\":%d}",
+          binds, rebinds, cancels, times.length, memoryHits, errors, responses, seconds,
+          times.length / seconds, stats.originalBitmapCount, wastedDecodes,
+          stats.abortedDownloadCount, lookups == 0 ? 0 : (double) stats.cacheHits / lookups,
+          percentile(times, 50), percentile(times, 90), percentile(times, 99),
+          percentile(times, 100), peakBitmapBytes);
+    }
+
+    static double percentile(long[] sorted, int percentile) {
+      if (sorted.length == 0) {
+        return 0;
+      }
+      int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+      return sorted[Math.max(0, index)] / 1e6;
+    }
+  }
+
+  /**
+   * Decodes streams with ImageIO so that decodes cost real time and produce bitmaps of the real,
+   * sampled size. Robolectric's own factory returns bitmaps without a config.
+   */
+  @Implements(BitmapFactory.class)
+  public static class DecodingBitmapFactory {
+    @Implementation
+    public static Bitmap decodeStream(InputStream is, Rect outPadding, BitmapFactory.Options opts)
+        throws IOException {
+      if (opts != null && opts.inJustDecodeBounds) {
+        ImageInputStream input = ImageIO.createImageInputStream(is);
+        Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+        if (readers.hasNext()) {
+          ImageReader reader = readers.next();
+          reader.setInput(input);
+          opts.outWidth = reader.getWidth(0);
+          opts.outHeight = reader.getHeight(0);
+          reader.dispose();
+        }
+        return null;
+      }
+      BufferedImage image = ImageIO.read(is);
+      if (image == null) {
+        return null;
+      }
+      int sampleSize = opts != null ? Math.max(1, opts.inSampleSize) : 1;
+      Bitmap.Config config = opts != null && opts.inPreferredConfig != null
+          ? opts.inPreferredConfig : Bitmap.Config.ARGB_8888;
+      return Bitmap.createBitmap(Math.max(1, image.getWidth() / sampleSize),
+          Math.max(1, image.getHeight() / sampleSize), config);
+    }
+  }
+
+  /**
+   * Gives transformed bitmaps the config of their source and the size the matrix scales them to,
+   * which Robolectric's own bitmap leaves out.
+   */
+  @Implements(Bitmap.class)
+  public static class ScalingBitmap extends ShadowBitmap {
+    @Implementation
+    public static Bitmap createBitmap(Bitmap source, int x, int y, int width, int height,
+        Matrix matrix, boolean filter) {
+      Bitmap bitmap = ShadowBitmap.createBitmap(source, x, y, width, height, matrix, filter);
+      ShadowBitmap shadow = Robolectric.shadowOf(bitmap);
+      shadow.setConfig(source.getConfig());
+      if (matrix != null) {
+        for (String operation : Robolectric.shadowOf(matrix).getPreOperations()) {
+          String[] parts = operation.split(" ");
+          if (ShadowMatrix.SCALE.equals(parts[0])) {
+            width = Math.round(width * Float.parseFloat(parts[1]));
+            height = Math.round(height * Float.parseFloat(parts[2]));
+          }
+        }
+      }
+      shadow.setWidth(Math.max(1, width));
+      shadow.setHeight(Math.max(1, height));
+      return bitmap;
+    }
+  }
+
+  /** Renders gradients of varying sizes, encoded as JPEG and PNG in turn. */
+  static byte[][] createCorpus(Random random, int count) throws IOException {
+    byte[][] corpus = new byte[count][];
+    for (int i = 0; i < count; i++) {
+      int width = 200 + random.nextInt(1400);
+      int height = 200 + random.nextInt(1400);
+      BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+      Graphics2D graphics = image.createGraphics();
+      graphics.setPaint(new GradientPaint(0, 0, new Color(random.nextInt()), width, height,
+          new Color(random.nextInt())));
+      graphics.fillRect(0, 0, width, height);
+      graphics.dispose();
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      ImageIO.write(image, i % 2 == 0 ? "jpg" : "png", bytes);
+      corpus[i] = bytes.toByteArray();
+    }
+    return corpus;
+  }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2013 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squareup.picasso;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static com.squareup.picasso.TestUtils.URI_1;
+import static org.fest.assertions.api.Assertions.assertThat;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class SourcePrefetcherTest {
+  @Mock Dispatcher dispatcher;
+  @Mock Downloader downloader;
+
+  @Before public void setUp() {
+    initMocks(this);
+  }
+
+  @Test public void readsWholeSourceAndReportsCompletion() throws Exception {
+    final boolean[] closed = new boolean[1];
+    ByteArrayInputStream stream = new ByteArrayInputStream(new byte[10000]) {
+      @Override public void close() throws IOException {
+        closed[0] = true;
+        super.close();
+      }
+    };
+    when(downloader.load(URI_1, false)).thenReturn(new Downloader.Response(stream, false));
+    SourcePrefetcher prefetcher = new SourcePrefetcher(dispatcher, downloader, URI_1, 0);
+    prefetcher.run();
+    assertThat(stream.available()).isZero();
+    assertThat(closed[0]).isTrue();
+    verify(dispatcher).dispatchPrefetchComplete(prefetcher);
+  }
+
+  @Test public void stopsReadingBeyondMaxSize() throws Exception {
+    ByteArrayInputStream stream = new ByteArrayInputStream(new byte[10000]);
+    when(downloader.load(URI_1, false)).thenReturn(new Downloader.Response(stream, false));
+    SourcePrefetcher prefetcher = new SourcePrefetcher(dispatcher, downloader, URI_1, 5000);
+    prefetcher.run();
+    assertThat(stream.available()).isGreaterThan(0);
+    verify(dispatcher).dispatchPrefetchComplete(prefetcher);
+  }
+
+  @Test public void skipsSourceDeclaredLargerThanMaxSize() throws Exception {
+    ByteArrayInputStream stream = new ByteArrayInputStream(new byte[10000]);
+    when(downloader.load(URI_1, false)).thenReturn(new Downloader.Response(stream, false, 10000));
+    SourcePrefetcher prefetcher = new SourcePrefetcher(dispatcher, downloader, URI_1, 5000);
+    prefetcher.run();
+    assertThat(stream.available()).isEqualTo(10000);
+    verify(dispatcher).dispatchPrefetchComplete(prefetcher);
+  }
+
+  @Test public void failureStillReportsCompletion() throws Exception {
+    when(downloader.load(URI_1, false)).thenThrow(new IOException());
+    SourcePrefetcher prefetcher = new SourcePrefetcher(dispatcher, downloader, URI_1, 0);
+    prefetcher.run();
+    verify(dispatcher).dispatchPrefetchComplete(prefetcher);
+  }
+
+  @Test public void keepsThreadNameUnlessTracing() throws Exception {
+    when(downloader.load(URI_1, false)).thenThrow(new IOException());
+    String name = Thread.currentThread().getName();
+    new SourcePrefetcher(dispatcher, downloader, URI_1, 0).run();
+    assertThat(Thread.currentThread().getName()).isEqualTo(name);
+  }
+}
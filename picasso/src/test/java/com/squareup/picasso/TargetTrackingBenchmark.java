@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2013 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squareup.picasso;
+
+import android.widget.ImageView;
+import java.util.concurrent.ExecutorService;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static com.squareup.picasso.Picasso.RequestTransformer.IDENTITY;
+import static com.squareup.picasso.TestUtils.URI_1;
+import static com.squareup.picasso.TestUtils.URI_KEY_1;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Compares the time a bind spends tracking its target with thousands of live image views, using
+ * the weak maps versus the view tag. Every bind replaces the request of a view that is already
+ * bound. Not part of the regular test run, invoke it with:
+ * <pre>
+ * mvn test -Dtest=TargetTrackingBenchmark
+ * </pre>
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class TargetTrackingBenchmark {
+  private static final int TAG_ID = 0x7f0a0001;
+  private static final int VIEWS = 5000;
+  private static final int WARMUP_ROUNDS = 2;
+  private static final int ROUNDS = 10;
+
+  @Test public void trackingPerBind() {
+    Picasso weakMaps = new Picasso(Robolectric.application, new NoOpDispatcher(), Cache.NONE, null,
+        IDENTITY, mock(Stats.class), new Picasso.Options(), false);
+    Picasso.Options options = new Picasso.Options();
+    options.targetTagId = TAG_ID;
+    Picasso viewTags = new Picasso(Robolectric.application, new NoOpDispatcher(), Cache.NONE, null,
+        IDENTITY, mock(Stats.class), options, false);
+    ImageView[] views = new ImageView[VIEWS];
+    for (int i = 0; i < VIEWS; i++) {
+      views[i] = new ImageView(Robolectric.application);
+    }
+    Request request = new Request.Builder(URI_1).build();
+
+    bind(weakMaps, views, request, WARMUP_ROUNDS);
+    bind(viewTags, views, request, WARMUP_ROUNDS);
+    long weakMapNanos = bind(weakMaps, views, request, ROUNDS);
+    long viewTagNanos = bind(viewTags, views, request, ROUNDS);
+
+    int binds = VIEWS * ROUNDS;
+    double weakMapMicros = weakMapNanos / 1000.0 / binds;
+    double viewTagMicros = viewTagNanos / 1000.0 / binds;
+    System.out.println(String.format("views=%d weakMaps=%.2fus/bind viewTags=%.2fus/bind "
+        + "saved=%.2fus/bind", VIEWS, weakMapMicros, viewTagMicros, weakMapMicros - viewTagMicros));
+    weakMaps.shutdown();
+    viewTags.shutdown();
+  }
+
+  private static long bind(Picasso picasso, ImageView[] views, Request request, int rounds) {
+    long start = System.nanoTime();
+    for (int round = 0; round < rounds; round++) {
+      for (ImageView view : views) {
+        picasso.enqueueAndSubmit(
+            new ImageViewAction(picasso, view, request, false, false, 0, null, URI_KEY_1, null));
+      }
+    }
+    return System.nanoTime() - start;
+  }
+
+  /** Drops requests so that only the tracking on the main thread is measured. */
+  private static final class NoOpDispatcher extends Dispatcher {
+    NoOpDispatcher() {
+      super(Robolectric.application, mock(ExecutorService.class), Picasso.HANDLER,
+          mock(Downloader.class), Cache.NONE, mock(Stats.class), false);
+    }
+
+    @Override void dispatchSubmit(Action action) {
+    }
+
+    @Override void dispatchCancel(Action action) {
+    }
+  }
+}
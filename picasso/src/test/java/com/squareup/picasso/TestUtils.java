@@ -21,8 +21,10 @@ import android.net.Uri;
 import android.view.ViewTreeObserver;
 import android.widget.ImageView;
 import java.io.File;
+import java.lang.reflect.Field;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
+import org.robolectric.Robolectric;
 
 import static android.provider.ContactsContract.Contacts.CONTENT_URI;
 import static android.provider.ContactsContract.Contacts.Photo.CONTENT_DIRECTORY;
@@ -72,7 +74,7 @@ class TestUtils {
     when(action.getKey()).thenReturn(key);
     when(action.getData()).thenReturn(request);
     when(action.getTarget()).thenReturn(target);
-    when(action.getPicasso()).thenReturn(mock(Picasso.class));
+    when(action.getPicasso()).thenReturn(mockPicasso());
     return action;
   }
 
@@ -103,6 +105,19 @@ class TestUtils {
     return mock(Callback.class);
   }
 
+  /** A mocked {@link Picasso} with the real drawable cache its constructor would create. */
+  static Picasso mockPicasso() {
+    Picasso picasso = mock(Picasso.class);
+    try {
+      Field drawableCache = Picasso.class.getDeclaredField("drawableCache");
+      drawableCache.setAccessible(true);
+      drawableCache.set(picasso, new DrawableCache(Robolectric.application.getResources()));
+    } catch (Exception e) {
+      throw new AssertionError(e);
+    }
+    return picasso;
+  }
+
   static DeferredRequestCreator mockDeferredRequestCreator() {
     return mock(DeferredRequestCreator.class);
   }
@@ -118,6 +133,7 @@ class TestUtils {
     when(hunter.getResult()).thenReturn(result);
     when(hunter.getData()).thenReturn(data);
     when(hunter.shouldSkipMemoryCache()).thenReturn(skipCache);
+    when(hunter.getPicasso()).thenReturn(mockPicasso());
     return hunter;
   }
 
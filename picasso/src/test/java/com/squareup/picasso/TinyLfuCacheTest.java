@@ -0,0 +1,148 @@
+/*
+ * Copyright (C) 2013 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squareup.picasso;
+
+import android.graphics.Bitmap;
+import java.util.Random;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static android.graphics.Bitmap.Config.ALPHA_8;
+import static junit.framework.Assert.fail;
+import static org.fest.assertions.api.Assertions.assertThat;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class TinyLfuCacheTest {
+  // The use of ALPHA_8 simplifies the size math in tests since only one byte is used per-pixel.
+  private final Bitmap A = Bitmap.createBitmap(1, 1, ALPHA_8);
+  private final Bitmap B = Bitmap.createBitmap(1, 1, ALPHA_8);
+  private final Bitmap C = Bitmap.createBitmap(1, 1, ALPHA_8);
+  private final Bitmap LARGE = Bitmap.createBitmap(60, 1, ALPHA_8);
+
+  @Test public void constructorDoesNotAllowZeroCacheSize() {
+    try {
+      new TinyLfuCache(0);
+      fail();
+    } catch (IllegalArgumentException expected) {
+    }
+  }
+
+  @Test public void cannotPutNullKeyOrValue() {
+    TinyLfuCache cache = new TinyLfuCache(100);
+    try {
+      cache.set(null, A);
+      fail();
+    } catch (NullPointerException expected) {
+    }
+    try {
+      cache.set("a", null);
+      fail();
+    } catch (NullPointerException expected) {
+    }
+  }
+
+  @Test public void setThenGet() {
+    TinyLfuCache cache = new TinyLfuCache(100);
+    cache.set("a", A);
+    cache.set("b", B);
+    assertThat(cache.get("a")).isSameAs(A);
+    assertThat(cache.get("b")).isSameAs(B);
+    assertThat(cache.get("c")).isNull();
+    assertThat(cache.size()).isEqualTo(2);
+    assertThat(cache.hitCount()).isEqualTo(2);
+    assertThat(cache.missCount()).isEqualTo(1);
+    assertThat(cache.putCount()).isEqualTo(2);
+  }
+
+  @Test public void replacingValueKeepsSizeConsistent() {
+    TinyLfuCache cache = new TinyLfuCache(100);
+    cache.set("a", A);
+    cache.set("a", B);
+    assertThat(cache.get("a")).isSameAs(B);
+    assertThat(cache.size()).isEqualTo(1);
+  }
+
+  @Test public void oneOffLargeImageDoesNotEvictFrequentImages() {
+    TinyLfuCache cache = new TinyLfuCache(100);
+    Bitmap[] frequent = new Bitmap[50];
+    for (int i = 0; i < frequent.length; i++) {
+      frequent[i] = Bitmap.createBitmap(1, 1, ALPHA_8);
+      cache.set("frequent" + i, frequent[i]);
+    }
+    for (int round = 0; round < 3; round++) {
+      for (int i = 0; i < frequent.length; i++) {
+        assertThat(cache.get("frequent" + i)).isSameAs(frequent[i]);
+      }
+    }
+
+    cache.get("large");
+    cache.set("large", LARGE);
+
+    assertThat(cache.get("large")).isNull();
+    for (int i = 0; i < frequent.length; i++) {
+      assertThat(cache.get("frequent" + i)).isSameAs(frequent[i]);
+    }
+    assertThat(cache.rejectionCount()).isEqualTo(1);
+  }
+
+  @Test public void frequentLargeImageIsAdmitted() {
+    TinyLfuCache cache = new TinyLfuCache(100);
+    for (int i = 0; i < 50; i++) {
+      cache.set("small" + i, Bitmap.createBitmap(1, 1, ALPHA_8));
+    }
+    for (int i = 0; i < 5; i++) {
+      cache.get("large");
+    }
+    cache.set("large", LARGE);
+    assertThat(cache.get("large")).isSameAs(LARGE);
+    assertThat(cache.size()).isLessThanOrEqualTo(100);
+  }
+
+  @Test public void resizeAndTrimToSizeEvict() {
+    TinyLfuCache cache = new TinyLfuCache(100);
+    cache.set("a", A);
+    cache.set("b", B);
+    cache.set("c", C);
+    cache.trimToSize(2);
+    assertThat(cache.size()).isEqualTo(2);
+    assertThat(cache.maxSize()).isEqualTo(100);
+    cache.resize(1);
+    assertThat(cache.size()).isEqualTo(1);
+    assertThat(cache.maxSize()).isEqualTo(1);
+    assertThat(cache.evictionCount()).isEqualTo(2);
+  }
+
+  @Test public void clearEvictsAll() {
+    TinyLfuCache cache = new TinyLfuCache(100);
+    cache.set("a", A);
+    cache.set("b", B);
+    cache.clear();
+    assertThat(cache.size()).isZero();
+    assertThat(cache.get("a")).isNull();
+  }
+
+  @Test public void beatsLruOnFeedWithOneOffImages() {
+    // Avatars shown on every screen mixed with a long feed of large images seen only once.
+    CacheReplayBenchmark.Trace trace =
+        CacheReplayBenchmark.avatarsAndFeed(new Random(1), 20000, 50, 20, 400);
+    double lruHitRatio = CacheReplayBenchmark.replay(new LruCache(5000), trace);
+    double tinyLfuHitRatio = CacheReplayBenchmark.replay(new TinyLfuCache(5000), trace);
+    assertThat(tinyLfuHitRatio).isGreaterThan(lruHitRatio);
+  }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) 2013 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squareup.picasso;
+
+import android.graphics.Bitmap;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static android.graphics.Bitmap.Config.ARGB_8888;
+import static android.graphics.Bitmap.Config.RGB_565;
+import static org.fest.assertions.api.Assertions.assertThat;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class TransformationBuffersTest {
+
+  @Test public void acquireReusesReleasedBufferOfSameSizeAndConfig() throws Exception {
+    TransformationBuffers buffers = new TransformationBuffers(10 * 20 * 4 * 2);
+    Bitmap buffer = buffers.acquire(10, 20, ARGB_8888);
+    buffers.release(buffer);
+
+    assertThat(buffers.acquire(20, 10, ARGB_8888)).isNotSameAs(buffer);
+    assertThat(buffers.acquire(10, 20, RGB_565)).isNotSameAs(buffer);
+    assertThat(buffers.acquire(10, 20, ARGB_8888)).isSameAs(buffer);
+    assertThat(buffers.size()).isZero();
+  }
+
+  @Test public void releaseBeyondCapacityRecyclesOldest() throws Exception {
+    TransformationBuffers buffers = new TransformationBuffers(10 * 10 * 4 * 2);
+    Bitmap first = Bitmap.createBitmap(10, 10, ARGB_8888);
+    Bitmap second = Bitmap.createBitmap(10, 10, ARGB_8888);
+    Bitmap third = Bitmap.createBitmap(10, 10, ARGB_8888);
+    buffers.release(first);
+    buffers.release(second);
+    buffers.release(third);
+
+    assertThat(first.isRecycled()).isTrue();
+    assertThat(second.isRecycled()).isFalse();
+    assertThat(third.isRecycled()).isFalse();
+    assertThat(buffers.size()).isEqualTo(2);
+    assertThat(buffers.sizeInBytes()).isEqualTo(10 * 10 * 4 * 2);
+  }
+
+  @Test public void releaseOfBufferLargerThanPoolRecyclesIt() throws Exception {
+    TransformationBuffers buffers = new TransformationBuffers(10 * 10 * 4);
+    Bitmap buffer = Bitmap.createBitmap(20, 10, ARGB_8888);
+    buffers.release(buffer);
+
+    assertThat(buffer.isRecycled()).isTrue();
+    assertThat(buffers.size()).isZero();
+    assertThat(buffers.sizeInBytes()).isZero();
+  }
+
+  @Test public void clearRecyclesBuffers() throws Exception {
+    TransformationBuffers buffers = new TransformationBuffers(10 * 20 * 4 * 2);
+    Bitmap buffer = Bitmap.createBitmap(10, 10, ARGB_8888);
+    buffers.release(buffer);
+    buffers.clear();
+
+    assertThat(buffer.isRecycled()).isTrue();
+    assertThat(buffers.size()).isZero();
+  }
+}
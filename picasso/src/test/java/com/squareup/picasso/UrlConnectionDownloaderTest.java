@@ -59,6 +59,14 @@ public class UrlConnectionDownloaderTest {
     server.shutdown();
   }
 
+  @Test public void contentLengthHeaderSetsResponseValue() throws Exception {
+    server.enqueue(new MockResponse().setBody("hello"));
+    assertThat(loader.load(URL, false).getContentLength()).isEqualTo(5);
+
+    server.enqueue(new MockResponse().setChunkedBody("hello", 2));
+    assertThat(loader.load(URL, false).getContentLength()).isEqualTo(-1);
+  }
+
   @Test public void nonTwoHundredReturnsNull() throws Exception {
     server.enqueue(new MockResponse().setResponseCode(302));
     server.enqueue(new MockResponse().setResponseCode(404));
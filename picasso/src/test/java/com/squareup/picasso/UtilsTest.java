@@ -21,6 +21,7 @@ import org.robolectric.RobolectricTestRunner;
 import org.robolectric.annotation.Config;
 
 import static com.squareup.picasso.TestUtils.URI_1;
+import static com.squareup.picasso.TestUtils.URI_2;
 import static com.squareup.picasso.Utils.createKey;
 import static com.squareup.picasso.Utils.parseResponseSourceHeader;
 import static org.fest.assertions.api.Assertions.assertThat;
@@ -28,6 +29,15 @@ import static org.fest.assertions.api.Assertions.assertThat;
 @RunWith(RobolectricTestRunner.class) @Config(manifest = Config.NONE)
 public class UtilsTest {
 
+  @Test public void stableKeyReplacesUri() {
+    Request first = new Request.Builder(URI_1).stableKey("stable").resize(10, 10).build();
+    Request second = new Request.Builder(URI_2).stableKey("stable").resize(10, 10).build();
+    assertThat(createKey(first)).isEqualTo(createKey(second));
+    Request plain = new Request.Builder(URI_1).resize(10, 10).build();
+    assertThat(createKey(first)).isNotEqualTo(createKey(plain));
+    assertThat(first.buildUpon().build().stableKey).isEqualTo("stable");
+  }
+
   @Test public void matchingRequestsHaveSameKey() {
     Request request = new Request.Builder(URI_1).build();
     String key1 = createKey(request);
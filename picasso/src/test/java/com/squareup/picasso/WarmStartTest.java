@@ -0,0 +1,117 @@
+/*
+ * Copyright (C) 2013 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squareup.picasso;
+
+import android.net.Uri;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static com.squareup.picasso.Picasso.Priority.LOW;
+import static com.squareup.picasso.TestUtils.URI_1;
+import static com.squareup.picasso.TestUtils.URI_2;
+import static com.squareup.picasso.TestUtils.URI_KEY_1;
+import static com.squareup.picasso.TestUtils.URI_KEY_2;
+import static org.fest.assertions.api.Assertions.assertThat;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class WarmStartTest {
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test public void encodeAndDecodeKeepKey() throws Exception {
+    Request[] requests = {
+        new Request.Builder(URI_1).build(),
+        new Request.Builder(URI_1).resize(20, 10).centerCrop().build(),
+        new Request.Builder(URI_1).resize(20, 10).centerInside().rotate(90).build(),
+        new Request.Builder(URI_1).rotate(45, 10.5f, 2).build()
+    };
+    for (Request request : requests) {
+      Request decoded = WarmStart.decode(WarmStart.encode(request));
+      assertThat(Utils.createKey(decoded)).isEqualTo(Utils.createKey(request));
+      assertThat(decoded.priority).isEqualTo(LOW);
+    }
+  }
+
+  @Test public void decodeMalformedLineReturnsNull() throws Exception {
+    assertThat(WarmStart.decode("")).isNull();
+    assertThat(WarmStart.decode("a\t0\t-\t0.0\t-\thttp://example.com/1.png")).isNull();
+    assertThat(WarmStart.decode("0\t0\t-\t0.0\thttp://example.com/1.png")).isNull();
+  }
+
+  @Test public void saveAndLoadMostRecentlyUsedFirst() throws Exception {
+    File file = new File(temporaryFolder.getRoot(), "warm-start");
+    WarmStart warmStart = new WarmStart(file, 2);
+    Request third = new Request.Builder(URI_1).resize(10, 10).build();
+    warmStart.put(URI_KEY_1, new Request.Builder(URI_1).build());
+    warmStart.put(URI_KEY_2, new Request.Builder(URI_2).build());
+    warmStart.touch(URI_KEY_1);
+    warmStart.put(Utils.createKey(third), third);
+    warmStart.save();
+
+    List<Request> loaded = new WarmStart(file, 10).load();
+    assertThat(loaded).hasSize(2);
+    assertThat(Utils.createKey(loaded.get(0))).isEqualTo(Utils.createKey(third));
+    assertThat(Utils.createKey(loaded.get(1))).isEqualTo(URI_KEY_1);
+    assertThat(new WarmStart(file, 1).load()).hasSize(1);
+    assertThat(new File(file.getPath() + ".tmp").exists()).isFalse();
+  }
+
+  @Test public void saveAndLoadKeepUntransformedRequest() throws Exception {
+    File file = new File(temporaryFolder.getRoot(), "warm-start");
+    WarmStart warmStart = new WarmStart(file, 10);
+    Request transformed = new Request.Builder(URI_2).resize(20, 10).centerCrop().build();
+    String transformedKey = Utils.createKey(transformed);
+    warmStart.putUntransformed(transformedKey, new Request.Builder(URI_1).build());
+    warmStart.put(transformedKey, transformed);
+    warmStart.put(URI_KEY_2, new Request.Builder(URI_2).build());
+    warmStart.save();
+
+    WarmStart loaded = new WarmStart(file, 10);
+    assertThat(loaded.load()).hasSize(2);
+    assertThat(Utils.createKey(loaded.getUntransformed(transformedKey))).isEqualTo(URI_KEY_1);
+    assertThat(loaded.getUntransformed(URI_KEY_2)).isNull();
+  }
+
+  @Test public void putSkipsRequestsWhichCanNotBeRestored() throws Exception {
+    File file = new File(temporaryFolder.getRoot(), "warm-start");
+    WarmStart warmStart = new WarmStart(file, 10);
+    Request transformed =
+        new Request.Builder(URI_1).transform(new TestTransformation("test")).build();
+    warmStart.put(Utils.createKey(transformed), transformed);
+    Request resource = new Request.Builder(TestUtils.RESOURCE_ID_1).build();
+    warmStart.put(TestUtils.RESOURCE_ID_KEY_1, resource);
+    Request tab = new Request.Builder(Uri.parse("http://example.com/a\tb.png")).build();
+    warmStart.put(Utils.createKey(tab), tab);
+    warmStart.save();
+    assertThat(warmStart.load()).isEmpty();
+  }
+
+  @Test public void loadWithoutFileOrHeaderIsEmpty() throws Exception {
+    File file = new File(temporaryFolder.getRoot(), "warm-start");
+    assertThat(new WarmStart(file, 10).load()).isEmpty();
+    FileOutputStream out = new FileOutputStream(file);
+    out.write("0\t0\t-\t0.0\t-\thttp://example.com/1.png\n".getBytes("UTF-8"));
+    out.close();
+    assertThat(new WarmStart(file, 10).load()).isEmpty();
+  }
+}